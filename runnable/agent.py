@@ -5,13 +5,17 @@ import subprocess
 import requests
 import traceback
 
-MODEL = "qwen3:0.6b"
-OLLAMA_API = "http://localhost:11434/api/generate"
+# the control plane passes its inference gateway, which speaks Ollama's API
+MODEL = os.environ.get("OLLAMA_MODEL", "qwen3:0.6b")
+OLLAMA_API = os.environ.get("OLLAMA_API", "http://localhost:11434").rstrip("/") + "/api/generate"
+# written next to the code once it was generated, only such output is offered to similar jobs
+SUCCESS_MARKER = ".succeeded"
 
 def log(level, msg):
     print(f"[{level}] {msg}")
 
-def generate_code_with_ollama(prompt: str) -> str:
+def generate_code_with_ollama(prompt: str):
+    """Returns the code and whether it really came from the model."""
     payload = {
         "model": MODEL,
         "prompt": prompt,
@@ -20,15 +24,19 @@ def generate_code_with_ollama(prompt: str) -> str:
 
     try:
         log("INFO", f"Sending prompt to Ollama at {OLLAMA_API}")
-        res = requests.post(OLLAMA_API, json=payload, timeout=70)
+        res = requests.post(OLLAMA_API, json=payload, timeout=300)  # may wait in the gateway queue
         res.raise_for_status()
         data = res.json()
+        response = data.get("response")
+        if not response:
+            log("ERROR", "Ollama returned no response")
+            return "# Ollama returned no response.", False
         log("INFO", f"Code generation succeeded")
-        return data.get("response", "# Ollama returned no response.")
+        return response, True
     except Exception as e:
         log("ERROR", f"Failed to generate code with Ollama: {e}")
         traceback.print_exc()
-        return "# ERROR: Could not connect to Ollama instance."
+        return "# ERROR: Could not connect to Ollama instance.", False
 
 def launch(app, *args):
     try:
@@ -40,15 +48,17 @@ def launch(app, *args):
         log("ERROR", f"Failed to launch {app}: {e}")
         traceback.print_exc()
 
-def write_code_to_file(code_path, task, code):
+def write_code_to_file(code_path, task, code) -> bool:
     try:
         with open(code_path, "w") as f:
             f.write(f"# Task: {task}\n\n")
             f.write(code.strip() + "\n")
         log("INFO", f"Code written to: {code_path}")
+        return True
     except Exception as e:
         log("ERROR", f"Failed to write code to file: {e}")
         traceback.print_exc()
+        return False
 
 def main():
     task = sys.argv[1] if len(sys.argv) > 1 else "Build a Hello World app"
@@ -63,10 +73,15 @@ def main():
 
     filename = task.lower().replace(" ", "_").replace("'", "") + ".py"
     code_path = os.path.join(output_dir, filename)
+    marker_path = os.path.join(output_dir, SUCCESS_MARKER)
+    if os.path.exists(marker_path):
+        os.remove(marker_path)  # left by an earlier task in the same container
 
     log("INFO", "Generating code using Ollama...")
-    code = generate_code_with_ollama(task)
-    write_code_to_file(code_path, task, code)
+    code, generated = generate_code_with_ollama(task)
+    if write_code_to_file(code_path, task, code) and generated:
+        with open(marker_path, "w") as f:
+            f.write(filename + "\n")
 
     # Attempt to launch development apps
     launch("xclock")
@@ -23,8 +23,13 @@ sleep 3
 JOB="$*"
 echo "[Startup] Running job: $JOB"
 
-# Launch agent with job input
-python3 /agent.py "$JOB"
+# Launch agent with job input; without one the container idles in the warm pool
+# until the control plane execs the agent with a task
+if [ -n "$JOB" ]; then
+    python3 /agent.py "$JOB"
+else
+    echo "[Startup] No job given, waiting in warm pool..."
+fi
 
 # Keep container alive
 tail -f /dev/null
@@ -0,0 +1,89 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.runnable.agent.configuration.DockerTransportProperties;
+import com.runnable.agent.configuration.JobQuotaProperties;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobTaskRepository;
+import com.runnable.agent.repository.JobsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Wires a JobService by hand around a stubbed DockerClient, the same way Spring would,
+ * minus the database and the warm pool.
+ */
+final class BenchmarkFixtures {
+
+	final DockerHostRegistry dockerHostRegistry;
+	final ContainerStateCache containerStateCache;
+	final PortAllocator portAllocator;
+	final AdmissionController admissionController;
+	final ImageManager imageManager;
+	final DockerClientService dockerClientService;
+	final JobService jobService;
+
+	BenchmarkFixtures(DockerClient dockerClient, JobsRepository jobsRepository, int bulkParallelism) {
+		this(dockerClient, jobsRepository, mock(JobTaskRepository.class), bulkParallelism);
+	}
+
+	// with a real task queue, for driving submitJob through a JobQueueWorker
+	BenchmarkFixtures(DockerClient dockerClient, JobsRepository jobsRepository, JobTaskRepository jobTaskRepository,
+					  int bulkParallelism) {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		dockerHostRegistry = new DockerHostRegistry(dockerClient, defaultProperties(),
+				new DockerMetrics(meterRegistry), meterRegistry);
+		containerStateCache = new ContainerStateCache(dockerHostRegistry);
+		containerStateCache.start();
+		portAllocator = new PortAllocator(jobsRepository, containerStateCache, 1024, 65535);
+		portAllocator.restoreLeases();
+		// single host, so the scheduler never samples and placement is just the default host
+		PlacementScheduler placementScheduler = new PlacementScheduler(dockerHostRegistry, containerStateCache, 15, 0.05);
+		admissionController = new AdmissionController(dockerHostRegistry, placementScheduler,
+				containerStateCache, jobsRepository, new JobQuotaProperties(null, null, null, null, null, null, null, null, null), meterRegistry);
+		admissionController.restoreCommitments();
+		imageManager = new ImageManager(dockerHostRegistry, "coding-agent:latest", false, Duration.ZERO);
+		imageManager.start();
+		dockerClientService = new DockerClientService(dockerHostRegistry, placementScheduler, portAllocator, admissionController,
+				imageManager, "http://localhost:8080/inference", "qwen3:0.6b", true, "bridge");
+		WarmContainerPool warmContainerPool = new WarmContainerPool(dockerClientService, admissionController, 0, 30);
+		// published ports, as the stubbed containers carry a host binding for noVNC
+		VncGateway vncGateway = new VncGateway(jobsRepository, dockerHostRegistry, containerStateCache, true,
+				"http://localhost:8080", "bridge", Duration.ofSeconds(5));
+		jobService = new JobService(jobsRepository, dockerClientService, warmContainerPool, containerStateCache,
+				portAllocator, new JobStatusBroadcaster(256), mock(ArtifactService.class),
+				new JobMetrics(meterRegistry, jobsRepository, warmContainerPool, Duration.ofSeconds(30)), admissionController,
+				jobTaskRepository, mock(SemanticJobCache.class), vncGateway,
+				bulkParallelism, bulkParallelism, 10);
+	}
+
+	void close() {
+		admissionController.stop();
+		containerStateCache.stop();
+		imageManager.stop();
+		dockerHostRegistry.shutdown();
+	}
+
+	// defaults from DockerTransportProperties, as when nothing is configured
+	static DockerTransportProperties defaultProperties() {
+		return new DockerTransportProperties(null, null, null, null, null, null, null, null, null, null, null);
+	}
+
+	static List<Jobs> startedJobs(int count) {
+		List<Jobs> jobs = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Jobs job = new Jobs("Build a todo app in React #" + i, JobStatus.STARTED);
+			job.setJobId(i + 1);
+			job.setContainerId(StubDocker.containerId(i));
+			job.setVncPort(20000 + i % 10000);
+			jobs.add(job);
+		}
+		return jobs;
+	}
+}
@@ -0,0 +1,80 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.model.Container;
+import com.runnable.agent.configuration.DockerTransportProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent list/inspect calls through DockerCallGuard, with 32 callers
+ * against bulkheads of different sizes and a daemon taking latencyMillis per call.
+ * "direct" skips the guard to show its overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class DockerTransportBenchmark {
+
+	@Param({"0", "5"})
+	long latencyMillis;
+
+	@Param({"8", "64"})
+	int maxConcurrentCalls;
+
+	private DockerClient dockerClient;
+	private DockerCallGuard guard;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		dockerClient = StubDocker.create(latencyMillis, StubDocker.containers(50), List.of());
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		DockerTransportProperties properties = new DockerTransportProperties(null, null, null,
+				Map.of("list", Duration.ofSeconds(5), "inspect", Duration.ofSeconds(5)), null,
+				maxConcurrentCalls, Duration.ofSeconds(30), null, null, null, null);
+		guard = new DockerCallGuard("bench", new DockerMetrics(meterRegistry), properties, meterRegistry);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		guard.shutdown();
+	}
+
+	@Benchmark
+	public List<Container> guardedList() {
+		return guard.call("list", () -> dockerClient.listContainersCmd().withShowAll(true).exec());
+	}
+
+	@Benchmark
+	public InspectContainerResponse guardedInspect() {
+		return guard.call("inspect", () -> dockerClient.inspectContainerCmd("bench").exec());
+	}
+
+	@Benchmark
+	public InspectContainerResponse directInspect() {
+		return dockerClient.inspectContainerCmd("bench").exec();
+	}
+}
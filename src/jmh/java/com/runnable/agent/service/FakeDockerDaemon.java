@@ -0,0 +1,506 @@
+package com.runnable.agent.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An HTTP server on loopback that speaks the part of the Docker Engine API the job services
+ * use, so a real docker-java client and the real service layer can be driven without a
+ * daemon or agent containers. Containers are only entries in a map: create, start, stop,
+ * pause, rename and remove change their state and emit the matching events on /events.
+ * Every call sleeps for the latency of its operation and fails with a 500 at its failure
+ * rate; operations are named as in DockerHost.call ("create", "start", "inspect", ...).
+ */
+final class FakeDockerDaemon implements AutoCloseable {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final Pattern API_VERSION = Pattern.compile("^/v\\d+\\.\\d+");
+	private static final Pattern CONTAINER_PATH = Pattern.compile("^/containers/([^/]+)(/[a-z]+)?$");
+	private static final Pattern EXEC_START = Pattern.compile("^/exec/([^/]+)/start$");
+	private static final String NETWORK = "bridge";
+	private static final Object END_OF_STREAM = new Object();
+
+	private final Duration defaultLatency;
+	private final double defaultFailureRate;
+	private final Map<String, Duration> latencies = new ConcurrentHashMap<>();
+	private final Map<String, Double> failureRates = new ConcurrentHashMap<>();
+	private final Map<String, FakeContainer> containers = new ConcurrentHashMap<>();
+	private final Set<BlockingQueue<Object>> subscribers = ConcurrentHashMap.newKeySet();
+	private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> failures = new ConcurrentHashMap<>();
+	private final AtomicInteger addresses = new AtomicInteger();
+	private final int cpus;
+	private final long memoryBytes;
+	private HttpServer server;
+
+	/**
+	 * Every operation takes defaultLatency and fails at defaultFailureRate unless set per
+	 * operation. cpus and memoryBytes are what /info reports, i.e. the admission capacity.
+	 */
+	FakeDockerDaemon(Duration defaultLatency, double defaultFailureRate, int cpus, long memoryBytes) {
+		this.defaultLatency = defaultLatency;
+		this.defaultFailureRate = defaultFailureRate;
+		this.cpus = cpus;
+		this.memoryBytes = memoryBytes;
+	}
+
+	FakeDockerDaemon latency(String operation, Duration latency) {
+		latencies.put(operation, latency);
+		return this;
+	}
+
+	FakeDockerDaemon failureRate(String operation, double rate) {
+		failureRates.put(operation, rate);
+		return this;
+	}
+
+	FakeDockerDaemon start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/", this::handle);
+		server.start();
+		return this;
+	}
+
+	// for DOCKER_HOST or DockerClientConfiguration.createClient
+	String endpoint() {
+		return "tcp://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	int containerCount() {
+		return containers.size();
+	}
+
+	// calls and injected failures per operation
+	Map<String, long[]> callCounts() {
+		Map<String, long[]> counts = new LinkedHashMap<>();
+		calls.forEach((operation, count) -> counts.put(operation,
+				new long[]{count.get(), failures.getOrDefault(operation, new AtomicLong()).get()}));
+		return counts;
+	}
+
+	@Override
+	public void close() {
+		subscribers.forEach(queue -> queue.add(END_OF_STREAM));
+		if (server != null) {
+			server.stop(0);
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String path = API_VERSION.matcher(exchange.getRequestURI().getRawPath()).replaceFirst("");
+			Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+			String method = exchange.getRequestMethod();
+			String operation = operation(method, path);
+			if (!"ping".equals(operation) && !inject(operation)) {
+				reply(exchange, 500, Map.of("message", "injected failure in " + operation));
+				return;
+			}
+			route(exchange, method, path, query, operation);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// sleeps for the operation's latency and decides whether the call fails
+	private boolean inject(String operation) throws InterruptedException {
+		calls.computeIfAbsent(operation, key -> new AtomicLong()).incrementAndGet();
+		long nanos = latencies.getOrDefault(operation, defaultLatency).toNanos();
+		if (nanos > 0) {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		}
+		if (ThreadLocalRandom.current().nextDouble() < failureRates.getOrDefault(operation, defaultFailureRate)) {
+			failures.computeIfAbsent(operation, key -> new AtomicLong()).incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	private static String operation(String method, String path) {
+		if (path.equals("/_ping")) {
+			return "ping";
+		}
+		if (path.equals("/containers/json")) {
+			return "list";
+		}
+		if (path.equals("/containers/create")) {
+			return "create";
+		}
+		if (path.startsWith("/exec/")) {
+			return "exec-start";
+		}
+		Matcher container = CONTAINER_PATH.matcher(path);
+		if (container.matches()) {
+			String action = container.group(2);
+			if (action == null) {
+				return "DELETE".equals(method) ? "remove" : "inspect";
+			}
+			return switch (action) {
+				case "/json" -> "inspect";
+				case "/exec" -> "exec-create";
+				case "/logs" -> "logs";
+				case "/archive" -> "copy-archive";
+				default -> action.substring(1);
+			};
+		}
+		return switch (path) {
+			case "/info" -> "info";
+			case "/events" -> "events";
+			case "/images/json" -> "list-images";
+			case "/images/create" -> "pull";
+			case "/images/prune" -> "prune";
+			default -> path.startsWith("/images/") ? "inspect-image" : "unknown";
+		};
+	}
+
+	private void route(HttpExchange exchange, String method, String path, Map<String, String> query,
+					   String operation) throws IOException, InterruptedException {
+		switch (operation) {
+			case "ping" -> replyText(exchange, 200, "OK");
+			case "info" -> reply(exchange, 200, Map.of("NCPU", cpus, "MemTotal", memoryBytes,
+					"Name", "fake-docker", "ServerVersion", "fake"));
+			case "list" -> reply(exchange, 200, list(query));
+			case "create" -> create(exchange, query);
+			case "events" -> events(exchange, query);
+			case "list-images" -> reply(exchange, 200, List.of(image()));
+			case "inspect-image" -> reply(exchange, 200, image());
+			case "pull" -> reply(exchange, 200, Map.of("status", "Image is up to date"));
+			case "prune" -> reply(exchange, 200, Map.of("ImagesDeleted", List.of(), "SpaceReclaimed", 0));
+			case "exec-start" -> {
+				Matcher exec = EXEC_START.matcher(path);
+				replyText(exchange, exec.matches() ? 200 : 404, "");
+			}
+			case "unknown" -> reply(exchange, 404, Map.of("message", "page not found: " + method + " " + path));
+			default -> containerCommand(exchange, path, query, operation);
+		}
+	}
+
+	private void containerCommand(HttpExchange exchange, String path, Map<String, String> query,
+								  String operation) throws IOException {
+		Matcher matcher = CONTAINER_PATH.matcher(path);
+		FakeContainer container = matcher.matches() ? find(matcher.group(1)) : null;
+		if (container == null) {
+			reply(exchange, 404, Map.of("message", "No such container: " + (matcher.matches() ? matcher.group(1) : path)));
+			return;
+		}
+		switch (operation) {
+			case "inspect" -> reply(exchange, 200, container.inspect());
+			case "start" -> {
+				if (container.transition("running")) {
+					emit(container, "start");
+					replyText(exchange, 204, "");
+				} else {
+					replyText(exchange, 304, "");
+				}
+			}
+			case "stop", "kill" -> {
+				if (container.transition("exited")) {
+					emit(container, "die");
+					emit(container, "stop");
+					replyText(exchange, 204, "");
+				} else {
+					replyText(exchange, 304, "");
+				}
+			}
+			case "pause" -> {
+				container.transition("paused");
+				emit(container, "pause");
+				replyText(exchange, 204, "");
+			}
+			case "unpause" -> {
+				container.transition("running");
+				emit(container, "unpause");
+				replyText(exchange, 204, "");
+			}
+			case "rename" -> {
+				container.name = query.get("name");
+				emit(container, "rename");
+				replyText(exchange, 204, "");
+			}
+			case "remove" -> {
+				containers.remove(container.id);
+				if (container.transition("exited")) {
+					emit(container, "die");
+				}
+				emit(container, "destroy");
+				replyText(exchange, 204, "");
+			}
+			case "exec-create" -> reply(exchange, 201, Map.of("Id", UUID.randomUUID().toString().replace("-", "")));
+			case "stats" -> reply(exchange, 200, container.stats());
+			// an agent that has not printed anything yet
+			case "logs" -> replyText(exchange, 200, "");
+			default -> reply(exchange, 501, Map.of("message", operation + " is not supported by the fake daemon"));
+		}
+	}
+
+	private void create(HttpExchange exchange, Map<String, String> query) throws IOException {
+		JsonNode body = MAPPER.readTree(exchange.getRequestBody());
+		String name = query.getOrDefault("name", "fake-" + UUID.randomUUID());
+		synchronized (containers) {
+			if (find(name) != null) {
+				reply(exchange, 409, Map.of("message",
+						"Conflict. The container name \"/" + name + "\" is already in use"));
+				return;
+			}
+			int address = addresses.incrementAndGet();
+			FakeContainer container = new FakeContainer(id(), name, body.path("Image").asText("coding-agent:latest"),
+					hostPort(body), "172.17." + address / 250 % 250 + "." + (address % 250 + 2));
+			containers.put(container.id, container);
+			emit(container, "create");
+			reply(exchange, 201, Map.of("Id", container.id, "Warnings", List.of()));
+		}
+	}
+
+	private List<Map<String, Object>> list(Map<String, String> query) throws IOException {
+		boolean all = "1".equals(query.get("all")) || "true".equals(query.get("all"));
+		List<String> names = filter(query, "name");
+		List<Map<String, Object>> listed = new ArrayList<>();
+		for (FakeContainer container : containers.values()) {
+			if (!all && !"running".equals(container.state)) {
+				continue;
+			}
+			// like the daemon, the name filter matches substrings
+			if (!names.isEmpty() && names.stream().noneMatch(container.name::contains)) {
+				continue;
+			}
+			listed.add(container.summary());
+		}
+		return listed;
+	}
+
+	/**
+	 * Streams events as JSON objects until the client disconnects or the daemon closes. Only
+	 * the event filter is honoured, every event here is a container event.
+	 */
+	private void events(HttpExchange exchange, Map<String, String> query) throws IOException, InterruptedException {
+		List<String> actions = filter(query, "event");
+		BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+		subscribers.add(queue);
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream body = exchange.getResponseBody();
+			body.flush();
+			while (true) {
+				Object event = queue.take();
+				if (event == END_OF_STREAM) {
+					return;
+				}
+				@SuppressWarnings("unchecked")
+				Map<String, Object> fields = (Map<String, Object>) event;
+				if (!actions.isEmpty() && !actions.contains(fields.get("Action"))) {
+					continue;
+				}
+				body.write(MAPPER.writeValueAsBytes(fields));
+				body.write('\n');
+				body.flush(); // throws once the client is gone
+			}
+		} catch (IOException e) {
+			// subscriber disconnected
+		} finally {
+			subscribers.remove(queue);
+		}
+	}
+
+	private void emit(FakeContainer container, String action) {
+		long nanos = System.currentTimeMillis() * 1_000_000;
+		Map<String, Object> event = Map.of(
+				"Type", "container",
+				"Action", action,
+				"status", action,
+				"id", container.id,
+				"from", container.image,
+				"time", nanos / 1_000_000_000,
+				"timeNano", nanos,
+				"Actor", Map.of("ID", container.id, "Attributes", Map.of("name", container.name, "image", container.image)));
+		subscribers.forEach(queue -> queue.add(event));
+	}
+
+	private FakeContainer find(String idOrName) {
+		FakeContainer byId = containers.get(idOrName);
+		if (byId != null) {
+			return byId;
+		}
+		String name = idOrName.startsWith("/") ? idOrName.substring(1) : idOrName;
+		for (FakeContainer container : containers.values()) {
+			if (container.name.equals(name) || (idOrName.length() >= 12 && container.id.startsWith(idOrName))) {
+				return container;
+			}
+		}
+		return null;
+	}
+
+	private static Map<String, Object> image() {
+		return Map.of(
+				"Id", "sha256:" + "f".repeat(64),
+				"RepoTags", List.of("coding-agent:latest"),
+				"RepoDigests", List.of(),
+				"Created", 0,
+				"Size", 1_500_000_000L);
+	}
+
+	private static String id() {
+		return (UUID.randomUUID().toString() + UUID.randomUUID()).replace("-", "");
+	}
+
+	// {"6080/tcp": [{"HostPort": "20000"}]}, null when nothing is published
+	private static String hostPort(JsonNode body) {
+		JsonNode bindings = body.path("HostConfig").path("PortBindings").path(FakeContainer.VNC_PORT + "/tcp");
+		String port = bindings.isArray() && !bindings.isEmpty() ? bindings.get(0).path("HostPort").asText(null) : null;
+		return port == null || port.isEmpty() ? null : port;
+	}
+
+	// filters={"name":["agent-job-1"]}, both the list and the map form
+	private static List<String> filter(Map<String, String> query, String key) throws IOException {
+		String filters = query.get("filters");
+		if (filters == null) {
+			return List.of();
+		}
+		JsonNode values = MAPPER.readTree(filters).path(key);
+		if (values.isArray()) {
+			return MAPPER.convertValue(values, new TypeReference<List<String>>() { });
+		}
+		if (values.isObject()) {
+			List<String> keys = new ArrayList<>();
+			values.fieldNames().forEachRemaining(keys::add);
+			return keys;
+		}
+		return List.of();
+	}
+
+	private static Map<String, String> query(String raw) {
+		Map<String, String> query = new HashMap<>();
+		if (raw == null) {
+			return query;
+		}
+		for (String pair : raw.split("&")) {
+			int eq = pair.indexOf('=');
+			String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+			query.put(key, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+		}
+		return query;
+	}
+
+	private static void reply(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = MAPPER.writeValueAsBytes(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	private static void replyText(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain");
+		// 204 and 304 must not carry a body, -1 tells the server so
+		exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+		if (bytes.length > 0) {
+			exchange.getResponseBody().write(bytes);
+		}
+	}
+
+	private static final class FakeContainer {
+
+		static final int VNC_PORT = 6080;
+
+		final String id;
+		final String image;
+		final String hostPort;
+		final String ipAddress;
+		final long created = System.currentTimeMillis() / 1000;
+		volatile String name;
+		volatile String state = "created";
+		private final AtomicLong cpuNanos = new AtomicLong();
+
+		FakeContainer(String id, String name, String image, String hostPort, String ipAddress) {
+			this.id = id;
+			this.name = name;
+			this.image = image;
+			this.hostPort = hostPort;
+			this.ipAddress = ipAddress;
+		}
+
+		// false when the container already was in that state
+		synchronized boolean transition(String next) {
+			if (next.equals(state)) {
+				return false;
+			}
+			state = next;
+			return true;
+		}
+
+		Map<String, Object> summary() {
+			Map<String, Object> summary = new LinkedHashMap<>();
+			summary.put("Id", id);
+			summary.put("Names", List.of("/" + name));
+			summary.put("Image", image);
+			summary.put("Created", created);
+			summary.put("State", state);
+			summary.put("Status", "running".equals(state) ? "Up" : state);
+			summary.put("Ports", hostPort == null
+					? List.of(Map.of("PrivatePort", VNC_PORT, "Type", "tcp"))
+					: List.of(Map.of("PrivatePort", VNC_PORT, "PublicPort", Integer.parseInt(hostPort), "Type", "tcp")));
+			return summary;
+		}
+
+		Map<String, Object> inspect() {
+			Map<String, Object> bindings = hostPort == null
+					? Map.of()
+					: Map.of(VNC_PORT + "/tcp", List.of(Map.of("HostIp", "", "HostPort", hostPort)));
+			Map<String, Object> inspect = new LinkedHashMap<>();
+			inspect.put("Id", id);
+			inspect.put("Name", "/" + name);
+			inspect.put("Image", image);
+			inspect.put("State", Map.of(
+					"Status", state,
+					"Running", "running".equals(state) || "paused".equals(state),
+					"Paused", "paused".equals(state)));
+			inspect.put("HostConfig", Map.of("PortBindings", bindings, "NetworkMode", NETWORK));
+			inspect.put("NetworkSettings", Map.of(
+					"Ports", bindings,
+					"Networks", Map.of(NETWORK, Map.of("IPAddress", ipAddress))));
+			return inspect;
+		}
+
+		// a busy agent: about a tenth of a core and some traffic on every sample
+		Map<String, Object> stats() {
+			long total = cpuNanos.addAndGet(100_000_000);
+			long system = System.nanoTime();
+			return Map.of(
+					"read", Instant.now().toString(),
+					"cpu_stats", Map.of("cpu_usage", Map.of("total_usage", total), "system_cpu_usage", system, "online_cpus", 1),
+					"precpu_stats", Map.of("cpu_usage", Map.of("total_usage", total - 100_000_000), "system_cpu_usage", system - 1_000_000_000L, "online_cpus", 1),
+					"memory_stats", Map.of("usage", 512L * 1024 * 1024, "limit", 2L * 1024 * 1024 * 1024),
+					"networks", Map.of("eth0", Map.of("rx_bytes", total / 1000, "tx_bytes", total / 1000)));
+		}
+	}
+}
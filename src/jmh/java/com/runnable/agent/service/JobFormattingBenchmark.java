@@ -0,0 +1,77 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobSummary;
+import com.runnable.agent.repository.JobsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of turning jobs, containers and images into list-jobs / list-containers /
+ * list-images output, with the daemon and database answering instantly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobFormattingBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	int size;
+
+	private BenchmarkFixtures fixtures;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		JobsRepository jobsRepository = mock(JobsRepository.class);
+		List<JobSummary> summaries = BenchmarkFixtures.startedJobs(size).stream()
+				.map(job -> new JobSummary(job.getJobId(), job.getJobName(), job.getJobStatus(), job.getContainerId()))
+				.toList();
+		when(jobsRepository.findAllByOrderByJobIdDesc(any(Limit.class), eq(JobSummary.class))).thenReturn(summaries);
+		fixtures = new BenchmarkFixtures(
+				StubDocker.create(0, StubDocker.containers(size), StubDocker.images(size)), jobsRepository, 16);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+
+	@Benchmark
+	public List<String> listJobs() {
+		return fixtures.jobService.getJobSummaries(null, null, size).stream()
+				.map(fixtures.jobService::describe)
+				.toList();
+	}
+
+	@Benchmark
+	public List<String> getAllContainers() {
+		return fixtures.jobService.getAllContainers();
+	}
+
+	@Benchmark
+	public List<String> getAllImages() {
+		return fixtures.jobService.getAllImages();
+	}
+}
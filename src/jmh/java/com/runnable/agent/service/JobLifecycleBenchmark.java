@@ -0,0 +1,111 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobActionResult;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * launchClaimed, what a worker runs for a CREATE task it claimed, and stopAllJobs against a
+ * daemon that takes latencyMillis per command, to see how much of job start/stop time is ours
+ * versus Docker's and how bulk stop scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobLifecycleBenchmark {
+
+	@Param({"0", "20"})
+	long latencyMillis;
+
+	@Param({"10", "1000"})
+	int runningJobs;
+
+	@Param({"16"})
+	int bulkParallelism;
+
+	private BenchmarkFixtures fixtures;
+	private final AtomicInteger ids = new AtomicInteger();
+	private final AtomicReference<Jobs> lastSaved = new AtomicReference<>();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		JobsRepository jobsRepository = mock(JobsRepository.class);
+		when(jobsRepository.save(any(Jobs.class))).thenAnswer(invocation -> {
+			Jobs job = invocation.getArgument(0);
+			if (job.getJobId() == 0) {
+				job.setJobId(ids.incrementAndGet());
+			}
+			lastSaved.set(job);
+			return job;
+		});
+		// every launch gets a job freshly submitted as PENDING
+		when(jobsRepository.findById(anyInt())).thenAnswer(invocation -> {
+			Jobs job = new Jobs("Build a todo app in React", JobStatus.PENDING);
+			job.setJobId(invocation.getArgument(0));
+			job.setJobClass(fixtures.admissionController.resolveClass(null));
+			return Optional.of(job);
+		});
+		// fresh entities every call, stopAllJobs flips them to STOPPED
+		when(jobsRepository.findByJobStatusAndJobIdGreaterThanOrderByJobId(eq(JobStatus.STARTED), anyInt(), any(Limit.class)))
+				.thenAnswer(invocation -> {
+					int after = invocation.getArgument(1);
+					Limit limit = invocation.getArgument(2);
+					return BenchmarkFixtures.startedJobs(runningJobs).stream()
+							.filter(job -> job.getJobId() > after)
+							.limit(limit.max())
+							.toList();
+				});
+		fixtures = new BenchmarkFixtures(StubDocker.create(latencyMillis, List.of(), List.of()), jobsRepository, bulkParallelism);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+
+	@Benchmark
+	public boolean launchClaimed() {
+		boolean created = fixtures.jobService.launchClaimed(ids.incrementAndGet(), 1);
+		// the stub never emits die events, hand the port back so the range does not run dry
+		Integer port = lastSaved.get().getVncPort();
+		if (port != null) {
+			fixtures.portAllocator.release(port);
+		}
+		return created;
+	}
+
+	@Benchmark
+	public List<JobActionResult> stopAllJobs() {
+		return fixtures.jobService.stopAllJobs();
+	}
+}
@@ -0,0 +1,262 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.configuration.DockerClientConfiguration;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobTaskRepository;
+import com.runnable.agent.repository.JobsRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Open-loop load test of JobService against a FakeDockerDaemon, through the production
+ * path: submitJob, the job_tasks queue drained by a JobQueueWorker, admission, the real
+ * docker-java client, DockerCallGuard, port leasing and the event-fed state cache, on
+ * Postgres. Jobs arrive at a fixed rate no matter how slow earlier ones are; each one is
+ * submitted, lists the first page of jobs, waits until it is STARTED, runs for a while and
+ * is stopped. Prints throughput and latency percentiles per step, and what the daemon was
+ * asked. "start" runs from the submit to STARTED, so it includes queueing, claim and lease.
+ *
+ * The queue claims with FOR UPDATE SKIP LOCKED and RETURNING, so it needs Postgres: the one
+ * at -Dload.jdbc-url, user and password in the URL, or else a throwaway Testcontainers one.
+ *
+ *   ./mvnw -Pbenchmarks test-compile exec:exec@load -Dload.rate=1200 -Dload.latency-millis=50
+ */
+public final class JobLoadDriver {
+
+	private static final int LIST_PAGE_SIZE = 50;
+	private static final Set<JobStatus> UNSETTLED = EnumSet.of(JobStatus.PENDING, JobStatus.QUEUED, JobStatus.CREATING);
+	// longer than the admission max-wait, a job still unsettled then is counted as failed
+	private static final Duration START_TIMEOUT = Duration.ofMinutes(10);
+
+	private JobLoadDriver() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int jobsPerMinute = Integer.getInteger("load.rate", 600);
+		Duration duration = Duration.parse(System.getProperty("load.duration", "PT1M"));
+		Duration runTime = Duration.parse(System.getProperty("load.run-time", "PT5S"));
+		Duration latency = Duration.ofMillis(Long.getLong("load.latency-millis", 20));
+		double failureRate = Double.parseDouble(System.getProperty("load.failure-rate", "0"));
+		int parallelism = Integer.getInteger("load.parallelism", 16);
+		String jdbcUrl = System.getProperty("load.jdbc-url", "");
+		long pollMillis = Long.getLong("load.poll-millis", 10);
+
+		try (PostgreSQLContainer<?> postgres = jdbcUrl.isBlank() ? new PostgreSQLContainer<>("postgres:16-alpine") : null;
+			 FakeDockerDaemon daemon = new FakeDockerDaemon(latency, failureRate, 1_000_000, Long.MAX_VALUE / 4)
+					 // the event stream is long lived, only its subscription should cost a round-trip
+					 .latency("events", Duration.ZERO)
+					 .start()) {
+			HikariConfig hikari = new HikariConfig();
+			if (postgres != null) {
+				postgres.start();
+				hikari.setJdbcUrl(postgres.getJdbcUrl());
+				hikari.setUsername(postgres.getUsername());
+				hikari.setPassword(postgres.getPassword());
+			} else {
+				hikari.setJdbcUrl(jdbcUrl);
+			}
+			hikari.setMaximumPoolSize(Math.max(10, parallelism * 2));
+			try (HikariDataSource dataSource = new HikariDataSource(hikari);
+				 AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+				context.registerBean(DataSource.class, () -> dataSource);
+				context.register(QueueDatabaseConfig.class);
+				context.refresh();
+				JobsRepository jobsRepository = context.getBean(JobsRepository.class);
+				JobTaskRepository jobTaskRepository = context.getBean(JobTaskRepository.class);
+				BenchmarkFixtures fixtures = new BenchmarkFixtures(
+						DockerClientConfiguration.createClient(daemon.endpoint(), BenchmarkFixtures.defaultProperties()),
+						jobsRepository, jobTaskRepository, parallelism);
+				// production queue settings, the poll interval is part of what a job waits
+				JobQueueWorker worker = new JobQueueWorker(jobTaskRepository, fixtures.jobService, "load-driver",
+						Duration.ofSeconds(30), Long.getLong("load.queue-poll-millis", 500),
+						Integer.getInteger("load.queue-in-flight", 32), 3, Duration.ofMinutes(5));
+				worker.start();
+				try {
+					Report report = run(fixtures.jobService, jobsRepository, jobsPerMinute, duration, runTime, pollMillis);
+					report.print(jobsPerMinute, duration, latency, failureRate);
+					System.out.println();
+					System.out.printf("%-14s %10s %10s%n", "daemon call", "count", "failed");
+					daemon.callCounts().forEach((operation, counts) ->
+							System.out.printf("%-14s %10d %10d%n", operation, counts[0], counts[1]));
+					System.out.printf("containers left on the daemon: %d%n", daemon.containerCount());
+				} finally {
+					worker.stop();
+					fixtures.close();
+				}
+			}
+		}
+	}
+
+	private static Report run(JobService jobService, JobsRepository jobsRepository, int jobsPerMinute,
+							  Duration duration, Duration runTime, long pollMillis) throws InterruptedException {
+		Report report = new Report();
+		AtomicInteger sequence = new AtomicInteger();
+		long intervalNanos = TimeUnit.MINUTES.toNanos(1) / jobsPerMinute;
+		long started = System.nanoTime();
+		try (ExecutorService jobs = Executors.newVirtualThreadPerTaskExecutor()) {
+			ScheduledExecutorService arrivals = Executors.newSingleThreadScheduledExecutor();
+			arrivals.scheduleAtFixedRate(() -> jobs.execute(() -> lifecycle(jobService, jobsRepository,
+					"Build a todo app in React #" + sequence.incrementAndGet(), runTime, pollMillis, report)),
+					0, intervalNanos, TimeUnit.NANOSECONDS);
+			Thread.sleep(duration.toMillis());
+			arrivals.shutdownNow();
+			// closing the executor waits for the jobs still running to be stopped
+		}
+		report.elapsedNanos = System.nanoTime() - started;
+		return report;
+	}
+
+	private static void lifecycle(JobService jobService, JobsRepository jobsRepository, String jobName,
+								  Duration runTime, long pollMillis, Report report) {
+		long submitted = System.nanoTime();
+		int jobId;
+		try {
+			jobId = jobService.submitJob(jobName, null);
+			report.submit.record(System.nanoTime() - submitted, true);
+		} catch (RuntimeException e) {
+			report.submit.record(System.nanoTime() - submitted, false);
+			return;
+		}
+
+		long start = System.nanoTime();
+		try {
+			jobService.listJobs(null, null, LIST_PAGE_SIZE);
+			report.list.record(System.nanoTime() - start, true);
+		} catch (RuntimeException e) {
+			report.list.record(System.nanoTime() - start, false);
+		}
+
+		boolean started;
+		try {
+			started = awaitSettled(jobsRepository, jobId, pollMillis) == JobStatus.STARTED;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		report.start.record(System.nanoTime() - submitted, started);
+		if (!started) {
+			return;
+		}
+
+		try {
+			Thread.sleep(runTime.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		start = System.nanoTime();
+		boolean stopped = jobService.stopJobById(jobId);
+		report.stop.record(System.nanoTime() - start, stopped);
+	}
+
+	// by primary key every pollMillis, which is also the resolution of the start latency
+	private static JobStatus awaitSettled(JobsRepository jobsRepository, int jobId, long pollMillis)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + START_TIMEOUT.toNanos();
+		while (System.nanoTime() - deadline < 0) {
+			Optional<JobStatus> status = jobsRepository.findById(jobId).map(Jobs::getJobStatus);
+			if (status.isEmpty() || !UNSETTLED.contains(status.get())) {
+				return status.orElse(null);
+			}
+			Thread.sleep(pollMillis);
+		}
+		return null;
+	}
+
+	@Configuration
+	@EnableJpaRepositories(basePackageClasses = JobsRepository.class)
+	static class QueueDatabaseConfig {
+
+		@Bean
+		LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+			HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+			vendorAdapter.setGenerateDdl(true);
+			LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+			factory.setDataSource(dataSource);
+			factory.setJpaVendorAdapter(vendorAdapter);
+			factory.setPackagesToScan(Jobs.class.getPackageName());
+			return factory;
+		}
+
+		@Bean
+		JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+			return new JpaTransactionManager(entityManagerFactory);
+		}
+	}
+
+	private static final class Report {
+
+		final Samples submit = new Samples();
+		final Samples start = new Samples();
+		final Samples list = new Samples();
+		final Samples stop = new Samples();
+		long elapsedNanos;
+
+		void print(int jobsPerMinute, Duration duration, Duration latency, double failureRate) {
+			System.out.printf("%d jobs/minute for %s, daemon latency %d ms, failure rate %.3f%n",
+					jobsPerMinute, duration, latency.toMillis(), failureRate);
+			System.out.printf("%-8s %8s %8s %10s %9s %9s %9s %9s %9s%n",
+					"step", "ok", "failed", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+			submit.print("submit", elapsedNanos);
+			start.print("start", elapsedNanos);
+			list.print("list", elapsedNanos);
+			stop.print("stop", elapsedNanos);
+		}
+	}
+
+	// every latency is kept, a run is at most some hundred thousand operations
+	private static final class Samples {
+
+		private long[] nanos = new long[1024];
+		private int count;
+		private int failed;
+
+		synchronized void record(long elapsed, boolean ok) {
+			if (!ok) {
+				failed++;
+			}
+			if (count == nanos.length) {
+				nanos = Arrays.copyOf(nanos, count * 2);
+			}
+			nanos[count++] = elapsed;
+		}
+
+		synchronized void print(String step, long elapsedNanos) {
+			long[] sorted = Arrays.copyOf(nanos, count);
+			Arrays.sort(sorted);
+			System.out.printf("%-8s %8d %8d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+					step, count - failed, failed, count / (elapsedNanos / 1e9),
+					millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 0.999),
+					millis(sorted, 1.0));
+		}
+
+		private static double millis(long[] sorted, double quantile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(quantile * sorted.length) - 1;
+			return sorted[Math.max(0, index)] / 1e6;
+		}
+	}
+}
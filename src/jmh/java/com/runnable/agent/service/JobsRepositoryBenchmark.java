@@ -0,0 +1,162 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.JobSummary;
+import com.runnable.agent.dto.JobView;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobsRepository reads against an embedded H2 database with the entity's indexes, to compare
+ * whole-table reads with the keyset pages and projections list-jobs and the REST API use.
+ * Allocation per call is in the gc.alloc.rate.norm column the benchmarks profile adds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobsRepositoryBenchmark {
+
+	private static final JobStatus[] STATUSES = {JobStatus.STARTED, JobStatus.STOPPED, JobStatus.FAILED, JobStatus.REMOVED};
+	private static final int INSERT_BATCH = 10_000;
+
+	@Param({"1000", "100000", "1000000"})
+	int rows;
+
+	private AnnotationConfigApplicationContext context;
+	private JobsRepository jobsRepository;
+	private int middleJobId;
+	private String middleContainerId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = new AnnotationConfigApplicationContext(RepositoryConfig.class);
+		jobsRepository = context.getBean(JobsRepository.class);
+		JdbcTemplate jdbc = new JdbcTemplate(context.getBean(DataSource.class));
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+		for (int i = 0; i < rows; i++) {
+			batch.add(new Object[]{i + 1, "Build a todo app in React #" + i, STATUSES[i % STATUSES.length].name(),
+					StubDocker.containerId(i), 20000 + i % 10000, now, now});
+			if (batch.size() == INSERT_BATCH || i == rows - 1) {
+				jdbc.batchUpdate("insert into jobs (job_id, job_name, job_status, container_id, vnc_port, created_at, updated_at) "
+						+ "values (?, ?, ?, ?, ?, ?, ?)", batch);
+				batch.clear();
+			}
+		}
+		middleJobId = rows / 2;
+		middleContainerId = StubDocker.containerId(middleJobId);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public List<Jobs> findAll() {
+		return jobsRepository.findAll();
+	}
+
+	@Benchmark
+	public List<Jobs> findAllByJobStatus() {
+		return jobsRepository.findAllByJobStatus(JobStatus.STARTED);
+	}
+
+	@Benchmark
+	public long countByJobStatus() {
+		return jobsRepository.countByJobStatus(JobStatus.STARTED);
+	}
+
+	@Benchmark
+	public Jobs findByContainerId() {
+		return jobsRepository.findByContainerId(middleContainerId);
+	}
+
+	@Benchmark
+	public List<Jobs> keysetPage() {
+		return jobsRepository.findByJobIdLessThanOrderByJobIdDesc(middleJobId, Limit.of(51), Jobs.class);
+	}
+
+	// GET /jobs
+	@Benchmark
+	public List<JobView> keysetPageView() {
+		return jobsRepository.findByJobIdLessThanOrderByJobIdDesc(middleJobId, Limit.of(51), JobView.class);
+	}
+
+	// list-jobs STARTED
+	@Benchmark
+	public List<JobSummary> statusPageSummary() {
+		return jobsRepository.findByJobStatusAndJobIdLessThanOrderByJobIdDesc(JobStatus.STARTED, middleJobId,
+				Limit.of(50), JobSummary.class);
+	}
+
+	// one batch of stop-all
+	@Benchmark
+	public List<Jobs> statusBatch() {
+		return jobsRepository.findByJobStatusAndJobIdGreaterThanOrderByJobId(JobStatus.STARTED, middleJobId, Limit.of(500));
+	}
+
+	@Configuration
+	@EnableJpaRepositories(basePackageClasses = JobsRepository.class)
+	static class RepositoryConfig {
+
+		@Bean
+		DataSource dataSource() {
+			return new EmbeddedDatabaseBuilder()
+					.setType(EmbeddedDatabaseType.H2)
+					.setName("jobs-bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE")
+					.build();
+		}
+
+		@Bean
+		LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+			HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+			vendorAdapter.setGenerateDdl(true);
+			LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+			factory.setDataSource(dataSource);
+			factory.setJpaVendorAdapter(vendorAdapter);
+			factory.setPackagesToScan(Jobs.class.getPackageName());
+			return factory;
+		}
+
+		@Bean
+		JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+			return new JpaTransactionManager(entityManagerFactory);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.runnable.agent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.EventsCmd;
+import com.github.dockerjava.api.command.InfoCmd;
+import com.github.dockerjava.api.command.InspectContainerCmd;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.command.InspectImageCmd;
+import com.github.dockerjava.api.command.InspectImageResponse;
+import com.github.dockerjava.api.command.ListContainersCmd;
+import com.github.dockerjava.api.command.ListImagesCmd;
+import com.github.dockerjava.api.command.StartContainerCmd;
+import com.github.dockerjava.api.command.StopContainerCmd;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Image;
+import com.github.dockerjava.api.model.Info;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A DockerClient that answers the commands the job services use, each write command
+ * sleeping for a fixed latency to stand in for the daemon round-trip.
+ */
+final class StubDocker {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private StubDocker() {
+	}
+
+	static DockerClient create(long latencyMillis, List<Container> containers, List<Image> images) {
+		DockerClient client = mock(DockerClient.class);
+
+		CreateContainerCmd create = mock(CreateContainerCmd.class, RETURNS_SELF);
+		when(create.exec()).thenAnswer(invocation -> {
+			pause(latencyMillis);
+			CreateContainerResponse response = new CreateContainerResponse();
+			response.setId(UUID.randomUUID().toString());
+			return response;
+		});
+		when(client.createContainerCmd(anyString())).thenReturn(create);
+
+		StartContainerCmd start = mock(StartContainerCmd.class, RETURNS_SELF);
+		when(start.exec()).thenAnswer(invocation -> pause(latencyMillis));
+		when(client.startContainerCmd(anyString())).thenReturn(start);
+
+		InspectContainerResponse.ContainerState state = mock(InspectContainerResponse.ContainerState.class);
+		when(state.getStatus()).thenReturn("running");
+		InspectContainerResponse inspectResponse = mock(InspectContainerResponse.class);
+		when(inspectResponse.getName()).thenReturn("/agent-bench");
+		when(inspectResponse.getState()).thenReturn(state);
+		InspectContainerCmd inspect = mock(InspectContainerCmd.class, RETURNS_SELF);
+		when(inspect.exec()).thenAnswer(invocation -> {
+			pause(latencyMillis);
+			return inspectResponse;
+		});
+		when(client.inspectContainerCmd(anyString())).thenReturn(inspect);
+
+		StopContainerCmd stop = mock(StopContainerCmd.class, RETURNS_SELF);
+		when(stop.exec()).thenAnswer(invocation -> pause(latencyMillis));
+		when(client.stopContainerCmd(anyString())).thenReturn(stop);
+
+		ListContainersCmd list = mock(ListContainersCmd.class, RETURNS_SELF);
+		when(list.exec()).thenReturn(containers);
+		when(client.listContainersCmd()).thenReturn(list);
+
+		InspectImageCmd inspectImage = mock(InspectImageCmd.class, RETURNS_SELF);
+		when(inspectImage.exec()).thenReturn(MAPPER.convertValue(Map.of(
+				"Id", "sha256:" + String.format("%064x", 0)
+		), InspectImageResponse.class));
+		when(client.inspectImageCmd(anyString())).thenReturn(inspectImage);
+
+		ListImagesCmd listImages = mock(ListImagesCmd.class, RETURNS_SELF);
+		when(listImages.exec()).thenReturn(images);
+		when(client.listImagesCmd()).thenReturn(listImages);
+
+		// practically unlimited capacity, so admission never makes a benchmark wait
+		InfoCmd info = mock(InfoCmd.class, RETURNS_SELF);
+		when(info.exec()).thenReturn(MAPPER.convertValue(Map.of(
+				"NCPU", 1_000_000,
+				"MemTotal", Long.MAX_VALUE / 4
+		), Info.class));
+		when(client.infoCmd()).thenReturn(info);
+
+		// the event stream never emits, subscribing just hands the callback back
+		EventsCmd events = mock(EventsCmd.class, RETURNS_SELF);
+		when(events.exec(any())).thenAnswer(invocation -> invocation.getArgument(0, ResultCallback.class));
+		when(client.eventsCmd()).thenReturn(events);
+
+		return client;
+	}
+
+	// real model objects rather than mocks, so formatting benchmarks measure getters, not Mockito
+	static List<Container> containers(int count) {
+		List<Container> containers = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			boolean running = i % 2 == 0;
+			containers.add(MAPPER.convertValue(Map.of(
+					"Id", containerId(i),
+					"Names", List.of("/agent-" + i),
+					"State", running ? "running" : "exited",
+					"Status", running ? "Up 5 minutes" : "Exited (0) 1 minute ago",
+					"Ports", List.of(Map.of("PrivatePort", 6080, "PublicPort", 20000 + i % 10000, "Type", "tcp"))
+			), Container.class));
+		}
+		return containers;
+	}
+
+	static List<Image> images(int count) {
+		List<Image> images = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			images.add(MAPPER.convertValue(Map.of(
+					"Id", "sha256:" + String.format("%064x", i),
+					"RepoTags", List.of("coding-agent:" + i),
+					"Size", 1_500_000_000L
+			), Image.class));
+		}
+		return images;
+	}
+
+	static String containerId(int i) {
+		return String.format("%064x", i);
+	}
+
+	private static Void pause(long latencyMillis) throws InterruptedException {
+		if (latencyMillis > 0) {
+			Thread.sleep(latencyMillis);
+		}
+		return null;
+	}
+}
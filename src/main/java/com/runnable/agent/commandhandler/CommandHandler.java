@@ -2,5 +2,5 @@ package com.runnable.agent.commandhandler;
 
 @FunctionalInterface
 public interface CommandHandler {
-    void handle(String[] args);
+    void handle(String[] args, CommandOutput out);
 }
@@ -0,0 +1,61 @@
+package com.runnable.agent.commandhandler;
+
+import java.io.PrintStream;
+
+/**
+ * Where a command writes its output. Interactive commands print straight to the terminal,
+ * batch commands are captured so each one can be reported as a single result. A command
+ * that calls {@link #fail} is reported as failed.
+ */
+public class CommandOutput {
+
+    private final PrintStream stream;
+    private final StringBuilder captured = new StringBuilder();
+    private boolean failed;
+
+    private CommandOutput(PrintStream stream) {
+        this.stream = stream;
+    }
+
+    public static CommandOutput console() {
+        return new CommandOutput(System.out);
+    }
+
+    public static CommandOutput capturing() {
+        return new CommandOutput(null);
+    }
+
+    public void println(Object line) {
+        if (stream != null) {
+            stream.println(line);
+        } else {
+            if (!captured.isEmpty()) {
+                captured.append('\n');
+            }
+            captured.append(line);
+        }
+    }
+
+    public void printf(String format, Object... args) {
+        String text = String.format(format, args);
+        println(text.replaceFirst("\\R$", ""));
+    }
+
+    public void fail(String line) {
+        failed = true;
+        println(line);
+    }
+
+    // batch mode, output only counts while the command runs
+    public boolean isCapturing() {
+        return stream == null;
+    }
+
+    public boolean failed() {
+        return failed;
+    }
+
+    public String text() {
+        return captured.toString();
+    }
+}
@@ -0,0 +1,230 @@
+package com.runnable.agent.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.runnable.agent.dto.CreateJobRequest;
+import com.runnable.agent.dto.JobPriority;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import com.runnable.agent.service.AdmissionController;
+import com.runnable.agent.service.JobService;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.database.JpaItemWriter;
+import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The bulkIngest batch job. The ingest step reads a task list (CSV of name[,jobClass], or
+ * JSON lines of CreateJobRequest) and inserts PENDING jobs in chunks, batched by Hibernate
+ * thanks to the pooled jobs_seq ids. The launch step then splits the campaign's id range
+ * into partitions that create containers in parallel. Both steps pick up where they left
+ * off when the same file and campaign are run again after a crash.
+ */
+@Configuration
+public class BulkIngestConfiguration {
+
+    public static final String JOB_NAME = "bulkIngest";
+    public static final String INGEST_STEP = "ingest";
+    public static final String LAUNCH_WORKER_STEP = "launchWorker";
+    // QUEUED and CREATING were in flight when the previous run stopped
+    private static final List<JobStatus> LAUNCHABLE = List.of(JobStatus.PENDING, JobStatus.QUEUED, JobStatus.CREATING);
+
+    private final int chunkSize;
+    private final int parallelism;
+    private final int launchPageSize;
+
+    public BulkIngestConfiguration(@Value("${runnable.ingest.chunk-size:500}") int chunkSize,
+                                   @Value("${runnable.ingest.parallelism:8}") int parallelism,
+                                   @Value("${runnable.ingest.launch-page-size:20}") int launchPageSize) {
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.launchPageSize = launchPageSize;
+    }
+
+    @Bean
+    public Job bulkIngestJob(JobRepository jobRepository, Step ingestStep, Step launchStep) {
+        return new JobBuilder(JOB_NAME, jobRepository)
+                .start(ingestStep)
+                .next(launchStep)
+                .build();
+    }
+
+    // rows that fail validation, e.g. an unknown job class, are skipped rather than failing the campaign
+    @Bean
+    public Step ingestStep(JobRepository jobRepository,
+                           PlatformTransactionManager transactionManager,
+                           FlatFileItemReader<CreateJobRequest> ingestReader,
+                           ItemProcessor<CreateJobRequest, Jobs> ingestProcessor,
+                           JpaItemWriter<Jobs> ingestWriter) {
+        return new StepBuilder(INGEST_STEP, jobRepository)
+                .<CreateJobRequest, Jobs>chunk(chunkSize, transactionManager)
+                .reader(ingestReader)
+                .processor(ingestProcessor)
+                .writer(ingestWriter)
+                .faultTolerant()
+                .skipPolicy((throwable, skipCount) -> throwable instanceof IllegalArgumentException)
+                .build();
+    }
+
+    @Bean
+    public Step launchStep(JobRepository jobRepository, Step launchWorkerStep, Partitioner launchPartitioner) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ingest-launch-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(parallelism);
+        return new StepBuilder("launch", jobRepository)
+                .partitioner(LAUNCH_WORKER_STEP, launchPartitioner)
+                .step(launchWorkerStep)
+                .gridSize(parallelism)
+                .taskExecutor(executor)
+                .build();
+    }
+
+    /**
+     * No transaction around the launches: every status change has to be committed the moment
+     * it is made, so a crash never rolls a job with a container back to PENDING.
+     */
+    @Bean
+    public Step launchWorkerStep(JobRepository jobRepository, Tasklet launchTasklet) {
+        return new StepBuilder(LAUNCH_WORKER_STEP, jobRepository)
+                .tasklet(launchTasklet, new ResourcelessTransactionManager())
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public FlatFileItemReader<CreateJobRequest> ingestReader(@Value("#{jobParameters['file']}") String file,
+                                                             ObjectMapper objectMapper) {
+        boolean jsonLines = file.endsWith(".jsonl") || file.endsWith(".ndjson");
+        LineMapper<CreateJobRequest> lineMapper = jsonLines
+                ? (line, lineNumber) -> objectMapper.readValue(line, CreateJobRequest.class)
+                : csvLineMapper();
+        return new FlatFileItemReaderBuilder<CreateJobRequest>()
+                .name("ingestReader") // keeps the line count in the step context for restarts
+                .resource(new FileSystemResource(file))
+                .comments("#")
+                .lineMapper(lineMapper)
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public ItemProcessor<CreateJobRequest, Jobs> ingestProcessor(@Value("#{jobParameters['campaign']}") String campaign,
+                                                                 AdmissionController admissionController) {
+        return request -> {
+            if (request.name() == null || request.name().isBlank()) {
+                return null;
+            }
+            String name = request.name().trim();
+            if (name.length() > 100) {
+                throw new IllegalArgumentException("Job name longer than 100 characters: " + name);
+            }
+            Jobs job = new Jobs(name, JobStatus.PENDING);
+            job.setJobClass(admissionController.resolveClass(request.jobClass()));
+            job.setCampaign(campaign);
+            // bulk work yields to interactive jobs and shares capacity as one owner unless told otherwise
+            job.setOwner(request.owner() == null || request.owner().isBlank() ? campaign : request.owner());
+            job.setPriority(request.priority() == null ? JobPriority.BATCH : request.priority());
+            return job;
+        };
+    }
+
+    @Bean
+    public JpaItemWriter<Jobs> ingestWriter(EntityManagerFactory entityManagerFactory) {
+        return new JpaItemWriterBuilder<Jobs>()
+                .entityManagerFactory(entityManagerFactory)
+                .usePersist(true)
+                .build();
+    }
+
+    // equal id ranges, ids of one campaign are dense apart from the odd skipped row
+    @Bean
+    @StepScope
+    public Partitioner launchPartitioner(@Value("#{jobParameters['campaign']}") String campaign,
+                                         JobsRepository jobsRepository) {
+        return gridSize -> {
+            Map<String, ExecutionContext> partitions = new HashMap<>();
+            Optional<Jobs> first = jobsRepository.findFirstByCampaignOrderByJobIdAsc(campaign);
+            Optional<Jobs> last = jobsRepository.findFirstByCampaignOrderByJobIdDesc(campaign);
+            if (first.isEmpty() || last.isEmpty()) {
+                return partitions;
+            }
+            int min = first.get().getJobId();
+            int max = last.get().getJobId();
+            int span = (max - min) / gridSize + 1;
+            for (int i = 0; i < gridSize && min + i * span <= max; i++) {
+                ExecutionContext context = new ExecutionContext();
+                context.putInt("minJobId", min + i * span);
+                context.putInt("maxJobId", Math.min(max, min + (i + 1) * span - 1));
+                partitions.put("partition" + i, context);
+            }
+            return partitions;
+        };
+    }
+
+    // one page per call, so progress is recorded page by page
+    @Bean
+    @StepScope
+    public Tasklet launchTasklet(@Value("#{jobParameters['campaign']}") String campaign,
+                                 @Value("#{stepExecutionContext['minJobId']}") Integer minJobId,
+                                 @Value("#{stepExecutionContext['maxJobId']}") Integer maxJobId,
+                                 JobsRepository jobsRepository,
+                                 JobService jobService) {
+        int[] after = {minJobId - 1};
+        return (contribution, chunkContext) -> {
+            List<Jobs> page = jobsRepository.findByCampaignAndJobIdGreaterThanAndJobIdLessThanEqualAndJobStatusInOrderByJobId(
+                    campaign, after[0], maxJobId, LAUNCHABLE, Limit.of(launchPageSize));
+            for (Jobs job : page) {
+                after[0] = job.getJobId();
+                if (jobService.resumeLaunch(job.getJobId())) {
+                    contribution.incrementWriteCount(1);
+                } else {
+                    contribution.incrementFilterCount(1);
+                }
+            }
+            return page.size() < launchPageSize ? RepeatStatus.FINISHED : RepeatStatus.CONTINUABLE;
+        };
+    }
+
+    private static LineMapper<CreateJobRequest> csvLineMapper() {
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+        tokenizer.setNames("name", "jobClass", "owner");
+        tokenizer.setStrict(false); // the job class and owner columns are optional
+        DefaultLineMapper<CreateJobRequest> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(fields -> {
+            String jobClass = fields.readString("jobClass");
+            String owner = fields.readString("owner");
+            return new CreateJobRequest(fields.readString("name"), jobClass == null || jobClass.isBlank() ? null : jobClass,
+                    owner == null || owner.isBlank() ? null : owner, null);
+        });
+        return lineMapper;
+    }
+}
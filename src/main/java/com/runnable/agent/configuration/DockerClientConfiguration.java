@@ -1,18 +1,39 @@
 package com.runnable.agent.configuration;
 
 import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.core.DockerClientBuilder;
-import com.github.dockerjava.netty.NettyDockerCmdExecFactory;
+import com.github.dockerjava.core.DefaultDockerClientConfig;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
+import com.github.dockerjava.transport.DockerHttpClient;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties({DockerTransportProperties.class, JobQuotaProperties.class})
 public class DockerClientConfiguration {
 
+    // client for the default daemon, extra endpoints are built by DockerHostRegistry
     @Bean
-    public DockerClient dockerClient() {
-        return DockerClientBuilder.getInstance()
-                .withDockerCmdExecFactory(new NettyDockerCmdExecFactory())
+    public DockerClient dockerClient(DockerTransportProperties properties) {
+        return createClient(properties.host(), properties);
+    }
+
+    public static DockerClient createClient(String host, DockerTransportProperties properties) {
+        DefaultDockerClientConfig.Builder configBuilder = DefaultDockerClientConfig.createDefaultConfigBuilder();
+        if (host != null && !host.isBlank()) {
+            configBuilder.withDockerHost(host);
+        }
+        DefaultDockerClientConfig config = configBuilder.build();
+
+        // no response timeout here: event and log streams stay idle for long stretches,
+        // per-command deadlines are enforced by DockerCallGuard instead
+        DockerHttpClient httpClient = new ApacheDockerHttpClient.Builder()
+                .dockerHost(config.getDockerHost())
+                .sslConfig(config.getSSLConfig())
+                .maxConnections(properties.maxConnections())
+                .connectionTimeout(properties.connectTimeout())
                 .build();
+        return DockerClientImpl.getInstance(config, httpClient);
     }
 }
@@ -0,0 +1,61 @@
+package com.runnable.agent.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Docker transport and call-guard settings, bound from runnable.docker.*.
+ *
+ * @param host              daemon endpoint, defaults to DOCKER_HOST or the local socket
+ * @param maxConnections    connection pool size of the HTTP transport
+ * @param connectTimeout    TCP/socket connect timeout
+ * @param deadlines         per-command deadline, keyed by command name (create, start, stop, list, inspect, ...)
+ * @param defaultDeadline   deadline for commands without an entry in deadlines
+ * @param maxConcurrentCalls bulkhead: calls allowed in flight to the daemon at once
+ * @param bulkheadWait      how long a call may wait for a bulkhead slot before failing
+ * @param failureThreshold  consecutive daemon failures that open the circuit
+ * @param openDuration      how long the circuit stays open before a trial call is let through
+ * @param advertisedAddress address clients use to reach ports published by the default daemon
+ * @param endpoints         additional daemons jobs can be placed on, keyed by host name
+ */
+@ConfigurationProperties(prefix = "runnable.docker")
+public record DockerTransportProperties(
+        String host,
+        Integer maxConnections,
+        Duration connectTimeout,
+        Map<String, Duration> deadlines,
+        Duration defaultDeadline,
+        Integer maxConcurrentCalls,
+        Duration bulkheadWait,
+        Integer failureThreshold,
+        Duration openDuration,
+        String advertisedAddress,
+        Map<String, Endpoint> endpoints
+) {
+    public static final String DEFAULT_HOST = "local";
+
+    /**
+     * @param host              daemon endpoint, e.g. tcp://10.0.0.12:2375 or unix:///var/run/docker2.sock
+     * @param advertisedAddress address clients use to reach ports published on that daemon
+     */
+    public record Endpoint(String host, String advertisedAddress) {}
+
+    public DockerTransportProperties {
+        maxConnections = maxConnections != null ? maxConnections : 100;
+        connectTimeout = connectTimeout != null ? connectTimeout : Duration.ofSeconds(5);
+        deadlines = deadlines != null ? Map.copyOf(deadlines) : Map.of();
+        defaultDeadline = defaultDeadline != null ? defaultDeadline : Duration.ofSeconds(30);
+        maxConcurrentCalls = maxConcurrentCalls != null ? maxConcurrentCalls : 64;
+        bulkheadWait = bulkheadWait != null ? bulkheadWait : Duration.ofSeconds(2);
+        failureThreshold = failureThreshold != null ? failureThreshold : 5;
+        openDuration = openDuration != null ? openDuration : Duration.ofSeconds(15);
+        advertisedAddress = advertisedAddress != null ? advertisedAddress : "localhost";
+        endpoints = endpoints != null ? Map.copyOf(endpoints) : Map.of();
+    }
+
+    public Duration deadlineFor(String command) {
+        return deadlines.getOrDefault(command, defaultDeadline);
+    }
+}
@@ -0,0 +1,79 @@
+package com.runnable.agent.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Resource limits per job class and admission settings, bound from runnable.quotas.*.
+ *
+ * @param defaultClass      class used when a job does not ask for one
+ * @param classes           limits applied to the container of each job class
+ * @param cpuOvercommit     schedulable CPUs per host as a multiple of its cores
+ * @param memoryOvercommit  schedulable memory per host as a multiple of its RAM
+ * @param maxQueued         jobs allowed to wait for capacity before new ones are rejected
+ * @param maxWait           how long a queued job waits for capacity before it fails
+ * @param ownerWeights      share of the capacity each owner gets relative to the others, 1 when not listed
+ * @param preemption        whether a waiting job may pause running jobs of a lower priority
+ * @param preemptAfter      how long a job waits for capacity to free up by itself before it preempts
+ */
+@ConfigurationProperties(prefix = "runnable.quotas")
+public record JobQuotaProperties(
+        String defaultClass,
+        Map<String, JobClass> classes,
+        Double cpuOvercommit,
+        Double memoryOvercommit,
+        Integer maxQueued,
+        Duration maxWait,
+        Map<String, Integer> ownerWeights,
+        Boolean preemption,
+        Duration preemptAfter
+) {
+    public static final String STANDARD = "standard";
+
+    /**
+     * @param cpus       CPU quota in cores, enforced through the CFS period/quota
+     * @param cpuShares  relative weight when the host's CPUs are contended
+     * @param memory     hard memory limit, swap included
+     * @param pidsLimit  maximum processes and threads in the container
+     */
+    public record JobClass(Double cpus, Integer cpuShares, DataSize memory, Long pidsLimit) {
+
+        public JobClass {
+            cpus = cpus != null ? cpus : 1.0;
+            cpuShares = cpuShares != null ? cpuShares : 1024;
+            memory = memory != null ? memory : DataSize.ofGigabytes(2);
+            pidsLimit = pidsLimit != null ? pidsLimit : 512L;
+        }
+    }
+
+    public JobQuotaProperties {
+        defaultClass = defaultClass != null ? defaultClass : STANDARD;
+        classes = classes != null && !classes.isEmpty() ? Map.copyOf(classes)
+                : Map.of(STANDARD, new JobClass(null, null, null, null));
+        cpuOvercommit = cpuOvercommit != null ? cpuOvercommit : 1.0;
+        memoryOvercommit = memoryOvercommit != null ? memoryOvercommit : 1.0;
+        maxQueued = maxQueued != null ? maxQueued : 100;
+        maxWait = maxWait != null ? maxWait : Duration.ofMinutes(5);
+        ownerWeights = ownerWeights != null ? Map.copyOf(ownerWeights) : Map.of();
+        preemption = preemption != null ? preemption : true;
+        preemptAfter = preemptAfter != null ? preemptAfter : Duration.ofSeconds(2);
+        if (!classes.containsKey(defaultClass)) {
+            throw new IllegalArgumentException("Default job class " + defaultClass + " is not configured");
+        }
+    }
+
+    public int weightOf(String owner) {
+        return Math.max(1, ownerWeights.getOrDefault(owner, 1));
+    }
+
+    public JobClass classFor(String name) {
+        JobClass jobClass = classes.get(name);
+        if (jobClass == null) {
+            throw new IllegalArgumentException("Unknown job class " + name);
+        }
+        return jobClass;
+    }
+}
@@ -0,0 +1,58 @@
+package com.runnable.agent.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+
+import java.util.List;
+
+/**
+ * Who may call what. The job API with its SSE streams, the VNC gateway and the Prometheus
+ * endpoint take HTTP Basic against spring.security.user.*. Nothing keeps a session, so there
+ * is no cookie for a CSRF token to protect and CSRF is off. Health stays open for probes.
+ * The inference gateway is for the agent containers, which have no credentials, so it is
+ * open but only to the networks they call from.
+ */
+@Configuration
+public class SecurityConfiguration {
+
+    @Bean
+    @Order(1)
+    public SecurityFilterChain inferenceSecurity(HttpSecurity http,
+                                                 @Value("${runnable.inference.allowed-networks:172.16.0.0/12,127.0.0.1/32,::1/128}")
+                                                 List<String> allowedNetworks) throws Exception {
+        List<IpAddressMatcher> networks = allowedNetworks.stream().map(String::trim).map(IpAddressMatcher::new).toList();
+        return http
+                .securityMatcher("/inference/**")
+                .authorizeHttpRequests(auth -> auth.anyRequest().access((authentication, context) ->
+                        new AuthorizationDecision(networks.stream().anyMatch(network -> network.matches(context.getRequest())))))
+                .csrf(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .build();
+    }
+
+    @Bean
+    @Order(2)
+    public SecurityFilterChain apiSecurity(HttpSecurity http) throws Exception {
+        return http
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers("/actuator/health", "/actuator/health/**", "/error").permitAll()
+                        .requestMatchers("/actuator/prometheus").authenticated()
+                        .requestMatchers("/jobs", "/jobs/**").authenticated()
+                        // the viewer page and its WebSocket, browsers resend Basic credentials on the upgrade
+                        .requestMatchers("/vnc/**").authenticated()
+                        .anyRequest().authenticated())
+                .httpBasic(Customizer.withDefaults())
+                .csrf(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.runnable.agent.configuration;
+
+import com.runnable.agent.controller.VncWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+public class VncGatewayConfiguration implements WebSocketConfigurer {
+
+    private final VncWebSocketHandler vncWebSocketHandler;
+    private final int bufferSize;
+
+    public VncGatewayConfiguration(VncWebSocketHandler vncWebSocketHandler,
+                                   @Value("${runnable.vnc.buffer-size:65536}") int bufferSize) {
+        this.vncWebSocketHandler = vncWebSocketHandler;
+        this.bufferSize = bufferSize;
+    }
+
+    // noVNC asks for the "binary" subprotocol and gives up if the server does not echo it.
+    // The page is served from /vnc/{jobId} too, so the default same-origin check holds.
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        DefaultHandshakeHandler handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols("binary");
+        registry.addHandler(vncWebSocketHandler, "/vnc/*")
+                .setHandshakeHandler(handshakeHandler)
+                .addInterceptors(vncWebSocketHandler);
+    }
+
+    // framebuffer updates come in large frames, one read buffer of the relay fits in one message
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(bufferSize);
+        return container;
+    }
+}
@@ -0,0 +1,79 @@
+package com.runnable.agent.controller;
+
+import com.runnable.agent.dto.GenerateChunk;
+import com.runnable.agent.dto.GenerateRequest;
+import com.runnable.agent.service.InferenceGateway;
+import com.runnable.agent.service.InferenceRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Ollama compatible /api/generate for the agent containers, which get this base URL as
+ * OLLAMA_API. Streams NDJSON chunks like Ollama does, or one JSON object with stream=false.
+ */
+@RestController
+@RequestMapping("/inference")
+public class InferenceController {
+
+    private final InferenceGateway inferenceGateway;
+
+    public InferenceController(InferenceGateway inferenceGateway) {
+        this.inferenceGateway = inferenceGateway;
+    }
+
+    @PostMapping("/api/generate")
+    public ResponseEntity<ResponseBodyEmitter> generate(@RequestBody GenerateRequest request) {
+        if (request.prompt() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        String model = inferenceGateway.resolveModel(request.model());
+        boolean stream = request.stream() == null || request.stream();
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L); // the gateway's own timeouts apply
+        StringBuilder response = new StringBuilder();
+        InferenceGateway.Subscription subscription;
+        try {
+            subscription = inferenceGateway.generate(model, request.prompt(),
+                    token -> {
+                        if (stream) {
+                            send(emitter, new GenerateChunk(model, token, false, null));
+                        } else {
+                            response.append(token);
+                        }
+                    },
+                    () -> {
+                        send(emitter, new GenerateChunk(model, stream ? "" : response.toString(), true, null));
+                        emitter.complete();
+                    },
+                    error -> {
+                        send(emitter, new GenerateChunk(model, "", true, error.getMessage()));
+                        emitter.complete();
+                    });
+        } catch (InferenceRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+        return ResponseEntity.ok()
+                .contentType(stream ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(emitter);
+    }
+
+    private static void send(ResponseBodyEmitter emitter, GenerateChunk chunk) {
+        try {
+            emitter.send(chunk, MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // drops this subscriber
+        }
+    }
+}
@@ -1,27 +1,198 @@
 package com.runnable.agent.controller;
 
-import org.springframework.http.HttpStatusCode;
+import com.runnable.agent.dto.CreateJobRequest;
+import com.runnable.agent.dto.JobArtifact;
+import com.runnable.agent.dto.JobPage;
+import com.runnable.agent.dto.JobPriority;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.JobStatusEvent;
+import com.runnable.agent.dto.JobView;
+import com.runnable.agent.service.ArtifactService;
+import com.runnable.agent.service.JobLogService;
+import com.runnable.agent.service.JobService;
+import com.runnable.agent.service.JobRejectedException;
+import com.runnable.agent.service.JobStatusBroadcaster;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.stereotype.Controller;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
+@RequestMapping("/jobs")
 public class Jobcontroller {
 
-    public Jobcontroller(){};
+    private static final int MAX_PAGE_SIZE = 500;
+    // may submit on behalf of other owners and above NORMAL priority, e.g. a trusted frontend
+    static final String SCHEDULER_AUTHORITY = "ROLE_SCHEDULER";
 
-    @GetMapping("/jobs")
-    public ResponseEntity<List<String>> getJobSchedule() {
-        List<String> jobs = List.of(
-                "Build a todo app in React",
-                "Generate a Python script for file renaming",
-                "Create a Java REST API for task tracking"
-        );
+    private final JobService jobService;
+    private final JobStatusBroadcaster jobStatusBroadcaster;
+    private final JobLogService jobLogService;
+    private final ArtifactService artifactService;
 
-        return ResponseEntity.ok(jobs);
+    public Jobcontroller(JobService jobService, JobStatusBroadcaster jobStatusBroadcaster, JobLogService jobLogService,
+                         ArtifactService artifactService) {
+        this.jobService = jobService;
+        this.jobStatusBroadcaster = jobStatusBroadcaster;
+        this.jobLogService = jobLogService;
+        this.artifactService = artifactService;
+    }
+
+    @GetMapping
+    public ResponseEntity<JobPage> listJobs(@RequestParam(required = false) JobStatus status,
+                                            @RequestParam(required = false) Integer cursor,
+                                            @RequestParam(defaultValue = "50") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(jobService.listJobs(status, cursor, size));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<JobView> getJob(@PathVariable int jobId) {
+        return jobService.getJob(jobId)
+                .map(JobView::from)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    public ResponseEntity<JobStatusEvent> createJob(@RequestBody CreateJobRequest request, Authentication authentication) {
+        if (request == null || request.name() == null || request.name().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        // the caller is the owner; naming another one or asking for more than NORMAL takes the scheduler role
+        String owner = authentication.getName();
+        JobPriority priority = request.priority() != null ? request.priority() : JobPriority.NORMAL;
+        boolean onBehalf = request.owner() != null && !request.owner().isBlank() && !request.owner().equals(owner);
+        if ((onBehalf || priority.outranks(JobPriority.NORMAL)) && !isScheduler(authentication)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (onBehalf) {
+            owner = request.owner();
+        }
+        int jobId;
+        try {
+            jobId = jobService.submitJob(request.name().trim(), request.jobClass(), owner, priority);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // unknown job class
+        } catch (JobRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(new JobStatusEvent(jobId, JobStatus.PENDING, LocalDateTime.now()));
+    }
+
+    private static boolean isScheduler(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(authority -> SCHEDULER_AUTHORITY.equals(authority.getAuthority()));
+    }
+
+    @PostMapping("/{jobId}/stop")
+    public ResponseEntity<JobView> stopJob(@PathVariable int jobId) {
+        if (jobService.getJob(jobId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!jobService.stopJobById(jobId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return getJob(jobId);
+    }
+
+    @PostMapping("/{jobId}/start")
+    public ResponseEntity<JobView> startJob(@PathVariable int jobId) {
+        if (jobService.getJob(jobId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!jobService.startJobById(jobId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return getJob(jobId);
+    }
+
+    // redirects to the job's noVNC page, resuming the container if it was paused for idling
+    @GetMapping("/{jobId}/vnc")
+    public ResponseEntity<Void> openVnc(@PathVariable int jobId) {
+        try {
+            return jobService.openVnc(jobId)
+                    .map(url -> ResponseEntity.status(HttpStatus.FOUND).header(HttpHeaders.LOCATION, url).<Void>build())
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (JobRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build(); // no CPU to resume it on yet
+        }
+    }
+
+    @GetMapping(path = "/{jobId}/logs", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> jobLogs(@PathVariable int jobId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Optional<JobLogService.LogSubscription> subscription = jobLogService.subscribe(jobId,
+                line -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("log").data(line));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e); // ends the subscription
+                    }
+                },
+                emitter::complete);
+        if (subscription.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        emitter.onCompletion(subscription.get()::close);
+        emitter.onTimeout(subscription.get()::close);
+        emitter.onError(e -> subscription.get().close());
+        return ResponseEntity.ok(emitter);
+    }
+
+    @GetMapping("/{jobId}/artifacts")
+    public ResponseEntity<List<JobArtifact>> getArtifacts(@PathVariable int jobId) {
+        if (jobService.getJob(jobId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(artifactService.getArtifacts(jobId));
+    }
+
+    @PostMapping("/{jobId}/artifacts")
+    public ResponseEntity<List<JobArtifact>> collectArtifacts(@PathVariable int jobId) {
+        return artifactService.collect(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{jobId}/artifacts/{artifactId}")
+    public ResponseEntity<Resource> downloadArtifact(@PathVariable int jobId, @PathVariable long artifactId) {
+        return artifactService.getArtifacts(jobId).stream()
+                .filter(artifact -> artifact.getArtifactId() == artifactId)
+                .findFirst()
+                .map(artifact -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename(Path.of(artifact.getPath()).getFileName().toString())
+                                .build().toString())
+                        .<Resource>body(new FileSystemResource(artifactService.blobPath(artifact.getSha256()))))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter jobEvents() {
+        return jobStatusBroadcaster.subscribe();
     }
 }
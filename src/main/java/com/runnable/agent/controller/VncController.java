@@ -0,0 +1,54 @@
+package com.runnable.agent.controller;
+
+import com.runnable.agent.service.VncGateway;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+
+/**
+ * The noVNC pages and scripts of a job, proxied from its container so the viewer loads
+ * everything from this one port. The WebSocket at /vnc/{jobId} is VncWebSocketHandler.
+ */
+@RestController
+public class VncController {
+
+    private final VncGateway vncGateway;
+
+    public VncController(VncGateway vncGateway) {
+        this.vncGateway = vncGateway;
+    }
+
+    @GetMapping(path = "/vnc/{jobId}/{*path}", headers = "!Upgrade")
+    public ResponseEntity<InputStreamResource> asset(@PathVariable int jobId, @PathVariable String path) {
+        if (path.contains("..")) {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<HttpResponse<InputStream>> upstream;
+        try {
+            upstream = vncGateway.fetchAsset(jobId, path);
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.status(502).build();
+        }
+        if (upstream.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        HttpResponse<InputStream> response = upstream.get();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.statusCode());
+        response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+                .ifPresent(type -> builder.header(HttpHeaders.CONTENT_TYPE, type));
+        response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH)
+                .ifPresent(length -> builder.contentLength(length));
+        // the static files never change for a given image
+        response.headers().firstValue(HttpHeaders.LAST_MODIFIED)
+                .ifPresent(modified -> builder.header(HttpHeaders.LAST_MODIFIED, modified));
+        return builder.body(new InputStreamResource(response.body()));
+    }
+}
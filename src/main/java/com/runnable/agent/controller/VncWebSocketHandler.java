@@ -0,0 +1,107 @@
+package com.runnable.agent.controller;
+
+import com.runnable.agent.service.JobRejectedException;
+import com.runnable.agent.service.JobService;
+import com.runnable.agent.service.VncGateway;
+import com.runnable.agent.service.VncRelay;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * WebSocket end of the VNC gateway at /vnc/{jobId}. noVNC speaks RFB over binary frames,
+ * which are relayed as they are to the VNC server in the job's container.
+ */
+@Component
+public class VncWebSocketHandler extends BinaryWebSocketHandler implements HandshakeInterceptor {
+
+    private static final Logger log = LogManager.getLogger(VncWebSocketHandler.class);
+    private static final String JOB_ID = "jobId";
+    private static final String CONNECTION = "vncConnection";
+
+    private final JobService jobService;
+    private final VncGateway vncGateway;
+    private final VncRelay vncRelay;
+
+    public VncWebSocketHandler(JobService jobService, VncGateway vncGateway, VncRelay vncRelay) {
+        this.jobService = jobService;
+        this.vncGateway = vncGateway;
+        this.vncRelay = vncRelay;
+    }
+
+    // unknown or stopped jobs are turned away before the upgrade, paused ones are resumed
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String path = request.getURI().getPath();
+        Integer jobId = null;
+        try {
+            jobId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            if (jobId == null || jobService.openVnc(jobId).isEmpty()) {
+                response.setStatusCode(HttpStatus.NOT_FOUND);
+                return false;
+            }
+        } catch (JobRejectedException e) {
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            return false;
+        }
+        attributes.put(JOB_ID, jobId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        int jobId = (int) session.getAttributes().get(JOB_ID);
+        Optional<InetSocketAddress> upstream = vncGateway.upstream(jobId, VncGateway.RFB_PORT);
+        if (upstream.isEmpty()) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Job " + jobId + " has no running container"));
+            return;
+        }
+        session.getAttributes().put(CONNECTION, vncRelay.open(upstream.get(), session));
+        log.debug("VNC viewer {} connected to job {} at {}", session.getId(), jobId, upstream.get());
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        VncRelay.Connection connection = (VncRelay.Connection) session.getAttributes().get(CONNECTION);
+        if (connection != null) {
+            connection.send(message.getPayload());
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws IOException {
+        log.debug("VNC viewer {} failed: {}", session.getId(), exception.getMessage());
+        session.close(CloseStatus.SERVER_ERROR);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        VncRelay.Connection connection = (VncRelay.Connection) session.getAttributes().remove(CONNECTION);
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.runnable.agent.dto;
+
+// one line of a batch report, line is the command's line number in the script
+public record CommandResult(
+        int line,
+        String command,
+        boolean ok,
+        long millis,
+        String output
+) {}
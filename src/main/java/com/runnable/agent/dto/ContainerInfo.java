@@ -1,9 +1,11 @@
 package com.runnable.agent.dto;
 
+// port and vncUrl are null when the VNC port is not published and viewers use the gateway
 public record ContainerInfo(
+        String host,
         String id,
         String name,
         String status,
-        int port,
+        Integer port,
         String vncUrl
 ) {}
@@ -0,0 +1,38 @@
+package com.runnable.agent.dto;
+
+import java.util.Map;
+
+public record ContainerState(
+        String host,
+        String id,
+        String name,
+        String state,
+        String status,
+        Integer vncPort,
+        Map<String, String> labels
+) {
+    public ContainerState {
+        labels = labels != null ? Map.copyOf(labels) : Map.of();
+    }
+
+    public ContainerState(String host, String id, String name, String state, String status, Integer vncPort) {
+        this(host, id, name, state, status, vncPort, Map.of());
+    }
+
+    public boolean isRunning() {
+        return "running".equals(state);
+    }
+
+    public boolean isPaused() {
+        return "paused".equals(state);
+    }
+
+    // a paused container is frozen, not gone: it still holds its memory, port and job
+    public boolean isAlive() {
+        return isRunning() || isPaused();
+    }
+
+    public ContainerState withState(String newState) {
+        return new ContainerState(host, id, name, newState, newState, vncPort, labels);
+    }
+}
@@ -0,0 +1,10 @@
+package com.runnable.agent.dto;
+
+// jobClass is optional, the default class is used when it is missing. owner defaults to the caller,
+// another owner or a priority above NORMAL needs the scheduler role
+public record CreateJobRequest(
+        String name,
+        String jobClass,
+        String owner,
+        JobPriority priority
+) {}
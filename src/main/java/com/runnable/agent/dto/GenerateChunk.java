@@ -0,0 +1,12 @@
+package com.runnable.agent.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// one NDJSON line of an Ollama style generate response, error is only set on a failed last line
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record GenerateChunk(
+        String model,
+        String response,
+        boolean done,
+        String error
+) {}
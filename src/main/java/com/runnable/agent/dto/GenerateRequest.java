@@ -0,0 +1,8 @@
+package com.runnable.agent.dto;
+
+// the subset of Ollama's /api/generate body the agents send, stream defaults to true like Ollama
+public record GenerateRequest(
+        String model,
+        String prompt,
+        Boolean stream
+) {}
@@ -0,0 +1,11 @@
+package com.runnable.agent.dto;
+
+// counts cover this execution only, a restart reports what it did on top of the earlier run
+public record IngestSummary(
+        long executionId,
+        String status,
+        long ingested,
+        long skipped,
+        long launched,
+        long failed
+) {}
@@ -0,0 +1,15 @@
+package com.runnable.agent.dto;
+
+public record JobActionResult(
+        int jobId,
+        boolean success,
+        String message
+) {
+    public static JobActionResult ok(int jobId, String message) {
+        return new JobActionResult(jobId, true, message);
+    }
+
+    public static JobActionResult failed(int jobId, String message) {
+        return new JobActionResult(jobId, false, message);
+    }
+}
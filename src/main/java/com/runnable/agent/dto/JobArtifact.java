@@ -0,0 +1,109 @@
+package com.runnable.agent.dto;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "job_artifacts", schema = "public",
+        indexes = @Index(name = "idx_job_artifacts_job_id", columnList = "job_id"))
+public class JobArtifact {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "artifact_id")
+    private long artifactId;
+
+    @Column(name = "job_id", nullable = false)
+    private int jobId;
+
+    // path relative to /output inside the job container
+    @Column(name = "path", nullable = false, length = 1024)
+    private String path;
+
+    // hex sha-256 of the content, also the file name in the artifact store
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public JobArtifact() {}
+
+    public JobArtifact(int jobId, String path, String sha256, long sizeBytes) {
+        this.jobId = jobId;
+        this.path = path;
+        this.sha256 = sha256;
+        this.sizeBytes = sizeBytes;
+    }
+
+    // Getters and Setters
+    public long getArtifactId() {
+        return artifactId;
+    }
+
+    public void setArtifactId(long artifactId) {
+        this.artifactId = artifactId;
+    }
+
+    public int getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(int jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    // Lifecycle hooks
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    @Override
+    public String toString() {
+        return "JobArtifact{" +
+                "artifactId=" + artifactId +
+                ", jobId=" + jobId +
+                ", path='" + path + '\'' +
+                ", sha256='" + sha256 + '\'' +
+                ", sizeBytes=" + sizeBytes +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -0,0 +1,9 @@
+package com.runnable.agent.dto;
+
+import java.util.List;
+
+// nextCursor is the jobId to pass as cursor for the next page, null on the last page
+public record JobPage(
+        List<JobView> items,
+        Integer nextCursor
+) {}
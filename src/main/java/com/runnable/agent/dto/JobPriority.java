@@ -0,0 +1,15 @@
+package com.runnable.agent.dto;
+
+/**
+ * How urgently a job needs a container, lowest first. A waiting job is admitted before any
+ * job of a lower priority, and may pause running containers of a lower priority to get in.
+ */
+public enum JobPriority {
+    BATCH,
+    NORMAL,
+    INTERACTIVE;
+
+    public boolean outranks(JobPriority other) {
+        return compareTo(other) > 0;
+    }
+}
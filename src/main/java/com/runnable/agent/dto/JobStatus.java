@@ -0,0 +1,16 @@
+package com.runnable.agent.dto;
+
+/**
+ * Lifecycle of a job. Stored by name in jobs.job_status, so rows written before the enum
+ * existed read back unchanged.
+ */
+public enum JobStatus {
+    PENDING,
+    QUEUED,
+    CREATING,
+    STARTED,
+    REUSED,
+    STOPPED,
+    FAILED,
+    REMOVED
+}
@@ -0,0 +1,9 @@
+package com.runnable.agent.dto;
+
+import java.time.LocalDateTime;
+
+public record JobStatusEvent(
+        int jobId,
+        JobStatus jobStatus,
+        LocalDateTime at
+) {}
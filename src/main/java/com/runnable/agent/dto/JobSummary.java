@@ -0,0 +1,9 @@
+package com.runnable.agent.dto;
+
+// the columns list-jobs prints, selected directly so no entity is loaded or tracked
+public record JobSummary(
+        int jobId,
+        String jobName,
+        JobStatus jobStatus,
+        String containerId
+) {}
@@ -0,0 +1,174 @@
+package com.runnable.agent.dto;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A unit of work in the shared job queue. Any agent instance may claim a QUEUED task; the
+ * claim holds a lease that the owner keeps renewing, and a lease that runs out is handed
+ * back to the queue so another instance picks the task up.
+ */
+@Entity
+@Table(name = "job_tasks", schema = "public",
+        indexes = {
+                @Index(name = "idx_job_tasks_status", columnList = "status, task_id"),
+                @Index(name = "idx_job_tasks_owner", columnList = "owner")
+        },
+        uniqueConstraints = @UniqueConstraint(name = "uk_job_tasks_job_operation", columnNames = {"job_id", "operation"}))
+public class JobTask {
+
+    public static final String CREATE = "CREATE";
+
+    public static final String QUEUED = "QUEUED";
+    public static final String CLAIMED = "CLAIMED";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "task_id")
+    private long taskId;
+
+    @Column(name = "job_id", nullable = false)
+    private int jobId;
+
+    @Column(name = "operation", nullable = false, length = 16)
+    private String operation;
+
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;
+
+    // worker id of the instance holding the lease
+    @Column(name = "owner", length = 128)
+    private String owner;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 512)
+    private String lastError;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public JobTask() {}
+
+    public JobTask(int jobId, String operation) {
+        this.jobId = jobId;
+        this.operation = operation;
+        this.status = QUEUED;
+    }
+
+    // Getters and Setters
+    public long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(long taskId) {
+        this.taskId = taskId;
+    }
+
+    public int getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(int jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public LocalDateTime getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(LocalDateTime leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // Lifecycle hooks
+    @PrePersist
+    protected void onCreate() {
+        createdAt = updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    @Override
+    public String toString() {
+        return "JobTask{" +
+                "taskId=" + taskId +
+                ", jobId=" + jobId +
+                ", operation='" + operation + '\'' +
+                ", status='" + status + '\'' +
+                ", owner='" + owner + '\'' +
+                ", leaseUntil=" + leaseUntil +
+                ", attempts=" + attempts +
+                ", lastError='" + lastError + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,23 @@
+package com.runnable.agent.dto;
+
+import java.time.LocalDateTime;
+
+public record JobView(
+        int jobId,
+        String jobName,
+        JobStatus jobStatus,
+        String containerId,
+        Integer vncPort,
+        String dockerHost,
+        String jobClass,
+        Integer reusedFrom,
+        String campaign,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) {
+    public static JobView from(Jobs job) {
+        return new JobView(job.getJobId(), job.getJobName(), job.getJobStatus(), job.getContainerId(),
+                job.getVncPort(), job.getDockerHost(), job.getJobClass(), job.getReusedFrom(),
+                job.getCampaign(), job.getCreatedAt(), job.getUpdatedAt());
+    }
+}
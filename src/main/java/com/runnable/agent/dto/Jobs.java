@@ -4,19 +4,30 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "jobs", schema = "public")
+@Table(name = "jobs", schema = "public",
+        indexes = {
+                @Index(name = "idx_jobs_status", columnList = "job_status, job_id"),
+                @Index(name = "idx_jobs_container_id", columnList = "container_id"),
+                @Index(name = "idx_jobs_created_at", columnList = "created_at"),
+                @Index(name = "idx_jobs_campaign", columnList = "campaign, job_id")
+        })
 public class Jobs {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // pooled sequence rather than identity, so Hibernate can batch inserts, see BulkIngestConfiguration
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "jobs_seq")
+    @SequenceGenerator(name = "jobs_seq", sequenceName = "jobs_seq", allocationSize = Jobs.ID_ALLOCATION_SIZE)
     @Column(name = "job_id")
     private int jobId;
 
     @Column(name = "job_name", nullable = false, length = 100)
     private String jobName;
 
+    @Enumerated(EnumType.STRING)
     @Column(name = "job_status", nullable = false, length = 50)
-    private String jobStatus;
+    private JobStatus jobStatus;
 
     @Column(name = "container_id", length = 128)
     private String containerId;
@@ -24,6 +35,35 @@ public class Jobs {
     @Column(name = "vnc_port")
     private Integer vncPort;
 
+    // name of the Docker host the container was placed on, null means the default host
+    @Column(name = "docker_host", length = 64)
+    private String dockerHost;
+
+    // resource class the container was created with, null means the default class
+    @Column(name = "job_class", length = 32)
+    private String jobClass;
+
+    // job whose artifacts this one reused instead of running a container, see SemanticJobCache
+    @Column(name = "reused_from")
+    private Integer reusedFrom;
+
+    // bulk ingest campaign the job was created by, null for jobs submitted one by one
+    @Column(name = "campaign", length = 64)
+    private String campaign;
+
+    // who the job is run for, capacity is shared fairly between owners
+    @Column(name = "owner", length = 64)
+    private String owner;
+
+    // null in rows written before priorities existed, read as NORMAL
+    @Enumerated(EnumType.STRING)
+    @Column(name = "priority", length = 16)
+    private JobPriority priority;
+
+    // paused to make room for a job of a higher priority, so it is resumed after a restart too
+    @Column(name = "preempted")
+    private Boolean preempted;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
@@ -33,7 +73,7 @@ public class Jobs {
     // Constructors
     public Jobs() {}
 
-    public Jobs(String jobName, String jobStatus) {
+    public Jobs(String jobName, JobStatus jobStatus) {
         this.jobName = jobName;
         this.jobStatus = jobStatus;
         this.createdAt = LocalDateTime.now();
@@ -57,11 +97,11 @@ public class Jobs {
         this.jobName = jobName;
     }
 
-    public String getJobStatus() {
+    public JobStatus getJobStatus() {
         return jobStatus;
     }
 
-    public void setJobStatus(String jobStatus) {
+    public void setJobStatus(JobStatus jobStatus) {
         this.jobStatus = jobStatus;
     }
 
@@ -81,6 +121,62 @@ public class Jobs {
         this.vncPort = vncPort;
     }
 
+    public String getDockerHost() {
+        return dockerHost;
+    }
+
+    public void setDockerHost(String dockerHost) {
+        this.dockerHost = dockerHost;
+    }
+
+    public String getJobClass() {
+        return jobClass;
+    }
+
+    public void setJobClass(String jobClass) {
+        this.jobClass = jobClass;
+    }
+
+    public Integer getReusedFrom() {
+        return reusedFrom;
+    }
+
+    public void setReusedFrom(Integer reusedFrom) {
+        this.reusedFrom = reusedFrom;
+    }
+
+    public String getCampaign() {
+        return campaign;
+    }
+
+    public void setCampaign(String campaign) {
+        this.campaign = campaign;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public JobPriority getPriority() {
+        return priority != null ? priority : JobPriority.NORMAL;
+    }
+
+    public void setPriority(JobPriority priority) {
+        this.priority = priority;
+    }
+
+    public boolean isPreempted() {
+        return Boolean.TRUE.equals(preempted);
+    }
+
+    public void setPreempted(boolean preempted) {
+        this.preempted = preempted;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -116,6 +212,13 @@ public class Jobs {
                 ", jobStatus='" + jobStatus + '\'' +
                 ", containerId='" + containerId + '\'' +
                 ", vncPort=" + vncPort +
+                ", dockerHost='" + dockerHost + '\'' +
+                ", jobClass='" + jobClass + '\'' +
+                ", reusedFrom=" + reusedFrom +
+                ", campaign='" + campaign + '\'' +
+                ", owner='" + owner + '\'' +
+                ", priority=" + priority +
+                ", preempted=" + preempted +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
@@ -0,0 +1,13 @@
+package com.runnable.agent.dto;
+
+public record PoolStats(
+        int idle,
+        int targetSize,
+        long hits,
+        long misses
+) {
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,14 @@
+package com.runnable.agent.dto;
+
+import java.time.Duration;
+
+public record SemanticCacheStats(
+        long hits,
+        long misses,
+        Duration saved
+) {
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
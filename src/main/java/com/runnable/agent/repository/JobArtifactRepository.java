@@ -0,0 +1,33 @@
+package com.runnable.agent.repository;
+
+import com.runnable.agent.dto.JobArtifact;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface JobArtifactRepository extends JpaRepository<JobArtifact, Long> {
+    List<JobArtifact> findAllByJobIdOrderByPath(int jobId);
+
+    @Transactional
+    void deleteAllByJobId(int jobId);
+
+    // row lock on the job, held until the surrounding transaction ends
+    @Query(value = "select job_id from public.jobs where job_id = :jobId for update", nativeQuery = true)
+    Optional<Integer> lockJob(@Param("jobId") int jobId);
+
+    /**
+     * Swaps the job's artifact rows for the given ones in one transaction. The job row is
+     * locked first, so two collects of the same job, on any instance, replace one after the
+     * other instead of both inserting.
+     */
+    @Transactional
+    default List<JobArtifact> replaceAll(int jobId, List<JobArtifact> artifacts) {
+        lockJob(jobId);
+        deleteAllByJobId(jobId);
+        return saveAll(artifacts);
+    }
+}
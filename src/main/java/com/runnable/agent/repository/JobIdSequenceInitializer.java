@@ -0,0 +1,41 @@
+package com.runnable.agent.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Job ids used to come from an identity column. The jobs_seq sequence that replaced it starts
+ * at 1 when the schema update creates it, so it is moved past the highest existing id before
+ * the first insert, otherwise new jobs would collide with old rows.
+ */
+@Component
+public class JobIdSequenceInitializer {
+
+    private static final Logger log = LogManager.getLogger(JobIdSequenceInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // the EntityManagerFactory is only here so the schema update has created the sequence
+    public JobIdSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void advancePastExistingIds() {
+        // with the pooled optimizer the next block starts one allocation above last_value
+        List<Long> advanced = jdbcTemplate.queryForList("""
+                select setval('jobs_seq', t.max_id)
+                from (select max(job_id) as max_id from jobs) t
+                where t.max_id > (select last_value from jobs_seq)
+                """, Long.class);
+        if (!advanced.isEmpty()) {
+            log.info("Moved jobs_seq past existing job id {}", advanced.get(0));
+        }
+    }
+}
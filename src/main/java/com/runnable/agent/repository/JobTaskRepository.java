@@ -0,0 +1,91 @@
+package com.runnable.agent.repository;
+
+import com.runnable.agent.dto.JobTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface JobTaskRepository extends JpaRepository<JobTask, Long> {
+
+    /**
+     * Claims up to limit queued tasks, oldest first, in one statement. Rows another instance
+     * is claiming right now are skipped instead of waited on, so workers never block each other
+     * and no task is handed to two of them.
+     */
+    @Transactional
+    @Query(value = """
+            update public.job_tasks
+               set status = 'CLAIMED', owner = :owner, lease_until = :leaseUntil,
+                   attempts = attempts + 1, updated_at = :now
+             where task_id in (select task_id
+                                 from public.job_tasks
+                                where status = 'QUEUED'
+                                order by task_id
+                                limit :limit
+                                  for update skip locked)
+            returning *
+            """, nativeQuery = true)
+    List<JobTask> claim(@Param("owner") String owner,
+                        @Param("leaseUntil") LocalDateTime leaseUntil,
+                        @Param("now") LocalDateTime now,
+                        @Param("limit") int limit);
+
+    // heartbeat for every task this worker holds
+    @Modifying
+    @Transactional
+    @Query("update JobTask t set t.leaseUntil = :leaseUntil, t.updatedAt = :now where t.owner = :owner and t.status = 'CLAIMED'")
+    int renewLeases(@Param("owner") String owner,
+                    @Param("leaseUntil") LocalDateTime leaseUntil,
+                    @Param("now") LocalDateTime now);
+
+    // the owner stopped heartbeating, most likely it died, so the task goes back to the queue
+    @Modifying
+    @Transactional
+    @Query("""
+            update JobTask t set t.status = 'QUEUED', t.owner = null, t.leaseUntil = null, t.updatedAt = :now
+             where t.status = 'CLAIMED' and t.leaseUntil < :now and t.attempts < :maxAttempts
+            """)
+    int reclaimExpired(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts);
+
+    List<JobTask> findAllByStatusAndLeaseUntilBeforeAndAttemptsGreaterThanEqual(String status, LocalDateTime now,
+                                                                                int attempts);
+
+    /**
+     * Settles a task, but only while this worker still holds it. Returns 0 when the lease was
+     * lost in the meantime and the task now belongs to someone else.
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update JobTask t set t.status = :status, t.lastError = :error, t.leaseUntil = null, t.updatedAt = :now
+             where t.taskId = :taskId and t.owner = :owner and t.status = 'CLAIMED'
+            """)
+    int finish(@Param("taskId") long taskId,
+               @Param("owner") String owner,
+               @Param("status") String status,
+               @Param("error") String error,
+               @Param("now") LocalDateTime now);
+
+    /**
+     * Fails every task that has been waiting in the queue since before queuedBefore, with the
+     * same max-wait a job gets once a worker holds it. A task put back after a lost lease counts
+     * from then.
+     */
+    @Transactional
+    @Query(value = """
+            update public.job_tasks
+               set status = 'FAILED', last_error = :error, updated_at = :now
+             where status = 'QUEUED' and updated_at < :queuedBefore
+            returning *
+            """, nativeQuery = true)
+    List<JobTask> expireQueued(@Param("queuedBefore") LocalDateTime queuedBefore,
+                               @Param("error") String error,
+                               @Param("now") LocalDateTime now);
+
+    long countByStatus(String status);
+}
@@ -1,16 +1,60 @@
 package com.runnable.agent.repository;
 
 
+import com.runnable.agent.dto.JobStatus;
 import com.runnable.agent.dto.Jobs;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface JobsRepository extends JpaRepository<Jobs, Integer> {
     // You can add custom queries here if needed
-    List<Jobs> findAllByJobStatus(String jobStatus);
+    List<Jobs> findAllByJobStatus(JobStatus jobStatus);
+
+    long countByJobStatus(JobStatus jobStatus);
 
     Optional<Jobs> findById(Integer jobId);
     Jobs findByContainerId(String containerId);
-}
\ No newline at end of file
+
+    // keyset pagination, newest first; type is Jobs, or a projection such as JobView or JobSummary
+    <T> List<T> findAllByOrderByJobIdDesc(Limit limit, Class<T> type);
+
+    <T> List<T> findByJobIdLessThanOrderByJobIdDesc(int jobId, Limit limit, Class<T> type);
+
+    <T> List<T> findByJobStatusOrderByJobIdDesc(JobStatus jobStatus, Limit limit, Class<T> type);
+
+    <T> List<T> findByJobStatusAndJobIdLessThanOrderByJobIdDesc(JobStatus jobStatus, int jobId, Limit limit, Class<T> type);
+
+    // oldest first, for walking every job of a status in bounded batches
+    List<Jobs> findByJobStatusAndJobIdGreaterThanOrderByJobId(JobStatus jobStatus, int jobId, Limit limit);
+
+    // bulk ingest: id range of a campaign, split into launch partitions
+    Optional<Jobs> findFirstByCampaignOrderByJobIdAsc(String campaign);
+
+    Optional<Jobs> findFirstByCampaignOrderByJobIdDesc(String campaign);
+
+    // keyset page of one partition, jobs that got past the given statuses drop out on their own
+    List<Jobs> findByCampaignAndJobIdGreaterThanAndJobIdLessThanEqualAndJobStatusInOrderByJobId(
+            String campaign, int afterJobId, int maxJobId, Collection<JobStatus> statuses, Limit limit);
+
+    // one statement for a whole bulk operation instead of a merge per row
+    @Modifying
+    @Transactional
+    @Query("update Jobs j set j.jobStatus = :status, j.updatedAt = :updatedAt where j.jobId in :jobIds")
+    int updateStatus(@Param("jobIds") Collection<Integer> jobIds,
+                     @Param("status") JobStatus status,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Transactional
+    @Query("update Jobs j set j.preempted = :preempted where j.containerId = :containerId")
+    int markPreempted(@Param("containerId") String containerId, @Param("preempted") boolean preempted);
+}
@@ -0,0 +1,727 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.model.Info;
+import com.runnable.agent.configuration.JobQuotaProperties;
+import com.runnable.agent.configuration.JobQuotaProperties.JobClass;
+import com.runnable.agent.dto.ContainerState;
+import com.runnable.agent.dto.JobPriority;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the CPU and memory committed to job containers on every host and only lets a new
+ * container in when its job class still fits. Jobs that do not fit wait until a container
+ * exits, and are rejected once the queue or their wait time runs out, so running jobs keep
+ * their resources under overload instead of everyone thrashing.
+ * <p>
+ * The waiting jobs are served by priority, then fairly between owners by their weights, see
+ * {@link FairShareScheduler}. A job still waiting after preemptAfter may pause running
+ * containers of a lower priority. Pausing frees their CPU but not their memory, so this only
+ * helps on hosts that are short of CPU. The paused containers are resumed once their CPU is
+ * free again and nothing of a higher priority is waiting. Containers the idle monitor pauses
+ * give their CPU back the same way, but only come back when someone asks for them, see
+ * {@link #resume}.
+ */
+@Service
+public class AdmissionController {
+
+    private static final Logger log = LogManager.getLogger(AdmissionController.class);
+    // recheck now and then even without a release, a host may have come back in the meantime
+    private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long RESUME_INTERVAL_MILLIS = 2000;
+    private static final String RESERVATION_PREFIX = "admission-";
+    private static final String UNOWNED = "anonymous";
+
+    // stamped on every agent container, so any instance can account for it from the container alone
+    public static final String CLASS_LABEL = "runnable.job-class";
+    public static final String OWNER_LABEL = "runnable.owner";
+    public static final String PRIORITY_LABEL = "runnable.priority";
+
+    private final DockerHostRegistry dockerHostRegistry;
+    private final PlacementScheduler placementScheduler;
+    private final ContainerStateCache containerStateCache;
+    private final JobsRepository jobsRepository;
+    private final JobQuotaProperties properties;
+    private final Map<String, Capacity> capacities = new ConcurrentHashMap<>();
+    private final AtomicLong tickets = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong preemptions = new AtomicLong();
+    private final ScheduledExecutorService resumer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "admission-resumer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final FairShareScheduler scheduler;
+    private final Map<String, Commitment> commitments = new HashMap<>();
+    private final Map<String, Usage> usage = new HashMap<>();
+    // paused containers whose CPU was handed to someone else, preempted or idle
+    private final Map<String, Paused> suspended = new HashMap<>();
+
+    public AdmissionController(DockerHostRegistry dockerHostRegistry,
+                               PlacementScheduler placementScheduler,
+                               ContainerStateCache containerStateCache,
+                               JobsRepository jobsRepository,
+                               JobQuotaProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.dockerHostRegistry = dockerHostRegistry;
+        this.placementScheduler = placementScheduler;
+        this.containerStateCache = containerStateCache;
+        this.jobsRepository = jobsRepository;
+        this.properties = properties;
+        this.scheduler = new FairShareScheduler(properties::weightOf);
+        Gauge.builder("runnable.admission.queued", this, AdmissionController::queued)
+                .description("Jobs waiting for capacity")
+                .register(meterRegistry);
+        Gauge.builder("runnable.admission.rejected", rejected, AtomicLong::get)
+                .description("Jobs rejected since startup because no capacity became free")
+                .register(meterRegistry);
+        Gauge.builder("runnable.admission.preemptions", preemptions, AtomicLong::get)
+                .description("Containers paused since startup to make room for a higher priority job")
+                .register(meterRegistry);
+        Gauge.builder("runnable.admission.suspended", this, AdmissionController::suspendedCount)
+                .description("Preempted containers waiting to be resumed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rebuilds the ledger from the containers that exist rather than from what this instance
+     * created, and keeps it in step with the event stream, so several instances sharing the
+     * hosts all see every agent container once.
+     */
+    @PostConstruct
+    void restoreCommitments() {
+        Map<String, Jobs> started = jobsRepository.findAllByJobStatus(JobStatus.STARTED).stream()
+                .filter(job -> job.getContainerId() != null)
+                .collect(Collectors.toMap(Jobs::getContainerId, job -> job, (first, second) -> first));
+        for (ContainerState state : containerStateCache.getAll()) {
+            if (state.isAlive()) {
+                account(state, started.get(state.id()));
+            }
+        }
+        containerStateCache.onExit(state -> release(state.id()));
+        containerStateCache.onStart(state -> {
+            lock.lock();
+            try {
+                if (suspended.containsKey(state.id())) {
+                    // unpaused without asking, e.g. by hand or by another instance: it runs on its CPU again
+                    unsuspend(state.id());
+                    log.info("Paused container {} was resumed outside the scheduler", state.id());
+                } else if (!commitments.containsKey(state.id())) {
+                    account(state, null); // most likely started by another instance
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+        // paused by another instance, the CPU is free here too
+        containerStateCache.onPause(state -> {
+            lock.lock();
+            try {
+                if (commitments.containsKey(state.id())) {
+                    suspend(state.id(), false);
+                    released.signalAll();
+                } else {
+                    account(state, null);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+        resumer.scheduleWithFixedDelay(this::resumePreempted, RESUME_INTERVAL_MILLIS, RESUME_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        log.info("Admission controller restored {} commitments", commitments.size());
+    }
+
+    @PreDestroy
+    void stop() {
+        resumer.shutdownNow();
+    }
+
+    // null means the default class, anything else has to be configured
+    public String resolveClass(String jobClass) {
+        String name = jobClass == null || jobClass.isBlank() ? properties.defaultClass() : jobClass;
+        properties.classFor(name);
+        return name;
+    }
+
+    public boolean isDefaultClass(String jobClass) {
+        return properties.defaultClass().equals(resolveClass(jobClass));
+    }
+
+    public JobClass classFor(String jobClass) {
+        return properties.classFor(resolveClass(jobClass));
+    }
+
+    /**
+     * Fails fast at submission time rather than after the job row exists. queuedTasks are the
+     * jobs still waiting in the shared queue for a worker, the ones in here already have one.
+     */
+    public void checkQueue(long queuedTasks) {
+        lock.lock();
+        try {
+            long waiting = scheduler.size() + queuedTasks;
+            if (waiting >= properties.maxQueued()) {
+                rejected.incrementAndGet();
+                throw new JobRejectedException("Admission queue is full (" + waiting + " jobs waiting)");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves capacity for one container of the class on the least loaded host that has
+     * room, waiting behind jobs of a higher priority and of owners with less than their
+     * share. onQueued runs once if the job has to wait.
+     */
+    public Admission admit(String jobClass, String owner, JobPriority priority, Runnable onQueued) {
+        String name = resolveClass(jobClass);
+        JobClass quota = properties.classFor(name);
+        String resolvedOwner = owner(owner);
+        loadCapacities();
+        long ticket = tickets.incrementAndGet();
+        long now = System.nanoTime();
+        long deadline = now + properties.maxWait().toNanos();
+        long preemptFrom = now + properties.preemptAfter().toNanos();
+        boolean queued = false;
+        List<Suspension> preempted = List.of();
+        lock.lock();
+        try {
+            if (scheduler.size() >= properties.maxQueued()) {
+                rejected.incrementAndGet();
+                throw new JobRejectedException("Admission queue is full (" + scheduler.size() + " jobs waiting)");
+            }
+            FairShareScheduler.Waiter waiter = new FairShareScheduler.Waiter(ticket, resolvedOwner, priority);
+            scheduler.enqueue(waiter);
+            while (true) {
+                if (scheduler.next() == waiter) {
+                    Optional<Admission> admission = place(name, quota, resolvedOwner, priority);
+                    if (admission.isPresent()) {
+                        return admission.get();
+                    }
+                    if (properties.preemption() && System.nanoTime() - preemptFrom >= 0) {
+                        Optional<Preemption> preemption = preempt(name, quota, resolvedOwner, priority);
+                        if (preemption.isPresent()) {
+                            preempted = preemption.get().victims();
+                            return preemption.get().admission();
+                        }
+                    }
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected.incrementAndGet();
+                    throw new JobRejectedException("No capacity for a " + name + " job within " + properties.maxWait());
+                }
+                if (!queued) {
+                    queued = true;
+                    lock.unlock();
+                    try {
+                        onQueued.run();
+                    } finally {
+                        lock.lock();
+                    }
+                    continue;
+                }
+                released.awaitNanos(Math.min(remaining, RECHECK_NANOS));
+                if (capacities.size() < dockerHostRegistry.all().size()) {
+                    lock.unlock();
+                    try {
+                        loadCapacities();
+                    } finally {
+                        lock.lock();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobRejectedException("Interrupted waiting for capacity");
+        } finally {
+            scheduler.remove(ticket);
+            released.signalAll(); // the next in line may fit now
+            lock.unlock();
+            pause(preempted);
+        }
+    }
+
+    /**
+     * Never waits and never jumps the queue, used to top up the warm pool. Pooled containers
+     * count as unowned batch work until {@link #assign} hands one to a job.
+     */
+    public Optional<Admission> tryAdmit(String jobClass) {
+        String name = resolveClass(jobClass);
+        loadCapacities();
+        lock.lock();
+        try {
+            return scheduler.isEmpty()
+                    ? place(name, properties.classFor(name), UNOWNED, JobPriority.BATCH)
+                    : Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // restarting a stopped container, which can only come back on the host it lives on
+    public Optional<Admission> tryAdmitOn(String host, String jobClass, String owner, JobPriority priority) {
+        String name = resolveClass(jobClass);
+        JobClass quota = properties.classFor(name);
+        DockerHost dockerHost = dockerHostRegistry.get(host);
+        loadCapacities();
+        lock.lock();
+        try {
+            if (!fits(dockerHost.name(), quota)) {
+                return Optional.empty();
+            }
+            return Optional.of(reserve(dockerHost, name, quota, owner(owner), priority));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // moves the reservation over to the container, released when the container exits
+    public void bind(Admission admission, String containerId) {
+        lock.lock();
+        try {
+            Commitment commitment = commitments.remove(admission.key());
+            if (commitment != null && commitments.putIfAbsent(containerId, commitment) != null) {
+                // its start event got here first and accounted for it from the labels
+                uncommit(commitment, true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isCommitted(String containerId) {
+        lock.lock();
+        try {
+            return commitments.containsKey(containerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // a pooled container claimed by a job now counts for that job's owner and priority
+    public void assign(String containerId, String owner, JobPriority priority) {
+        lock.lock();
+        try {
+            Commitment commitment = commitments.get(containerId);
+            if (commitment == null) {
+                return;
+            }
+            Commitment assigned = new Commitment(commitment.host(), commitment.quota(), owner(owner), priority);
+            commitments.put(containerId, assigned);
+            if (!suspended.containsKey(containerId)) {
+                scheduler.refund(commitment.owner(), commitment.quota().cpus());
+                scheduler.charge(assigned.owner(), assigned.quota().cpus());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(Admission admission) {
+        release(admission.key());
+    }
+
+    public void release(String key) {
+        lock.lock();
+        try {
+            Commitment commitment = commitments.remove(key);
+            if (commitment != null) {
+                // a paused container already gave its CPU back
+                Paused paused = suspended.remove(key);
+                uncommit(commitment, paused == null);
+                if (paused != null && paused.preempted()) {
+                    remember(key, false);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return scheduler.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the idle monitor leaves these alone, they are paused on purpose and come back by themselves
+    public boolean isPreempted(String containerId) {
+        lock.lock();
+        try {
+            Paused paused = suspended.get(containerId);
+            return paused != null && paused.preempted();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int suspendedCount() {
+        lock.lock();
+        try {
+            return (int) suspended.values().stream().filter(Paused::preempted).count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the idle monitor froze the container, its CPU is free until someone asks for it again
+    public void idlePaused(String containerId) {
+        lock.lock();
+        try {
+            suspend(containerId, false);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the CPU of a suspended container back before it is unpaused. When its host has
+     * none to spare the container waits in line like a new job of its owner and priority, and
+     * JobRejectedException is thrown once maxWait runs out.
+     */
+    public void resume(String containerId) {
+        long ticket = tickets.incrementAndGet();
+        long deadline = System.nanoTime() + properties.maxWait().toNanos();
+        lock.lock();
+        try {
+            Commitment commitment = commitments.get(containerId);
+            if (commitment == null || !suspended.containsKey(containerId)) {
+                return;
+            }
+            FairShareScheduler.Waiter waiter = new FairShareScheduler.Waiter(ticket, commitment.owner(),
+                    commitment.priority());
+            scheduler.enqueue(waiter);
+            // gone or unpaused by someone else in the meantime, there is nothing left to take
+            while (commitments.containsKey(containerId) && suspended.containsKey(containerId)) {
+                if (scheduler.next() == waiter && fits(commitment.host(), commitment.quota().cpus(), 0)) {
+                    unsuspend(containerId);
+                    return;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected.incrementAndGet();
+                    throw new JobRejectedException("No CPU free to resume container " + containerId
+                            + " within " + properties.maxWait());
+                }
+                released.awaitNanos(Math.min(remaining, RECHECK_NANOS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobRejectedException("Interrupted waiting for capacity");
+        } finally {
+            scheduler.remove(ticket);
+            released.signalAll();
+            lock.unlock();
+        }
+    }
+
+    private Optional<Admission> place(String name, JobClass quota, String owner, JobPriority priority) {
+        for (DockerHost host : placementScheduler.ranked()) {
+            if (fits(host.name(), quota)) {
+                return Optional.of(reserve(host, name, quota, owner, priority));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Finds a host where pausing running containers of a lower priority frees enough CPU for
+     * the job, suspends their commitments and reserves the freed capacity for the job. The
+     * caller pauses the containers once the lock is released.
+     */
+    private Optional<Preemption> preempt(String name, JobClass quota, String owner, JobPriority priority) {
+        for (DockerHost host : placementScheduler.ranked()) {
+            Capacity capacity = capacities.get(host.name());
+            Usage used = usage.computeIfAbsent(host.name(), h -> new Usage());
+            // a paused container keeps its memory, so only a host short of CPU can be helped
+            if (capacity == null || used.memoryBytes + quota.memory().toBytes() > capacity.memoryBytes()) {
+                continue;
+            }
+            List<FairShareScheduler.Running> running = commitments.entrySet().stream()
+                    .filter(entry -> entry.getValue().host().equals(host.name()))
+                    .filter(entry -> !entry.getKey().startsWith(RESERVATION_PREFIX) && !suspended.containsKey(entry.getKey()))
+                    .filter(entry -> containerStateCache.get(entry.getKey()).map(ContainerState::isRunning).orElse(false))
+                    .map(entry -> new FairShareScheduler.Running(entry.getKey(), entry.getValue().owner(),
+                            entry.getValue().priority(), entry.getValue().quota().cpus()))
+                    .toList();
+            double cpusNeeded = used.cpus + quota.cpus() - capacity.cpus();
+            List<FairShareScheduler.Running> victims = scheduler.victims(running, priority, cpusNeeded);
+            if (victims.isEmpty()) {
+                continue;
+            }
+            List<Suspension> suspensions = new ArrayList<>();
+            for (FairShareScheduler.Running victim : victims) {
+                suspend(victim.key(), true);
+                remember(victim.key(), true);
+                suspensions.add(new Suspension(victim.key(), host, victim.priority()));
+            }
+            preemptions.addAndGet(victims.size());
+            log.info("Preempting {} container(s) on {} for a {} job of {}", victims.size(), host.name(), priority, owner);
+            return Optional.of(new Preemption(reserve(host, name, quota, owner, priority), suspensions));
+        }
+        return Optional.empty();
+    }
+
+    // outside the lock; a container that cannot be paused gets its CPU back and the host runs over for a while
+    private void pause(List<Suspension> victims) {
+        for (Suspension victim : victims) {
+            try {
+                victim.host().call("pause", client -> client.pauseContainerCmd(victim.containerId()).exec());
+                containerStateCache.markState(victim.containerId(), "paused");
+                log.info("Paused {} container {} to make room", victim.priority(), victim.containerId());
+            } catch (Exception e) {
+                log.warn("Failed to preempt container {}: {}", victim.containerId(), e.getMessage());
+                lock.lock();
+                try {
+                    unsuspend(victim.containerId());
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Unpauses preempted containers whose CPU is free again, highest priority and longest
+     * paused first, as long as no job of a higher priority is waiting for that CPU.
+     */
+    void resumePreempted() {
+        List<Suspension> resumed = new ArrayList<>();
+        lock.lock();
+        try {
+            // idle containers stay paused until someone asks for them
+            List<String> candidates = suspended.entrySet().stream()
+                    .filter(entry -> entry.getValue().preempted())
+                    .sorted(Comparator.comparing((Map.Entry<String, Paused> entry) -> commitments.get(entry.getKey()).priority())
+                            .reversed()
+                            .thenComparingLong(entry -> entry.getValue().sinceNanos()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            for (String containerId : candidates) {
+                Commitment commitment = commitments.get(containerId);
+                if (scheduler.waitingAbove(commitment.priority())) {
+                    continue;
+                }
+                // its memory never left, only the CPU has to fit again
+                if (fits(commitment.host(), commitment.quota().cpus(), 0)) {
+                    unsuspend(containerId);
+                    resumed.add(new Suspension(containerId, dockerHostRegistry.get(commitment.host()), commitment.priority()));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Suspension container : resumed) {
+            try {
+                container.host().call("unpause", client -> client.unpauseContainerCmd(container.containerId()).exec());
+                containerStateCache.markState(container.containerId(), "running");
+                log.info("Resumed preempted {} container {}", container.priority(), container.containerId());
+            } catch (Exception e) {
+                // most likely stopped in the meantime, its exit event releases the commitment
+                log.debug("Failed to resume container {}: {}", container.containerId(), e.getMessage());
+            }
+        }
+    }
+
+    private void suspend(String key, boolean preempted) {
+        Commitment commitment = commitments.get(key);
+        if (commitment != null && suspended.putIfAbsent(key, new Paused(System.nanoTime(), preempted)) == null) {
+            usage.get(commitment.host()).cpus -= commitment.quota().cpus();
+            scheduler.refund(commitment.owner(), commitment.quota().cpus());
+        }
+    }
+
+    private void unsuspend(String key) {
+        Commitment commitment = commitments.get(key);
+        Paused paused = commitment != null ? suspended.remove(key) : null;
+        if (paused != null) {
+            usage.get(commitment.host()).cpus += commitment.quota().cpus();
+            scheduler.charge(commitment.owner(), commitment.quota().cpus());
+            if (paused.preempted()) {
+                remember(key, false);
+            }
+        }
+    }
+
+    // kept on the job row so a restarted instance still resumes it, written off the lock on the resumer thread
+    private void remember(String containerId, boolean preempted) {
+        try {
+            resumer.execute(() -> {
+                try {
+                    jobsRepository.markPreempted(containerId, preempted);
+                } catch (Exception e) {
+                    log.warn("Failed to record preemption of container {}: {}", containerId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Not recording preemption of container {}, shutting down", containerId);
+        }
+    }
+
+    private Admission reserve(DockerHost host, String name, JobClass quota, String owner, JobPriority priority) {
+        String key = RESERVATION_PREFIX + tickets.incrementAndGet();
+        commit(key, host.name(), name, owner, priority);
+        return new Admission(key, host, name, quota, owner, priority);
+    }
+
+    // an agent container found running or paused, known from its job row or else from its labels
+    private void account(ContainerState state, Jobs job) {
+        String jobClass = job != null ? job.getJobClass() : state.labels().get(CLASS_LABEL);
+        if (jobClass == null) {
+            return; // not one of ours
+        }
+        // a class dropped from the config since still holds what the default class would
+        if (!properties.classes().containsKey(jobClass)) {
+            jobClass = properties.defaultClass();
+        }
+        String owner = job != null ? job.getOwner() : state.labels().get(OWNER_LABEL);
+        JobPriority priority = job != null ? job.getPriority() : priority(state.labels().get(PRIORITY_LABEL));
+        lock.lock();
+        try {
+            commit(state.id(), state.host(), jobClass, owner(owner), priority);
+            // a paused container holds its memory but not its CPU; a preempted one is resumed by the resumer
+            if (state.isPaused()) {
+                suspend(state.id(), job != null && job.isPreempted());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void uncommit(Commitment commitment, boolean cpu) {
+        Usage used = usage.get(commitment.host());
+        used.memoryBytes -= commitment.quota().memory().toBytes();
+        if (cpu) {
+            used.cpus -= commitment.quota().cpus();
+            scheduler.refund(commitment.owner(), commitment.quota().cpus());
+        }
+        released.signalAll();
+    }
+
+    private void commit(String key, String host, String jobClass, String owner, JobPriority priority) {
+        lock.lock();
+        try {
+            JobClass quota = properties.classFor(jobClass);
+            if (commitments.putIfAbsent(key, new Commitment(host, quota, owner, priority)) == null) {
+                usage.computeIfAbsent(host, h -> new Usage()).add(quota);
+                scheduler.charge(owner, quota.cpus());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String owner(String owner) {
+        return owner == null || owner.isBlank() ? UNOWNED : owner;
+    }
+
+    // pooled containers carry no priority until a job claims them
+    private static JobPriority priority(String label) {
+        try {
+            return label != null ? JobPriority.valueOf(label) : JobPriority.BATCH;
+        } catch (IllegalArgumentException e) {
+            return JobPriority.BATCH;
+        }
+    }
+
+    // a host whose capacity is still unknown gets nothing, most likely its daemon is down
+    private boolean fits(String host, JobClass quota) {
+        return fits(host, quota.cpus(), quota.memory().toBytes());
+    }
+
+    private boolean fits(String host, double cpus, long memoryBytes) {
+        Capacity capacity = capacities.get(host);
+        if (capacity == null) {
+            return false;
+        }
+        Usage used = usage.computeIfAbsent(host, h -> new Usage());
+        return used.cpus + cpus <= capacity.cpus() + 1e-9
+                && used.memoryBytes + memoryBytes <= capacity.memoryBytes();
+    }
+
+    private void loadCapacities() {
+        for (DockerHost host : dockerHostRegistry.all()) {
+            if (capacities.containsKey(host.name())) {
+                continue;
+            }
+            try {
+                Info info = host.call("info", client -> client.infoCmd().exec());
+                int cpus = info.getNCPU() != null ? info.getNCPU() : 0;
+                long memory = info.getMemTotal() != null ? info.getMemTotal() : 0;
+                Capacity capacity = new Capacity(cpus * properties.cpuOvercommit(),
+                        (long) (memory * properties.memoryOvercommit()));
+                capacities.put(host.name(), capacity);
+                log.info("Docker host {} admits up to {} CPUs and {} MB", host.name(), capacity.cpus(),
+                        capacity.memoryBytes() / (1024 * 1024));
+            } catch (Exception e) {
+                log.warn("Failed to read capacity of Docker host {}: {}", host.name(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Capacity reserved for one container. Call {@link #bind} once the container exists, or
+     * {@link #release(Admission)} if creating it failed.
+     */
+    public record Admission(String key, DockerHost host, String jobClass, JobClass quota, String owner,
+                            JobPriority priority) {
+
+        public Map<String, String> labels() {
+            return Map.of(CLASS_LABEL, jobClass, OWNER_LABEL, owner, PRIORITY_LABEL, priority.name());
+        }
+    }
+
+    private record Capacity(double cpus, long memoryBytes) {}
+
+    private record Commitment(String host, JobClass quota, String owner, JobPriority priority) {}
+
+    private record Suspension(String containerId, DockerHost host, JobPriority priority) {}
+
+    private record Preemption(Admission admission, List<Suspension> victims) {}
+
+    private record Paused(long sinceNanos, boolean preempted) {}
+
+    private static final class Usage {
+        private double cpus;
+        private long memoryBytes;
+
+        void add(JobClass quota) {
+            cpus += quota.cpus();
+            memoryBytes += quota.memory().toBytes();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobArtifact;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobArtifactRepository;
+import com.runnable.agent.repository.JobsRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Copies generated files out of job containers into a content-addressed store on disk.
+ * The tar stream from Docker is unpacked entry by entry straight to disk, and files are
+ * stored under their sha-256 so identical output across jobs is kept once.
+ */
+@Service
+public class ArtifactService {
+
+    private static final Logger log = LogManager.getLogger(ArtifactService.class);
+    private static final String OUTPUT_DIR = "/output";
+    // agent.py writes it once the model answered, it is not stored as an artifact
+    private static final String SUCCESS_MARKER = ".succeeded";
+
+    private final JobsRepository jobsRepository;
+    private final JobArtifactRepository jobArtifactRepository;
+    private final DockerClientService dockerClientService;
+    private final SemanticJobCache semanticJobCache;
+    private final Path storeRoot;
+    private final ExecutorService collector = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore collectPermits;
+
+    public ArtifactService(JobsRepository jobsRepository,
+                           JobArtifactRepository jobArtifactRepository,
+                           DockerClientService dockerClientService,
+                           SemanticJobCache semanticJobCache,
+                           @Value("${runnable.artifacts.dir:./artifacts}") String storeDir,
+                           @Value("${runnable.artifacts.max-concurrent-collects:4}") int maxConcurrentCollects) {
+        this.jobsRepository = jobsRepository;
+        this.jobArtifactRepository = jobArtifactRepository;
+        this.dockerClientService = dockerClientService;
+        this.semanticJobCache = semanticJobCache;
+        this.storeRoot = Path.of(storeDir).toAbsolutePath();
+        this.collectPermits = new Semaphore(maxConcurrentCollects);
+    }
+
+    // fire and forget, used on job stop so stopping never waits for the copy
+    public void collectAsync(int jobId) {
+        collector.execute(() -> {
+            try {
+                collectPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                collect(jobId);
+            } catch (Exception e) {
+                log.warn("Artifact collection for job {} failed: {}", jobId, e.getMessage());
+            } finally {
+                collectPermits.release();
+            }
+        });
+    }
+
+    /**
+     * Exports /output of the job's container and replaces the job's artifact rows.
+     * Empty when the job or its container does not exist.
+     */
+    public Optional<List<JobArtifact>> collect(int jobId) {
+        Optional<Jobs> job = jobsRepository.findById(jobId);
+        if (job.isEmpty() || job.get().getContainerId() == null) {
+            return Optional.empty();
+        }
+        List<JobArtifact> artifacts = new ArrayList<>();
+        boolean succeeded = false;
+        try (InputStream archive = dockerClientService.copyArchive(job.get().getDockerHost(),
+                job.get().getContainerId(), OUTPUT_DIR);
+             TarArchiveInputStream tar = new TarArchiveInputStream(archive)) {
+            Files.createDirectories(storeRoot);
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextEntry()) != null) {
+                if (!entry.isFile()) {
+                    continue;
+                }
+                if (SUCCESS_MARKER.equals(relativePath(entry.getName()))) {
+                    succeeded = true;
+                    continue;
+                }
+                StoredBlob blob = store(tar);
+                artifacts.add(new JobArtifact(jobId, relativePath(entry.getName()), blob.sha256(), blob.size()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export artifacts of job " + jobId, e);
+        }
+        List<JobArtifact> saved = jobArtifactRepository.replaceAll(jobId, artifacts);
+        log.info("Collected {} artifacts for job {}", saved.size(), jobId);
+        // an error message in /output is no answer to offer a similar job
+        if (succeeded && !saved.isEmpty()) {
+            semanticJobCache.index(job.get());
+        }
+        return Optional.of(saved);
+    }
+
+    // the blobs are content-addressed, so reusing another job's output only copies its rows
+    public List<JobArtifact> reuse(int sourceJobId, int jobId) {
+        List<JobArtifact> artifacts = jobArtifactRepository.findAllByJobIdOrderByPath(sourceJobId).stream()
+                .map(artifact -> new JobArtifact(jobId, artifact.getPath(), artifact.getSha256(), artifact.getSizeBytes()))
+                .toList();
+        return jobArtifactRepository.replaceAll(jobId, artifacts);
+    }
+
+    public List<JobArtifact> getArtifacts(int jobId) {
+        return jobArtifactRepository.findAllByJobIdOrderByPath(jobId);
+    }
+
+    public Path blobPath(String sha256) {
+        return storeRoot.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        collector.shutdown();
+    }
+
+    // streams the current tar entry to a temp file while hashing it, then moves it into place
+    private StoredBlob store(InputStream entryContent) throws IOException {
+        Path temp = Files.createTempFile(storeRoot, "incoming-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                size = entryContent.transferTo(out);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            Path target = blobPath(sha256);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // another job stored the same content first, ours is a duplicate
+                }
+            }
+            return new StoredBlob(sha256, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // docker prefixes entries with the copied directory name, e.g. "output/app.py"
+    private static String relativePath(String entryName) {
+        int slash = entryName.indexOf('/');
+        return slash >= 0 ? entryName.substring(slash + 1) : entryName;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record StoredBlob(String sha256, long size) {}
+}
@@ -0,0 +1,117 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.configuration.BulkIngestConfiguration;
+import com.runnable.agent.dto.IngestSummary;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.JobParametersInvalidException;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * Runs bulkIngest for a task list. A job instance is identified by the file and campaign,
+ * so running the same pair again restarts a failed or interrupted campaign from its last
+ * committed chunk instead of inserting every job twice.
+ */
+@Service
+public class BulkIngestService {
+
+    private static final Logger log = LogManager.getLogger(BulkIngestService.class);
+
+    private final JobLauncher jobLauncher;
+    private final JobExplorer jobExplorer;
+    private final JobRepository jobRepository;
+    private final Job bulkIngestJob;
+    // executions created before this process started cannot be running any more
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    public BulkIngestService(JobLauncher jobLauncher, JobExplorer jobExplorer, JobRepository jobRepository, Job bulkIngestJob) {
+        this.jobLauncher = jobLauncher;
+        this.jobExplorer = jobExplorer;
+        this.jobRepository = jobRepository;
+        this.bulkIngestJob = bulkIngestJob;
+    }
+
+    /**
+     * Ingests and launches every task of the file under the campaign, blocking until done.
+     */
+    public IngestSummary ingest(String file, String campaign) {
+        Path path = Path.of(file).toAbsolutePath().normalize();
+        if (!Files.isReadable(path)) {
+            throw new IllegalArgumentException("Cannot read " + path);
+        }
+        JobParameters parameters = new JobParametersBuilder()
+                .addString("file", path.toString())
+                .addString("campaign", campaign)
+                .toJobParameters();
+        failAbandoned();
+        try {
+            return summarize(jobLauncher.run(bulkIngestJob, parameters));
+        } catch (JobInstanceAlreadyCompleteException e) {
+            throw new IllegalArgumentException("Campaign " + campaign + " was already ingested from " + path);
+        } catch (JobExecutionAlreadyRunningException e) {
+            throw new IllegalArgumentException("Campaign " + campaign + " is being ingested right now");
+        } catch (JobRestartException | JobParametersInvalidException e) {
+            throw new IllegalStateException("Cannot run ingest of " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * An execution left STARTED by a process that died blocks restarts forever, since Spring
+     * Batch takes it for still running. Executions of earlier processes are marked FAILED.
+     */
+    private void failAbandoned() {
+        for (JobExecution execution : jobExplorer.findRunningJobExecutions(BulkIngestConfiguration.JOB_NAME)) {
+            if (execution.getCreateTime() == null || execution.getCreateTime().isAfter(startedAt)) {
+                continue;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            for (StepExecution step : execution.getStepExecutions()) {
+                if (step.getStatus().isRunning()) {
+                    step.setStatus(BatchStatus.FAILED);
+                    step.setExitStatus(ExitStatus.FAILED);
+                    step.setEndTime(now);
+                    jobRepository.update(step);
+                }
+            }
+            execution.setStatus(BatchStatus.FAILED);
+            execution.setExitStatus(ExitStatus.FAILED.addExitDescription("Abandoned by a previous process"));
+            execution.setEndTime(now);
+            jobRepository.update(execution);
+            log.warn("Marked abandoned ingest execution {} as failed", execution.getId());
+        }
+    }
+
+    private static IngestSummary summarize(JobExecution execution) {
+        long ingested = 0;
+        long skipped = 0;
+        long launched = 0;
+        long failed = 0;
+        for (StepExecution step : execution.getStepExecutions()) {
+            if (BulkIngestConfiguration.INGEST_STEP.equals(step.getStepName())) {
+                ingested += step.getWriteCount();
+                skipped += step.getSkipCount();
+            } else if (step.getStepName().startsWith(BulkIngestConfiguration.LAUNCH_WORKER_STEP + ":")) {
+                launched += step.getWriteCount();
+                failed += step.getFilterCount();
+            }
+        }
+        return new IngestSummary(execution.getId(), execution.getStatus().name(), ingested, skipped, launched, failed);
+    }
+}
@@ -0,0 +1,303 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.ContainerPort;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import com.github.dockerjava.api.model.ExposedPort;
+import com.github.dockerjava.api.model.Ports;
+import com.runnable.agent.dto.ContainerState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory view of container state keyed by container id. Seeded with one bulk list call and
+ * kept current from the Docker event stream of every host, so read paths never go back to the
+ * daemon per row. Events are applied in order on one thread per host rather than on docker-java's
+ * stream thread, since a start is followed by a blocking inspect.
+ */
+@Service
+public class ContainerStateCache {
+
+    private static final Logger log = LogManager.getLogger(ContainerStateCache.class);
+    private static final int VNC_PORT = 6080;
+    private static final long RESUBSCRIBE_DELAY_SECONDS = 5;
+
+    private final DockerHostRegistry dockerHostRegistry;
+    private final Map<String, ContainerState> containers = new ConcurrentHashMap<>();
+    private final List<Consumer<ContainerState>> exitListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<ContainerState>> startListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<ContainerState>> pauseListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService resubscriber = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "container-events-resubscribe");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Closeable> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorService> dispatchers = new ConcurrentHashMap<>();
+    private final Set<String> seededHosts = ConcurrentHashMap.newKeySet();
+    // events of a host that arrive while its bulk list runs, applied after it as they are newer
+    private final Map<String, List<Event>> seeding = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public ContainerStateCache(DockerHostRegistry dockerHostRegistry) {
+        this.dockerHostRegistry = dockerHostRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        for (DockerHost host : dockerHostRegistry.all()) {
+            try {
+                subscribe(host);
+            } catch (Exception e) {
+                log.warn("Docker event stream of {} unavailable, retrying: {}", host.name(), e.getMessage());
+                scheduleResubscribe(host);
+            }
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        closed = true;
+        resubscriber.shutdownNow();
+        subscriptions.keySet().forEach(this::closeSubscription);
+        dispatchers.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    public Optional<ContainerState> get(String containerId) {
+        if (containerId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(containers.get(containerId));
+    }
+
+    public Collection<ContainerState> getAll() {
+        return containers.values();
+    }
+
+    // false until the bulk list of every host succeeded, an empty cache then means "unknown", not "no containers"
+    public boolean isSeeded() {
+        return seededHosts.size() == dockerHostRegistry.all().size();
+    }
+
+    public boolean isSeeded(String host) {
+        return seededHosts.contains(dockerHostRegistry.get(host).name());
+    }
+
+    // lets write paths reflect their own change before the matching event arrives
+    public void markState(String containerId, String state) {
+        containers.computeIfPresent(containerId, (id, current) -> current.withState(state));
+    }
+
+    // called with the last known state whenever a container dies or is destroyed
+    public void onExit(Consumer<ContainerState> listener) {
+        exitListeners.add(listener);
+    }
+
+    // called whenever a container starts, including ones started by other agent instances
+    public void onStart(Consumer<ContainerState> listener) {
+        startListeners.add(listener);
+    }
+
+    // called whenever a container is paused, by this instance or any other
+    public void onPause(Consumer<ContainerState> listener) {
+        pauseListeners.add(listener);
+    }
+
+    private void subscribe(DockerHost host) {
+        // subscribe first so nothing that happens during the bulk list is missed
+        seeding.put(host.name(), new ArrayList<>());
+        Closeable subscription = host.call("events", client -> client.eventsCmd()
+                .withEventTypeFilter(EventType.CONTAINER)
+                .withEventFilter("start", "stop", "die", "destroy", "pause", "unpause")
+                .exec(new ResultCallback.Adapter<Event>() {
+                    @Override
+                    public void onNext(Event event) {
+                        dispatch(host, event);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        log.warn("Docker event stream of {} failed: {}", host.name(), throwable.getMessage());
+                        scheduleResubscribe(host);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        scheduleResubscribe(host);
+                    }
+                }));
+        subscriptions.put(host.name(), subscription);
+        seed(host);
+    }
+
+    private void seed(DockerHost host) {
+        List<Container> all = host.call("list", client -> client.listContainersCmd().withShowAll(true).exec());
+        containers.values().removeIf(state -> host.name().equals(state.host()));
+        for (Container container : all) {
+            containers.put(container.getId(), fromContainer(host.name(), container));
+        }
+        List<Event> buffered = seeding.get(host.name());
+        if (buffered != null) {
+            synchronized (buffered) {
+                buffered.forEach(event -> apply(host, event));
+                seeding.remove(host.name(), buffered);
+            }
+        }
+        seededHosts.add(host.name());
+        log.info("Container state cache seeded with {} containers of {}", all.size(), host.name());
+    }
+
+    private void dispatch(DockerHost host, Event event) {
+        ExecutorService dispatcher = dispatchers.computeIfAbsent(host.name(), name ->
+                Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "container-events-" + name);
+                    t.setDaemon(true);
+                    return t;
+                }));
+        try {
+            dispatcher.execute(() -> onEvent(host, event));
+        } catch (RejectedExecutionException e) {
+            log.debug("Dropping event {} of container {}, shutting down", event.getAction(), event.getId());
+        }
+    }
+
+    private void onEvent(DockerHost host, Event event) {
+        List<Event> buffered = seeding.get(host.name());
+        if (buffered != null) {
+            synchronized (buffered) {
+                if (seeding.get(host.name()) == buffered) {
+                    buffered.add(event);
+                    return;
+                }
+            }
+        }
+        apply(host, event);
+    }
+
+    private void apply(DockerHost host, Event event) {
+        String id = event.getId();
+        if (id == null || event.getAction() == null) {
+            return;
+        }
+        switch (event.getAction()) {
+            case "start", "unpause" -> refresh(host, id);
+            case "pause" -> {
+                markState(id, "paused");
+                notify(pauseListeners, containers.get(id));
+            }
+            case "stop" -> markState(id, "exited");
+            case "die" -> {
+                markState(id, "exited");
+                notify(exitListeners, containers.get(id));
+            }
+            case "destroy" -> notify(exitListeners, containers.remove(id));
+            default -> {
+            }
+        }
+    }
+
+    private void notify(List<Consumer<ContainerState>> listeners, ContainerState state) {
+        if (state == null) {
+            return;
+        }
+        for (Consumer<ContainerState> listener : listeners) {
+            try {
+                listener.accept(state);
+            } catch (Exception e) {
+                log.warn("Container listener failed for {}: {}", state.id(), e.getMessage());
+            }
+        }
+    }
+
+    private void refresh(DockerHost host, String containerId) {
+        try {
+            InspectContainerResponse inspect = host.call("inspect",
+                    client -> client.inspectContainerCmd(containerId).exec());
+            ContainerState state = fromInspect(host.name(), inspect);
+            containers.put(containerId, state);
+            if (state.isRunning()) {
+                notify(startListeners, state);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to inspect container {}: {}", containerId, e.getMessage());
+        }
+    }
+
+    private void scheduleResubscribe(DockerHost host) {
+        if (closed) {
+            return;
+        }
+        seededHosts.remove(host.name());
+        closeSubscription(host.name());
+        resubscriber.schedule(() -> {
+            try {
+                subscribe(host);
+            } catch (Exception e) {
+                log.warn("Docker event stream of {} unavailable, retrying: {}", host.name(), e.getMessage());
+                scheduleResubscribe(host);
+            }
+        }, RESUBSCRIBE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void closeSubscription(String host) {
+        Closeable current = subscriptions.remove(host);
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static ContainerState fromContainer(String host, Container container) {
+        String name = container.getNames() != null && container.getNames().length > 0
+                ? container.getNames()[0].replaceFirst("/", "")
+                : "unknown";
+        Integer vncPort = container.getPorts() == null ? null : Arrays.stream(container.getPorts())
+                .filter(port -> port.getPrivatePort() != null && port.getPrivatePort() == VNC_PORT)
+                .map(ContainerPort::getPublicPort)
+                .filter(port -> port != null)
+                .findFirst()
+                .orElse(null);
+        return new ContainerState(host, container.getId(), name, container.getState(), container.getStatus(), vncPort,
+                container.getLabels());
+    }
+
+    private static ContainerState fromInspect(String host, InspectContainerResponse inspect) {
+        Integer vncPort = null;
+        Ports.Binding[] bindings = inspect.getNetworkSettings() == null || inspect.getNetworkSettings().getPorts() == null
+                ? null
+                : inspect.getNetworkSettings().getPorts().getBindings().get(ExposedPort.tcp(VNC_PORT));
+        if (bindings != null && bindings.length > 0 && bindings[0].getHostPortSpec() != null) {
+            vncPort = Integer.parseInt(bindings[0].getHostPortSpec());
+        }
+        String state = inspect.getState().getStatus();
+        Map<String, String> labels = inspect.getConfig() != null ? inspect.getConfig().getLabels() : null;
+        return new ContainerState(host, inspect.getId(), inspect.getName().replaceFirst("/", ""), state, state, vncPort,
+                labels);
+    }
+}
@@ -0,0 +1,58 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.model.StatisticNetworksConfig;
+import com.github.dockerjava.api.model.Statistics;
+
+import java.util.Map;
+
+/**
+ * Reads the numbers we care about out of a one-shot statsCmd sample. Every field of the
+ * Docker stats payload may be missing, e.g. for a container that just stopped, so all of
+ * them count as zero when absent.
+ */
+final class ContainerStats {
+
+    private ContainerStats() {
+    }
+
+    // share of the whole host's CPU time the container used between the two samples
+    static double hostCpuShare(Statistics stats) {
+        if (stats.getCpuStats() == null || stats.getPreCpuStats() == null
+                || stats.getCpuStats().getCpuUsage() == null || stats.getPreCpuStats().getCpuUsage() == null
+                || stats.getCpuStats().getCpuUsage().getTotalUsage() == null
+                || stats.getPreCpuStats().getCpuUsage().getTotalUsage() == null
+                || stats.getCpuStats().getSystemCpuUsage() == null || stats.getPreCpuStats().getSystemCpuUsage() == null) {
+            return 0;
+        }
+        long cpuDelta = stats.getCpuStats().getCpuUsage().getTotalUsage()
+                - stats.getPreCpuStats().getCpuUsage().getTotalUsage();
+        long systemDelta = stats.getCpuStats().getSystemCpuUsage() - stats.getPreCpuStats().getSystemCpuUsage();
+        return systemDelta > 0 && cpuDelta > 0 ? (double) cpuDelta / systemDelta : 0;
+    }
+
+    // the same in cores, as docker stats shows it (1.0 = one core busy)
+    static double cpuCores(Statistics stats) {
+        Long onlineCpus = stats.getCpuStats() != null ? stats.getCpuStats().getOnlineCpus() : null;
+        return hostCpuShare(stats) * (onlineCpus != null && onlineCpus > 0 ? onlineCpus : 1);
+    }
+
+    static long memoryBytes(Statistics stats) {
+        return stats.getMemoryStats() != null && stats.getMemoryStats().getUsage() != null
+                ? stats.getMemoryStats().getUsage()
+                : 0;
+    }
+
+    // received plus sent over all interfaces since the container started
+    static long networkBytes(Statistics stats) {
+        Map<String, StatisticNetworksConfig> networks = stats.getNetworks();
+        if (networks == null) {
+            return 0;
+        }
+        long total = 0;
+        for (StatisticNetworksConfig network : networks.values()) {
+            total += (network.getRxBytes() != null ? network.getRxBytes() : 0)
+                    + (network.getTxBytes() != null ? network.getTxBytes() : 0);
+        }
+        return total;
+    }
+}
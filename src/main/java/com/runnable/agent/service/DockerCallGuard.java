@@ -0,0 +1,207 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.exception.DockerException;
+import com.runnable.agent.configuration.DockerTransportProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single entry point for docker-java calls. Each call gets a per-command deadline, has to
+ * fit in a bulkhead of concurrent daemon calls, and is refused outright while the circuit
+ * breaker is open, so a hung daemon fails callers fast instead of freezing them. A call past
+ * its deadline keeps its bulkhead slot until docker-java actually returns, as it keeps its
+ * pooled connection until then too.
+ * There is one guard per Docker host, see {@link DockerHostRegistry}.
+ */
+public class DockerCallGuard {
+
+    private static final Logger log = LogManager.getLogger(DockerCallGuard.class);
+
+    enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final String hostName;
+    private final DockerMetrics dockerMetrics;
+    private final DockerTransportProperties properties;
+    private final Semaphore bulkhead;
+    private final ExecutorService callExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicReference<CircuitState> circuit = new AtomicReference<>(CircuitState.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAtNanos;
+
+    public DockerCallGuard(String hostName, DockerMetrics dockerMetrics, DockerTransportProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.hostName = hostName;
+        this.dockerMetrics = dockerMetrics;
+        this.properties = properties;
+        this.bulkhead = new Semaphore(properties.maxConcurrentCalls());
+        Gauge.builder("runnable.docker.circuit.open", circuit, state -> state.get() == CircuitState.CLOSED ? 0 : 1)
+                .description("1 while the Docker circuit breaker is open or half-open")
+                .tag("host", hostName)
+                .register(meterRegistry);
+        Gauge.builder("runnable.docker.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Free slots for concurrent Docker calls")
+                .tag("host", hostName)
+                .register(meterRegistry);
+    }
+
+    public <T> T call(String command, Supplier<T> call) {
+        boolean trial = admit(command);
+        try {
+            acquireSlot(command);
+        } catch (DockerUnavailableException e) {
+            if (trial) {
+                circuit.set(CircuitState.OPEN); // give the next caller the trial instead
+            }
+            throw e;
+        }
+        try {
+            T result = dockerMetrics.record(hostName, command, () -> withDeadline(command, call));
+            onSuccess(trial);
+            return result;
+        } catch (RuntimeException e) {
+            if (isDaemonFailure(e)) {
+                onFailure(command, trial, e);
+            } else {
+                // the daemon answered, e.g. 404 or 409, so it is healthy
+                onSuccess(trial);
+            }
+            throw e;
+        }
+    }
+
+    public void call(String command, Runnable call) {
+        call(command, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public boolean isCircuitOpen() {
+        return circuit.get() != CircuitState.CLOSED;
+    }
+
+    void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    // returns true when this call is the half-open trial
+    private boolean admit(String command) {
+        CircuitState state = circuit.get();
+        if (state == CircuitState.CLOSED) {
+            return false;
+        }
+        long openFor = System.nanoTime() - openedAtNanos;
+        if (state == CircuitState.OPEN && openFor >= properties.openDuration().toNanos()
+                && circuit.compareAndSet(CircuitState.OPEN, CircuitState.HALF_OPEN)) {
+            return true;
+        }
+        throw new DockerUnavailableException("Docker circuit of " + hostName + " is open, refusing " + command);
+    }
+
+    private void acquireSlot(String command) {
+        try {
+            if (!bulkhead.tryAcquire(properties.bulkheadWait().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new DockerUnavailableException("Too many concurrent Docker calls to " + hostName + ", refusing " + command);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerUnavailableException("Interrupted waiting to call Docker " + command, e);
+        }
+    }
+
+    /**
+     * Runs the call holding the bulkhead slot acquired for it. The slot goes back when the
+     * call returns, not when the caller gives up on it; only a call that never got to run is
+     * released by the caller.
+     */
+    private <T> T withDeadline(String command, Supplier<T> call) {
+        Duration deadline = properties.deadlineFor(command);
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = callExecutor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null; // the caller gave up before it started
+                }
+                try {
+                    return call.get();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            throw new DockerUnavailableException("Docker calls to " + hostName + " are shut down, refusing " + command, e);
+        }
+        try {
+            return future.get(deadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            abandon(future, claimed);
+            throw new DockerUnavailableException("Docker " + command + " on " + hostName + " exceeded its " + deadline.toMillis() + "ms deadline", e);
+        } catch (InterruptedException e) {
+            abandon(future, claimed);
+            Thread.currentThread().interrupt();
+            throw new DockerUnavailableException("Interrupted waiting for Docker " + command, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new DockerUnavailableException("Docker " + command + " failed", e.getCause());
+        }
+    }
+
+    // the interrupt rarely stops blocking IO, a call that is running keeps its slot until it returns
+    private void abandon(Future<?> future, AtomicBoolean claimed) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+    }
+
+    private void onSuccess(boolean trial) {
+        consecutiveFailures.set(0);
+        if (trial) {
+            circuit.set(CircuitState.CLOSED);
+            log.info("Docker circuit of {} closed again", hostName);
+        }
+    }
+
+    private void onFailure(String command, boolean trial, RuntimeException e) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (!trial && (failures < properties.failureThreshold() || circuit.get() != CircuitState.CLOSED)) {
+            return;
+        }
+        // stamp before publishing OPEN so admit never sees OPEN with a stale timestamp
+        openedAtNanos = System.nanoTime();
+        if (trial) {
+            circuit.set(CircuitState.OPEN);
+        } else if (!circuit.compareAndSet(CircuitState.CLOSED, CircuitState.OPEN)) {
+            return;
+        }
+        log.warn("Docker circuit of {} opened after {} failing {}: {}", hostName, failures, command, e.getMessage());
+    }
+
+    // 4xx answers mean the daemon is fine and the request was not
+    private static boolean isDaemonFailure(RuntimeException e) {
+        if (e instanceof DockerException dockerException) {
+            return dockerException.getHttpStatus() >= 500;
+        }
+        return true;
+    }
+}
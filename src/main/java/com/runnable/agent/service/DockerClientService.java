@@ -1,91 +1,282 @@
 package com.runnable.agent.service;
-import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.ExecCreateCmdResponse;
 import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.model.*;
-import com.github.dockerjava.core.DockerClientBuilder;
+import com.github.dockerjava.core.InvocationBuilder;
+import com.runnable.agent.configuration.JobQuotaProperties.JobClass;
 import com.runnable.agent.dto.ContainerInfo;
 import com.runnable.agent.dto.Jobs;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.net.ServerSocket;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Random;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 public class DockerClientService {
 
-    DockerClient dockerClient;
+    private static final long CPU_PERIOD_MICROS = 100_000;
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
 
-    public DockerClientService(DockerClient dockerClient) {
-        this.dockerClient = dockerClient; // ✅ use injected bean
+    private final DockerHostRegistry dockerHostRegistry;
+    private final PlacementScheduler placementScheduler;
+    private final PortAllocator portAllocator;
+    private final AdmissionController admissionController;
+    private final ImageManager imageManager;
+    private final String inferenceUrl;
+    private final String inferenceModel;
+    private final boolean publishVncPorts;
+    private final String vncNetwork;
+
+    public DockerClientService(DockerHostRegistry dockerHostRegistry, PlacementScheduler placementScheduler,
+                               PortAllocator portAllocator, AdmissionController admissionController,
+                               ImageManager imageManager,
+                               @Value("${runnable.inference.gateway-url:http://host.docker.internal:8080/inference}") String inferenceUrl,
+                               @Value("${runnable.inference.default-model:qwen3:0.6b}") String inferenceModel,
+                               @Value("${runnable.vnc.publish-ports:false}") boolean publishVncPorts,
+                               @Value("${runnable.vnc.network:bridge}") String vncNetwork) {
+        this.dockerHostRegistry = dockerHostRegistry;
+        this.placementScheduler = placementScheduler;
+        this.portAllocator = portAllocator;
+        this.admissionController = admissionController;
+        this.imageManager = imageManager;
+        this.inferenceUrl = inferenceUrl;
+        this.inferenceModel = inferenceModel;
+        this.publishVncPorts = publishVncPorts;
+        this.vncNetwork = vncNetwork;
     }
 
     public List<Container> getAllContainer(){
-        List<Container> containers = dockerClient.listContainersCmd().exec();
-        return containers;
+        return dockerHostRegistry.all().stream()
+                .map(host -> host.call("list", client -> client.listContainersCmd().exec()))
+                .flatMap(Collection::stream)
+                .toList();
     }
 
     public List<Image> getAllImages(){
-        List<Image> images = dockerClient.listImagesCmd().exec();
-        return images;
+        return imageManager.images();
+    }
+
+    /**
+     * The admission decides the host and the resource limits of the container. The name is
+     * derived from the job id, so Docker itself refuses a second container for the same job.
+     */
+    public ContainerInfo createNewJob(int jobId, String jobName, AdmissionController.Admission admission) {
+        return createAgentContainer(jobContainerName(jobId), jobName, admission);
+    }
+
+    // starts an agent container with no task, the warm pool hands it one later via execTask
+    public ContainerInfo createIdleContainer(AdmissionController.Admission admission) {
+        // the sequence keeps names unique when several are created in the same millisecond
+        return createAgentContainer("agent-pool-" + System.currentTimeMillis() + "-" + POOL_SEQUENCE.incrementAndGet(),
+                null, admission);
+    }
+
+    public static String jobContainerName(int jobId) {
+        return "agent-job-" + jobId;
     }
 
-    public ContainerInfo createNewJob(String jobName) {
-        int port = findFreePort();
+    /**
+     * Looks on every host for the container of a job, e.g. one created by a worker that died
+     * before saving it. It is returned as it is, a container that never got started is left
+     * for the caller to start once it has capacity for it.
+     */
+    public Optional<ContainerInfo> findJobContainer(int jobId) {
+        String name = "/" + jobContainerName(jobId);
+        for (DockerHost host : dockerHostRegistry.all()) {
+            List<Container> matches = host.call("list", client -> client.listContainersCmd()
+                    .withShowAll(true)
+                    .withNameFilter(List.of(jobContainerName(jobId)))
+                    .exec());
+            // the name filter matches substrings, agent-job-1 also finds agent-job-12
+            Optional<Container> container = matches.stream()
+                    .filter(match -> match.getNames() != null && Arrays.asList(match.getNames()).contains(name))
+                    .findFirst();
+            if (container.isPresent()) {
+                // the configured binding, unlike the published ports it is there while the container is down too
+                InspectContainerResponse inspect = host.call("inspect",
+                        client -> client.inspectContainerCmd(container.get().getId()).exec());
+                Ports.Binding[] bindings = inspect.getHostConfig() == null || inspect.getHostConfig().getPortBindings() == null
+                        ? null
+                        : inspect.getHostConfig().getPortBindings().getBindings().get(ExposedPort.tcp(6080));
+                boolean bound = bindings != null && bindings.length > 0 && bindings[0].getHostPortSpec() != null;
+                if (publishVncPorts && !bound) {
+                    return Optional.empty();
+                }
+                Integer port = bound ? Integer.parseInt(bindings[0].getHostPortSpec()) : null;
+                if (port != null) {
+                    portAllocator.reacquire(port);
+                }
+                return Optional.of(new ContainerInfo(host.name(), container.get().getId(), jobContainerName(jobId),
+                        container.get().getState(), port, port != null ? host.vncUrl(port, "vnc_lite.html") : null));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public void renameContainer(String host, String containerId, String name) {
+        dockerHostRegistry.get(host).call("rename", client -> client.renameContainerCmd(containerId).withName(name).exec());
+    }
+
+    private ContainerInfo createAgentContainer(String containerName, String jobName,
+                                               AdmissionController.Admission admission) {
+        DockerHost host = admission.host();
+        placementScheduler.begin(host);
+        Integer port = null;
+        try {
+            // without published ports viewers go through the VNC gateway, no host port is needed
+            if (publishVncPorts) {
+                port = portAllocator.lease();
+            }
+            ContainerInfo info = createAgentContainer(host, containerName, jobName, port, admission);
+            admissionController.bind(admission, info.id());
+            return info;
+        } catch (RuntimeException e) {
+            if (port != null) {
+                portAllocator.release(port);
+            }
+            admissionController.release(admission);
+            throw e;
+        } finally {
+            placementScheduler.complete(host);
+        }
+    }
 
+    private ContainerInfo createAgentContainer(DockerHost host, String containerName, String jobName, Integer port,
+                                               AdmissionController.Admission admission) {
+        JobClass quota = admission.quota();
         ExposedPort vncPort = ExposedPort.tcp(6080); // internal port inside container
         Ports portBindings = new Ports();
-        portBindings.bind(vncPort, Ports.Binding.bindPort(port)); // host port
+        if (port != null) {
+            portBindings.bind(vncPort, Ports.Binding.bindPort(port)); // host port
+        }
 
-        CreateContainerResponse container = dockerClient.createContainerCmd("coding-agent:latest")
-                .withName("agent-" + System.currentTimeMillis())
-                .withCmd(jobName)
+        CreateContainerCmd createCmd = host.client().createContainerCmd(imageManager.agentImage(host)) // pinned, never a moving tag
+                .withName(containerName)
                 .withEnv(
                         List.of(
-                                "OLLAMA_API=http://host.docker.internal:11434",
-                                "OLLAMA_MODEL=codellama"
+                                "OLLAMA_API=" + inferenceUrl, // the gateway, not Ollama itself
+                                "OLLAMA_MODEL=" + inferenceModel
                         )
                 )
                 .withExposedPorts(vncPort)
-                .withHostConfig(new HostConfig().withPortBindings(portBindings))
-                .exec();
+                .withLabels(admission.labels()) // lets every instance account for it, see AdmissionController
+                .withHostConfig(new HostConfig()
+                        .withPortBindings(portBindings)
+                        .withNetworkMode(vncNetwork) // the gateway reaches the VNC server on this network
+                        .withExtraHosts("host.docker.internal:host-gateway") // not defined on Linux otherwise
+                        .withCpuShares(quota.cpuShares())
+                        .withCpuPeriod(CPU_PERIOD_MICROS)
+                        .withCpuQuota((long) (quota.cpus() * CPU_PERIOD_MICROS))
+                        .withMemory(quota.memory().toBytes())
+                        .withMemorySwap(quota.memory().toBytes()) // same as memory, so no swap on top
+                        .withPidsLimit(quota.pidsLimit()));
+        if (jobName != null) {
+            createCmd.withCmd(jobName);
+        }
+        CreateContainerResponse container = host.call("create", client -> createCmd.exec());
 
-        dockerClient.startContainerCmd(container.getId()).exec();
+        host.call("start", client -> client.startContainerCmd(container.getId()).exec());
 
-        InspectContainerResponse inspect = dockerClient.inspectContainerCmd(container.getId()).exec();
+        InspectContainerResponse inspect = host.call("inspect",
+                client -> client.inspectContainerCmd(container.getId()).exec());
         String name = inspect.getName().replaceFirst("/", "");
         String status = inspect.getState().getStatus(); // e.g. "running"
-        String vncUrl = "http://localhost:" + port + "/vnc_lite.html";
-        return new ContainerInfo(container.getId(), name, status, port, vncUrl);
+        String vncUrl = port != null ? host.vncUrl(port, "vnc_lite.html") : null;
+        return new ContainerInfo(host.name(), container.getId(), name, status, port, vncUrl);
     }
 
-    private int findFreePort() {
-        try (ServerSocket socket = new ServerSocket(0)) {
-            return socket.getLocalPort(); // OS gives a free port
-        } catch (IOException e) {
-            // fallback to random in safe range
-            return 10000 + new Random().nextInt(50000);
-        }
+    /**
+     * Runs the agent inside an already started container, returns once the exec is launched.
+     * A detached exec's output goes nowhere, so it is sent to PID 1's stdout and shows up in
+     * the container log like a cold-started job's. The job name is passed as an argument,
+     * never spliced into the script.
+     */
+    public void execTask(String host, String containerId, String jobName) {
+        DockerHost dockerHost = dockerHostRegistry.get(host);
+        ExecCreateCmdResponse exec = dockerHost.call("exec-create", client -> client.execCreateCmd(containerId)
+                .withEnv(List.of("DISPLAY=:0"))
+                .withCmd("sh", "-c", "python3 /agent.py \"$1\" >/proc/1/fd/1 2>&1", "_", jobName)
+                .exec());
+        dockerHost.call("exec-start", client -> client.execStartCmd(exec.getId())
+                .withDetach(true)
+                .exec(new ResultCallback.Adapter<>()));
+    }
+
+    public void removeContainer(String host, String containerId) {
+        dockerHostRegistry.get(host).call("remove",
+                client -> client.removeContainerCmd(containerId).withForce(true).exec());
+    }
+
+    // seconds Docker waits after SIGTERM before it kills the container
+    public void stopContainerByJobId(String host, String containerId, int timeoutSeconds) {
+        dockerHostRegistry.get(host).call("stop",
+                client -> client.stopContainerCmd(containerId).withTimeout(timeoutSeconds).exec());
     }
 
-    public int getVncPort(String containerId) {
-        Container container = dockerClient.listContainersCmd()
-                .withIdFilter(List.of(containerId))
-                .exec()
-                .stream()
-                .findFirst()
-                .orElseThrow();
+    /**
+     * Follows stdout/stderr of a container starting with the last tailLines lines. Frames are
+     * delivered on docker-java's callback thread, so onFrame must not block.
+     */
+    public Closeable followLogs(String host, String containerId, int tailLines, Consumer<byte[]> onFrame, Runnable onEnd) {
+        return dockerHostRegistry.get(host).call("logs", client -> client.logContainerCmd(containerId)
+                .withStdOut(true)
+                .withStdErr(true)
+                .withFollowStream(true)
+                .withTail(tailLines)
+                .exec(new ResultCallback.Adapter<Frame>() {
+                    @Override
+                    public void onNext(Frame frame) {
+                        onFrame.accept(frame.getPayload());
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        super.onError(throwable);
+                        onEnd.run();
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        super.onComplete();
+                        onEnd.run();
+                    }
+                }));
+    }
+
+    // tar stream of the path, the caller must close it
+    public InputStream copyArchive(String host, String containerId, String path) {
+        return dockerHostRegistry.get(host).call("copy-archive",
+                client -> client.copyArchiveFromContainerCmd(containerId, path).exec());
+    }
+
+    // one-shot sample, the daemon takes about a second to fill in the previous CPU reading
+    public Statistics stats(String host, String containerId) {
+        return dockerHostRegistry.get(host).call("stats", client -> client.statsCmd(containerId)
+                .withNoStream(true)
+                .exec(new InvocationBuilder.AsyncResultCallback<Statistics>())
+                .awaitResult());
+    }
 
-        return container.getPorts()[1].getPublicPort();
+    // freezes every process in the container, memory stays allocated but no CPU is used
+    public void pauseContainer(String host, String containerId) {
+        dockerHostRegistry.get(host).call("pause", client -> client.pauseContainerCmd(containerId).exec());
     }
 
-    public void stopContainerByJobId(String containerId) {
-        dockerClient.stopContainerCmd(containerId).exec();
+    public void unpauseContainer(String host, String containerId) {
+        dockerHostRegistry.get(host).call("unpause", client -> client.unpauseContainerCmd(containerId).exec());
     }
 
-    public void startContainer(String containerId) {
-        dockerClient.startContainerCmd(containerId).exec();
+    public void startContainer(String host, String containerId) {
+        dockerHostRegistry.get(host).call("start", client -> client.startContainerCmd(containerId).exec());
     }
 }
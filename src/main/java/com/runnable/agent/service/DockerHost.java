@@ -0,0 +1,25 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.DockerClient;
+
+import java.util.function.Function;
+
+/**
+ * One Docker daemon jobs can be placed on, with its own client and call guard so a sick
+ * daemon only trips its own circuit.
+ */
+public record DockerHost(
+        String name,
+        DockerClient client,
+        DockerCallGuard guard,
+        String advertisedAddress
+) {
+    // runs a command against this host's client through its guard
+    public <T> T call(String command, Function<DockerClient, T> call) {
+        return guard.call(command, () -> call.apply(client));
+    }
+
+    public String vncUrl(int port, String page) {
+        return "http://" + advertisedAddress + ":" + port + "/" + page;
+    }
+}
@@ -0,0 +1,68 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.runnable.agent.configuration.DockerClientConfiguration;
+import com.runnable.agent.configuration.DockerTransportProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The set of Docker daemons this instance drives: the default one plus every entry under
+ * runnable.docker.endpoints. Jobs record the host name they were placed on.
+ */
+@Component
+public class DockerHostRegistry {
+
+    private final Map<String, DockerHost> hosts = new LinkedHashMap<>();
+    private final DockerHost defaultHost;
+
+    public DockerHostRegistry(DockerClient dockerClient,
+                              DockerTransportProperties properties,
+                              DockerMetrics dockerMetrics,
+                              MeterRegistry meterRegistry) {
+        String defaultName = DockerTransportProperties.DEFAULT_HOST;
+        defaultHost = new DockerHost(defaultName, dockerClient,
+                new DockerCallGuard(defaultName, dockerMetrics, properties, meterRegistry),
+                properties.advertisedAddress());
+        hosts.put(defaultName, defaultHost);
+        properties.endpoints().forEach((name, endpoint) -> {
+            if (hosts.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate Docker host name " + name);
+            }
+            hosts.put(name, new DockerHost(name,
+                    DockerClientConfiguration.createClient(endpoint.host(), properties),
+                    new DockerCallGuard(name, dockerMetrics, properties, meterRegistry),
+                    endpoint.advertisedAddress() != null ? endpoint.advertisedAddress() : properties.advertisedAddress()));
+        });
+    }
+
+    // rows created before multi-host support have no host and live on the default daemon
+    public DockerHost get(String name) {
+        if (name == null) {
+            return defaultHost;
+        }
+        DockerHost host = hosts.get(name);
+        if (host == null) {
+            throw new IllegalArgumentException("Unknown Docker host " + name);
+        }
+        return host;
+    }
+
+    public DockerHost defaultHost() {
+        return defaultHost;
+    }
+
+    public Collection<DockerHost> all() {
+        return hosts.values();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hosts.values().forEach(host -> host.guard().shutdown());
+    }
+}
@@ -0,0 +1,50 @@
+package com.runnable.agent.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Times docker-java commands as runnable.docker.command, tagged with the host, the command
+ * name and whether it succeeded, with a histogram so percentiles can be computed per command.
+ */
+@Component
+public class DockerMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public DockerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T record(String host, String command, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer(host, command, outcome));
+        }
+    }
+
+    public void record(String host, String command, Runnable call) {
+        record(host, command, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private Timer timer(String host, String command, String outcome) {
+        return Timer.builder("runnable.docker.command")
+                .description("Latency of docker-java commands")
+                .tag("host", host)
+                .tag("command", command)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,16 @@
+package com.runnable.agent.service;
+
+/**
+ * Thrown instead of calling the daemon when it is considered unhealthy: the circuit is open,
+ * the bulkhead is full or the command ran past its deadline.
+ */
+public class DockerUnavailableException extends RuntimeException {
+
+    public DockerUnavailableException(String message) {
+        super(message);
+    }
+
+    public DockerUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
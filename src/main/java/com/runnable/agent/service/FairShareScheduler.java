@@ -0,0 +1,99 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobPriority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Decides which waiting job goes next and which running ones make room for it. Higher
+ * priorities go first; within a priority the owner using the least CPU for its weight goes
+ * first, and the same owner's jobs go in arrival order. Not thread-safe, AdmissionController
+ * calls it under its lock.
+ */
+final class FairShareScheduler {
+
+    private final ToIntFunction<String> weights;
+    private final List<Waiter> waiting = new ArrayList<>();
+    // CPUs committed to the running containers of each owner
+    private final Map<String, Double> ownerCpus = new HashMap<>();
+
+    FairShareScheduler(ToIntFunction<String> weights) {
+        this.weights = weights;
+    }
+
+    void enqueue(Waiter waiter) {
+        waiting.add(waiter);
+    }
+
+    void remove(long ticket) {
+        waiting.removeIf(waiter -> waiter.ticket() == ticket);
+    }
+
+    int size() {
+        return waiting.size();
+    }
+
+    boolean isEmpty() {
+        return waiting.isEmpty();
+    }
+
+    Waiter next() {
+        return waiting.stream().min(serviceOrder()).orElse(null);
+    }
+
+    boolean waitingAbove(JobPriority priority) {
+        return waiting.stream().anyMatch(waiter -> waiter.priority().outranks(priority));
+    }
+
+    void charge(String owner, double cpus) {
+        ownerCpus.merge(owner, cpus, Double::sum);
+    }
+
+    void refund(String owner, double cpus) {
+        ownerCpus.computeIfPresent(owner, (key, used) -> used - cpus > 1e-9 ? used - cpus : null);
+    }
+
+    double share(String owner) {
+        return ownerCpus.getOrDefault(owner, 0.0) / weights.applyAsInt(owner);
+    }
+
+    /**
+     * The fewest running jobs of a lower priority whose CPUs add up to cpusNeeded, taken
+     * from the lowest priority first and, within it, from the owner furthest over its share.
+     * Empty when the lower priorities together do not free enough.
+     */
+    List<Running> victims(Collection<Running> running, JobPriority priority, double cpusNeeded) {
+        List<Running> candidates = running.stream()
+                .filter(job -> priority.outranks(job.priority()))
+                .sorted(Comparator.comparing(Running::priority)
+                        .thenComparing(Comparator.comparingDouble((Running job) -> share(job.owner())).reversed())
+                        .thenComparing(Comparator.comparingDouble(Running::cpus).reversed()))
+                .toList();
+        List<Running> victims = new ArrayList<>();
+        double freed = 0;
+        for (Running candidate : candidates) {
+            if (freed >= cpusNeeded - 1e-9) {
+                break;
+            }
+            victims.add(candidate);
+            freed += candidate.cpus();
+        }
+        return freed >= cpusNeeded - 1e-9 ? victims : List.of();
+    }
+
+    private Comparator<Waiter> serviceOrder() {
+        return Comparator.comparing(Waiter::priority).reversed()
+                .thenComparingDouble(waiter -> share(waiter.owner()))
+                .thenComparingLong(Waiter::ticket);
+    }
+
+    record Waiter(long ticket, String owner, JobPriority priority) {}
+
+    record Running(String key, String owner, JobPriority priority, double cpus) {}
+}
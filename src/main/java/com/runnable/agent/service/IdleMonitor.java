@@ -0,0 +1,186 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.model.Statistics;
+import com.runnable.agent.dto.ContainerState;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Pauses job containers that have gone quiet. Every started job's container is sampled with
+ * statsCmd; one that stays under the CPU and network thresholds for pauseAfter is frozen with
+ * pauseContainerCmd, giving its CPU back to the admission controller, and a paused one is
+ * stopped after stopAfter when that is set. Asking for the job's VNC URL or running start-job
+ * takes the CPU back and unpauses it again, see JobService.
+ */
+@Service
+public class IdleMonitor {
+
+    private static final Logger log = LogManager.getLogger(IdleMonitor.class);
+
+    private final JobsRepository jobsRepository;
+    private final ContainerStateCache containerStateCache;
+    private final DockerClientService dockerClientService;
+    private final JobService jobService;
+    private final AdmissionController admissionController;
+    private final boolean enabled;
+    private final Duration sampleInterval;
+    private final double idleCpuCores;
+    private final long idleNetworkBytes;
+    private final Duration pauseAfter;
+    private final Duration stopAfter;
+    private final int maxConcurrentSamples;
+    private final Map<String, Activity> activity = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "idle-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public IdleMonitor(JobsRepository jobsRepository,
+                       ContainerStateCache containerStateCache,
+                       DockerClientService dockerClientService,
+                       JobService jobService,
+                       AdmissionController admissionController,
+                       @Value("${runnable.idle.enabled:true}") boolean enabled,
+                       @Value("${runnable.idle.sample-interval:30s}") Duration sampleInterval,
+                       @Value("${runnable.idle.cpu-cores:0.05}") double idleCpuCores,
+                       @Value("${runnable.idle.network-bytes:65536}") long idleNetworkBytes,
+                       @Value("${runnable.idle.pause-after:10m}") Duration pauseAfter,
+                       @Value("${runnable.idle.stop-after:0s}") Duration stopAfter,
+                       @Value("${runnable.idle.max-concurrent-samples:16}") int maxConcurrentSamples) {
+        this.jobsRepository = jobsRepository;
+        this.containerStateCache = containerStateCache;
+        this.dockerClientService = dockerClientService;
+        this.jobService = jobService;
+        this.admissionController = admissionController;
+        this.enabled = enabled;
+        this.sampleInterval = sampleInterval;
+        this.idleCpuCores = idleCpuCores;
+        this.idleNetworkBytes = idleNetworkBytes;
+        this.pauseAfter = pauseAfter;
+        this.stopAfter = stopAfter;
+        this.maxConcurrentSamples = maxConcurrentSamples;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        // unpaused or restarted, from here or another instance: the idle clock starts over
+        containerStateCache.onStart(state -> activity.remove(state.id()));
+        containerStateCache.onExit(state -> activity.remove(state.id()));
+        long intervalMillis = sampleInterval.toMillis();
+        sampler.scheduleWithFixedDelay(this::sampleAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        sampler.shutdownNow();
+    }
+
+    private void sampleAll() {
+        List<Jobs> jobs = jobsRepository.findAllByJobStatus(JobStatus.STARTED);
+        Set<String> tracked = jobs.stream().map(Jobs::getContainerId).collect(Collectors.toSet());
+        activity.keySet().retainAll(tracked);
+
+        List<Jobs> running = new ArrayList<>();
+        for (Jobs job : jobs) {
+            Optional<ContainerState> state = containerStateCache.get(job.getContainerId());
+            if (state.filter(ContainerState::isPaused).isPresent()) {
+                // preempted rather than idle, the admission controller resumes it
+                if (!admissionController.isPreempted(job.getContainerId())) {
+                    stopIfExpired(job);
+                }
+            } else if (state.filter(ContainerState::isRunning).isPresent()) {
+                running.add(job);
+            }
+        }
+
+        Semaphore permits = new Semaphore(maxConcurrentSamples);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Jobs job : running) {
+                executor.execute(() -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try {
+                        sample(job);
+                    } catch (Exception e) {
+                        log.debug("Failed to sample container of job {}: {}", job.getJobId(), e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private void sample(Jobs job) {
+        String containerId = job.getContainerId();
+        Statistics stats = dockerClientService.stats(job.getDockerHost(), containerId);
+        if (stats == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long networkBytes = ContainerStats.networkBytes(stats);
+        double cpuCores = ContainerStats.cpuCores(stats);
+        Activity previous = activity.get(containerId);
+        // the first sample has no network baseline yet, so it never counts as idle
+        boolean idle = previous != null
+                && cpuCores < idleCpuCores
+                && networkBytes - previous.networkBytes() < idleNetworkBytes;
+        long idleSince = !idle ? 0 : previous.idleSinceNanos() != 0 ? previous.idleSinceNanos() : now;
+        activity.put(containerId, new Activity(networkBytes, idleSince, 0));
+
+        if (idle && now - idleSince >= pauseAfter.toNanos()) {
+            dockerClientService.pauseContainer(job.getDockerHost(), containerId);
+            containerStateCache.markState(containerId, "paused");
+            admissionController.idlePaused(containerId); // its CPU goes to whoever needs it, the memory stays
+
+            activity.put(containerId, new Activity(networkBytes, idleSince, now));
+            log.info("Paused container of job {} after {}s idle", job.getJobId(),
+                    TimeUnit.NANOSECONDS.toSeconds(now - idleSince));
+        }
+    }
+
+    private void stopIfExpired(Jobs job) {
+        if (stopAfter.isZero()) {
+            return;
+        }
+        long now = System.nanoTime();
+        // paused before this instance started watching, count from the first time we see it
+        Activity paused = activity.compute(job.getContainerId(), (id, current) ->
+                current != null && current.pausedAtNanos() != 0 ? current : new Activity(0, 0, now));
+        if (now - paused.pausedAtNanos() >= stopAfter.toNanos()) {
+            log.info("Stopping job {}, its container has been paused for {}", job.getJobId(), stopAfter);
+            jobService.stopJobById(job.getJobId());
+        }
+    }
+
+    private record Activity(long networkBytes, long idleSinceNanos, long pausedAtNanos) {}
+}
@@ -0,0 +1,287 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.InspectImageResponse;
+import com.github.dockerjava.api.command.PullImageResultCallback;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import com.github.dockerjava.api.model.Image;
+import com.github.dockerjava.api.model.PruneResponse;
+import com.github.dockerjava.api.model.PruneType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure the agent image is on every Docker host before the first job needs it. At
+ * startup the image is inspected on each host and pulled where it is missing, and new
+ * containers are created from the resolved digest (or image id for locally built images)
+ * rather than the tag. Image lists are cached per host and refreshed from image events, and
+ * dangling agent images are pruned on a schedule.
+ */
+@Service
+public class ImageManager {
+
+    private static final Logger log = LogManager.getLogger(ImageManager.class);
+    private static final long RESUBSCRIBE_DELAY_SECONDS = 5;
+    private static final long REFRESH_DELAY_MILLIS = 500;
+    // set in runnable/Dockerfile, so pruning never touches anybody else's images
+    static final String AGENT_LABEL = "runnable.agent=true";
+
+    private final DockerHostRegistry dockerHostRegistry;
+    private final String agentImage;
+    private final String agentRepository;
+    private final String agentTag;
+    private final boolean pullMissing;
+    private final Duration pruneInterval;
+    private final Map<String, String> pinned = new ConcurrentHashMap<>();
+    private final Map<String, List<Image>> images = new ConcurrentHashMap<>();
+    private final Map<String, Closeable> subscriptions = new ConcurrentHashMap<>();
+    private final Set<String> pendingRefresh = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "image-manager");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean closed;
+
+    public ImageManager(DockerHostRegistry dockerHostRegistry,
+                        @Value("${runnable.images.agent:coding-agent:latest}") String agentImage,
+                        @Value("${runnable.images.pull-missing:true}") boolean pullMissing,
+                        @Value("${runnable.images.prune-interval:1h}") Duration pruneInterval) {
+        this.dockerHostRegistry = dockerHostRegistry;
+        this.agentImage = agentImage;
+        int colon = agentImage.lastIndexOf(':');
+        boolean tagged = colon > agentImage.lastIndexOf('/'); // a colon before the last slash is a registry port
+        this.agentRepository = tagged ? agentImage.substring(0, colon) : agentImage;
+        this.agentTag = tagged ? agentImage.substring(colon + 1) : "latest";
+        this.pullMissing = pullMissing;
+        this.pruneInterval = pruneInterval;
+    }
+
+    // blocks startup until every reachable host has the image, pulls run in parallel
+    @PostConstruct
+    void start() {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (DockerHost host : dockerHostRegistry.all()) {
+                executor.execute(() -> {
+                    try {
+                        subscribe(host);
+                    } catch (Exception e) {
+                        log.warn("Image events of {} unavailable, retrying: {}", host.name(), e.getMessage());
+                        scheduleResubscribe(host);
+                    }
+                    try {
+                        resolve(host, pullMissing);
+                    } catch (Exception e) {
+                        log.error("Agent image {} is not ready on {}: {}", agentImage, host.name(), e.getMessage());
+                    }
+                });
+            }
+        }
+        if (!pruneInterval.isZero()) {
+            long intervalMillis = pruneInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::pruneAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        closed = true;
+        scheduler.shutdownNow();
+        subscriptions.keySet().forEach(this::closeSubscription);
+    }
+
+    /**
+     * Image reference new agent containers on the host are created from. Resolves (and if
+     * allowed pulls) the image when startup could not, and fails if it is still missing.
+     */
+    public String agentImage(DockerHost host) {
+        String reference = pinned.get(host.name());
+        if (reference != null) {
+            return reference;
+        }
+        reference = resolve(host, pullMissing);
+        if (reference == null) {
+            throw new IllegalStateException("Agent image " + agentImage + " is not available on " + host.name());
+        }
+        return reference;
+    }
+
+    public boolean isReady(DockerHost host) {
+        return pinned.containsKey(host.name());
+    }
+
+    // the same image on several hosts is listed once
+    public List<Image> images() {
+        Map<String, Image> all = new LinkedHashMap<>();
+        for (DockerHost host : dockerHostRegistry.all()) {
+            List<Image> listed = images.get(host.name());
+            if (listed == null) {
+                listed = listImages(host);
+            }
+            listed.forEach(image -> all.putIfAbsent(image.getId(), image));
+        }
+        return List.copyOf(all.values());
+    }
+
+    private void subscribe(DockerHost host) {
+        Closeable subscription = host.call("events", client -> client.eventsCmd()
+                .withEventTypeFilter(EventType.IMAGE)
+                .withEventFilter("pull", "tag", "untag", "delete", "import", "load")
+                .exec(new ResultCallback.Adapter<Event>() {
+                    @Override
+                    public void onNext(Event event) {
+                        scheduleRefresh(host);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        log.warn("Image event stream of {} failed: {}", host.name(), throwable.getMessage());
+                        scheduleResubscribe(host);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        scheduleResubscribe(host);
+                    }
+                }));
+        subscriptions.put(host.name(), subscription);
+        listImages(host);
+    }
+
+    // a build or pull fires a burst of events, one refresh covers all of them
+    private void scheduleRefresh(DockerHost host) {
+        if (closed || !pendingRefresh.add(host.name())) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            pendingRefresh.remove(host.name());
+            try {
+                listImages(host);
+                resolve(host, false); // a rebuilt tag moves the pin, a deleted one clears it
+            } catch (Exception e) {
+                log.warn("Failed to refresh images of {}: {}", host.name(), e.getMessage());
+            }
+        }, REFRESH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private List<Image> listImages(DockerHost host) {
+        List<Image> listed = List.copyOf(host.call("list-images", client -> client.listImagesCmd().exec()));
+        images.put(host.name(), listed);
+        return listed;
+    }
+
+    private String resolve(DockerHost host, boolean pull) {
+        InspectImageResponse image;
+        try {
+            image = inspect(host);
+        } catch (NotFoundException e) {
+            if (!pull) {
+                if (pinned.remove(host.name()) != null) {
+                    log.warn("Agent image {} disappeared from {}", agentImage, host.name());
+                }
+                return null;
+            }
+            pull(host);
+            image = inspect(host);
+        }
+        String reference = pinFor(image);
+        String previous = pinned.put(host.name(), reference);
+        if (!reference.equals(previous)) {
+            log.info("Agent image {} on {} pinned to {}", agentImage, host.name(), reference);
+        }
+        return reference;
+    }
+
+    private InspectImageResponse inspect(DockerHost host) {
+        return host.call("inspect-image", client -> client.inspectImageCmd(agentImage).exec());
+    }
+
+    private void pull(DockerHost host) {
+        log.info("Pulling agent image {} on {}", agentImage, host.name());
+        host.call("pull", client -> {
+            try {
+                return client.pullImageCmd(agentRepository).withTag(agentTag)
+                        .exec(new PullImageResultCallback())
+                        .awaitCompletion();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DockerUnavailableException("Interrupted pulling " + agentImage, e);
+            }
+        });
+    }
+
+    // a registry digest survives re-tagging and is the same on every host, the image id is the fallback
+    private String pinFor(InspectImageResponse image) {
+        if (image.getRepoDigests() != null) {
+            for (String digest : image.getRepoDigests()) {
+                if (digest.startsWith(agentRepository + "@")) {
+                    return digest;
+                }
+            }
+        }
+        return image.getId();
+    }
+
+    // images still used by a container are kept by the daemon itself
+    private void pruneAll() {
+        for (DockerHost host : dockerHostRegistry.all()) {
+            try {
+                PruneResponse response = host.call("prune", client -> client.pruneCmd(PruneType.IMAGES)
+                        .withDangling(true)
+                        .withLabelFilter(AGENT_LABEL)
+                        .exec());
+                Long reclaimed = response.getSpaceReclaimed();
+                if (reclaimed != null && reclaimed > 0) {
+                    log.info("Pruned dangling agent images on {}, reclaimed {} MB", host.name(), reclaimed / (1024 * 1024));
+                }
+            } catch (Exception e) {
+                log.warn("Failed to prune agent images on {}: {}", host.name(), e.getMessage());
+            }
+        }
+    }
+
+    private void scheduleResubscribe(DockerHost host) {
+        if (closed) {
+            return;
+        }
+        closeSubscription(host.name());
+        images.remove(host.name()); // listed on demand until the stream is back
+        scheduler.schedule(() -> {
+            try {
+                subscribe(host);
+            } catch (Exception e) {
+                log.warn("Image events of {} unavailable, retrying: {}", host.name(), e.getMessage());
+                scheduleResubscribe(host);
+            }
+        }, RESUBSCRIBE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void closeSubscription(String host) {
+        Closeable current = subscriptions.remove(host);
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
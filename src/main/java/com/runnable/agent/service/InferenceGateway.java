@@ -0,0 +1,371 @@
+package com.runnable.agent.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sits between the agent containers and Ollama. A prompt that is already being generated
+ * joins that generation instead of starting another one, finished responses are cached for
+ * a while, and at most maxConcurrent generations run at once with the rest waiting in
+ * arrival order, so a burst of jobs cannot pile every generation onto the one Ollama.
+ * <p>
+ * Every subscriber gets the tokens through its own bounded queue and delivery thread, so a
+ * slow client never holds up the generation or the other subscribers. One that lets its
+ * queue fill up is dropped with an error rather than silently missing tokens.
+ */
+@Service
+public class InferenceGateway {
+
+    private static final Logger log = LogManager.getLogger(InferenceGateway.class);
+
+    private final ChatModel chatModel;
+    private final String defaultModel;
+    private final int maxQueued;
+    private final Duration queueWait;
+    private final Duration tokenTimeout;
+    private final int subscriberQueueSize;
+    private final Semaphore generations;
+    private final ResponseCache cache;
+    private final Map<Key, Generation> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter cacheHits;
+    private final Counter coalesced;
+    private final Counter generated;
+    private final Counter rejected;
+
+    public InferenceGateway(ChatModel chatModel,
+                            MeterRegistry meterRegistry,
+                            @Value("${runnable.inference.default-model:qwen3:0.6b}") String defaultModel,
+                            @Value("${runnable.inference.max-concurrent:2}") int maxConcurrent,
+                            @Value("${runnable.inference.max-queued:64}") int maxQueued,
+                            @Value("${runnable.inference.queue-wait:2m}") Duration queueWait,
+                            @Value("${runnable.inference.token-timeout:60s}") Duration tokenTimeout,
+                            @Value("${runnable.inference.subscriber-queue:1024}") int subscriberQueueSize,
+                            @Value("${runnable.inference.cache.max-entries:256}") int cacheMaxEntries,
+                            @Value("${runnable.inference.cache.ttl:30m}") Duration cacheTtl) {
+        this.chatModel = chatModel;
+        this.defaultModel = defaultModel;
+        this.maxQueued = maxQueued;
+        this.queueWait = queueWait;
+        this.tokenTimeout = tokenTimeout;
+        this.subscriberQueueSize = subscriberQueueSize;
+        this.generations = new Semaphore(maxConcurrent, true); // fair, slots go out in arrival order
+        this.cache = new ResponseCache(cacheMaxEntries, cacheTtl);
+
+        cacheHits = requests(meterRegistry, "cache-hit");
+        coalesced = requests(meterRegistry, "coalesced");
+        generated = requests(meterRegistry, "generated");
+        rejected = requests(meterRegistry, "rejected");
+        Gauge.builder("runnable.inference.active", generations, permits -> maxConcurrent - permits.availablePermits())
+                .description("Generations running against Ollama")
+                .register(meterRegistry);
+        Gauge.builder("runnable.inference.queued", waiting, AtomicInteger::get)
+                .description("Generations waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public String resolveModel(String model) {
+        return model == null || model.isBlank() ? defaultModel : model;
+    }
+
+    /**
+     * Streams the response to a prompt into onToken, then calls onComplete, or onError if the
+     * generation failed or never got a slot. A subscriber that joins a running generation
+     * first gets everything generated so far as one token. Throws InferenceRejectedException
+     * straight away when the queue is full.
+     */
+    public Subscription generate(String model, String prompt, Consumer<String> onToken, Runnable onComplete,
+                                 Consumer<Throwable> onError) {
+        Key key = new Key(resolveModel(model), prompt);
+        Optional<String> cached = cache.get(key);
+        if (cached.isPresent()) {
+            cacheHits.increment();
+            onToken.accept(cached.get());
+            onComplete.run();
+            return () -> {};
+        }
+
+        boolean[] started = {false};
+        Generation generation = inFlight.computeIfAbsent(key, k -> {
+            if (waiting.get() >= maxQueued) {
+                rejected.increment();
+                throw new InferenceRejectedException("Inference queue is full (" + waiting.get() + " prompts waiting)");
+            }
+            waiting.incrementAndGet();
+            started[0] = true;
+            return new Generation(k);
+        });
+        Listener listener = new Listener(onToken, onComplete, onError, subscriberQueueSize);
+        listener.start(generation);
+        generation.join(listener);
+        if (started[0]) {
+            executor.execute(() -> run(generation));
+        } else {
+            coalesced.increment();
+        }
+        return () -> generation.leave(listener);
+    }
+
+    private void run(Generation generation) {
+        Key key = generation.key;
+        try {
+            acquireSlot(key);
+            try {
+                Prompt prompt = new Prompt(key.prompt(), ChatOptions.builder().model(key.model()).build());
+                for (ChatResponse response : chatModel.stream(prompt).timeout(tokenTimeout).toIterable()) {
+                    String token = text(response);
+                    if (!token.isEmpty()) {
+                        generation.token(token);
+                    }
+                }
+            } finally {
+                generations.release();
+            }
+            generated.increment();
+            // cache before leaving inFlight, so the same prompt never starts a second generation
+            cache.put(key, generation.text());
+            generation.complete();
+        } catch (Exception e) {
+            log.warn("Generation with {} failed: {}", key.model(), e.getMessage());
+            generation.fail(e);
+        } finally {
+            inFlight.remove(key, generation);
+        }
+    }
+
+    private void acquireSlot(Key key) {
+        try {
+            if (!generations.tryAcquire(queueWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new InferenceRejectedException("No generation slot for " + key.model() + " within " + queueWait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InferenceRejectedException("Interrupted waiting for a generation slot");
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    // the last chunk of a stream carries only metadata
+    private static String text(ChatResponse response) {
+        if (response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String text = response.getResult().getOutput().getText();
+        return text != null ? text : "";
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("runnable.inference.requests")
+                .description("Prompts received by the inference gateway")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stops delivering tokens to one subscriber. The generation itself keeps running for
+     * the others and for the cache.
+     */
+    public interface Subscription {
+        void close();
+    }
+
+    private record Key(String model, String prompt) {}
+
+    // what is waiting in a listener's queue besides tokens: the end of the generation
+    private record End(Throwable failure) {}
+
+    private static final class Listener {
+        private final Consumer<String> onToken;
+        private final Runnable onComplete;
+        private final Consumer<Throwable> onError;
+        private final BlockingQueue<Object> queue;
+        private volatile Thread delivery;
+        private volatile boolean overflowed;
+
+        Listener(Consumer<String> onToken, Runnable onComplete, Consumer<Throwable> onError, int queueSize) {
+            this.onToken = onToken;
+            this.onComplete = onComplete;
+            this.onError = onError;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        void start(Generation generation) {
+            delivery = Thread.ofVirtual().name("inference-subscriber").start(() -> deliver(generation));
+        }
+
+        // never blocks, called under the generation's lock
+        boolean offer(Object event) {
+            if (queue.offer(event)) {
+                return true;
+            }
+            overflowed = true;
+            stop();
+            return false;
+        }
+
+        void stop() {
+            Thread thread = delivery;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        private void deliver(Generation generation) {
+            try {
+                while (true) {
+                    Object event = queue.take();
+                    if (event instanceof End end) {
+                        if (end.failure() == null) {
+                            onComplete.run();
+                        } else {
+                            onError.accept(end.failure());
+                        }
+                        return;
+                    }
+                    onToken.accept((String) event);
+                }
+            } catch (InterruptedException e) {
+                if (overflowed) {
+                    log.debug("Dropping inference subscriber, {} tokens behind", queue.size());
+                    fail(new InferenceRejectedException("Subscriber fell " + queue.size() + " tokens behind"));
+                }
+            } catch (RuntimeException e) {
+                generation.leave(this); // the client went away
+            }
+        }
+
+        private void fail(Throwable failure) {
+            try {
+                onError.accept(failure);
+            } catch (RuntimeException e) {
+                log.debug("Inference subscriber failed on error: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static final class Generation {
+        private final Key key;
+        private final StringBuilder text = new StringBuilder();
+        private final List<Listener> listeners = new ArrayList<>();
+        private boolean finished;
+        private Throwable failure;
+
+        Generation(Key key) {
+            this.key = key;
+        }
+
+        synchronized void join(Listener listener) {
+            if (!text.isEmpty() && !listener.offer(text.toString())) {
+                return;
+            }
+            if (finished) {
+                listener.offer(new End(failure));
+                return;
+            }
+            listeners.add(listener);
+        }
+
+        synchronized void leave(Listener listener) {
+            listeners.remove(listener);
+            listener.stop();
+        }
+
+        // under the lock, so a joining subscriber never misses or repeats a token; the offers never block
+        synchronized void token(String token) {
+            text.append(token);
+            listeners.removeIf(listener -> !listener.offer(token));
+        }
+
+        synchronized String text() {
+            return text.toString();
+        }
+
+        synchronized void complete() {
+            finish(null);
+        }
+
+        synchronized void fail(Throwable failure) {
+            finish(failure);
+        }
+
+        private void finish(Throwable failure) {
+            this.finished = true;
+            this.failure = failure;
+            for (Listener listener : listeners) {
+                listener.offer(new End(failure));
+            }
+            listeners.clear();
+        }
+    }
+
+    // LRU over completed responses, entries also expire after ttl
+    private static final class ResponseCache {
+        private final long ttlNanos;
+        private final Map<Key, Cached> entries;
+
+        ResponseCache(int maxEntries, Duration ttl) {
+            this.ttlNanos = ttl.toNanos();
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized Optional<String> get(Key key) {
+            Cached cached = entries.get(key);
+            if (cached == null) {
+                return Optional.empty();
+            }
+            if (System.nanoTime() - cached.storedAtNanos() >= ttlNanos) {
+                entries.remove(key);
+                return Optional.empty();
+            }
+            return Optional.of(cached.text());
+        }
+
+        // a ttl of zero turns caching off, coalescing still applies
+        synchronized void put(Key key, String text) {
+            if (ttlNanos > 0) {
+                entries.put(key, new Cached(text, System.nanoTime()));
+            }
+        }
+
+        private record Cached(String text, long storedAtNanos) {}
+    }
+}
@@ -0,0 +1,12 @@
+package com.runnable.agent.service;
+
+/**
+ * Thrown when a prompt cannot get a generation slot, because too many prompts are already
+ * waiting or it waited longer than runnable.inference.queue-wait.
+ */
+public class InferenceRejectedException extends RuntimeException {
+
+    public InferenceRejectedException(String message) {
+        super(message);
+    }
+}
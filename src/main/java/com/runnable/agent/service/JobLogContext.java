@@ -0,0 +1,85 @@
+package com.runnable.agent.service;
+
+import org.apache.logging.log4j.ThreadContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a job's fields on every log event of the current thread until closed: jobId,
+ * containerId, operation and, once {@link #finish} is called, durationMs. They end up as
+ * fields of the JSON log lines, so one job can be followed across services with a query
+ * instead of a grep. Contexts nest, closing one restores the fields of the outer one.
+ *
+ * <pre>
+ * try (JobLogContext context = JobLogContext.open(jobId, "stop")) {
+ *     ...
+ *     context.finish();
+ *     log.info("Job {} stopped", jobId);
+ * }
+ * </pre>
+ */
+public final class JobLogContext implements AutoCloseable {
+
+    public static final String JOB_ID = "jobId";
+    public static final String CONTAINER_ID = "containerId";
+    public static final String OPERATION = "operation";
+    public static final String DURATION_MS = "durationMs";
+
+    private final long startedAt = System.nanoTime();
+    private final String outerJobId;
+    private final String outerContainerId;
+    private final String outerOperation;
+    private final String outerDuration;
+
+    private JobLogContext(int jobId, String containerId, String operation) {
+        outerJobId = ThreadContext.get(JOB_ID);
+        outerContainerId = ThreadContext.get(CONTAINER_ID);
+        outerOperation = ThreadContext.get(OPERATION);
+        outerDuration = ThreadContext.get(DURATION_MS);
+        ThreadContext.put(JOB_ID, Integer.toString(jobId));
+        ThreadContext.put(OPERATION, operation);
+        ThreadContext.remove(DURATION_MS);
+        if (containerId != null) {
+            ThreadContext.put(CONTAINER_ID, containerId);
+        }
+    }
+
+    public static JobLogContext open(int jobId, String operation) {
+        return new JobLogContext(jobId, null, operation);
+    }
+
+    public static JobLogContext open(int jobId, String containerId, String operation) {
+        return new JobLogContext(jobId, containerId, operation);
+    }
+
+    // once the container is known, e.g. after create
+    public JobLogContext containerId(String containerId) {
+        if (containerId != null) {
+            ThreadContext.put(CONTAINER_ID, containerId);
+        }
+        return this;
+    }
+
+    // the time since open goes on the events logged from here on
+    public long finish() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        ThreadContext.put(DURATION_MS, Long.toString(millis));
+        return millis;
+    }
+
+    @Override
+    public void close() {
+        restore(JOB_ID, outerJobId);
+        restore(CONTAINER_ID, outerContainerId);
+        restore(OPERATION, outerOperation);
+        restore(DURATION_MS, outerDuration);
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null) {
+            ThreadContext.remove(key);
+        } else {
+            ThreadContext.put(key, value);
+        }
+    }
+}
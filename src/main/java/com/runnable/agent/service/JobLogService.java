@@ -0,0 +1,321 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Follows container logs per job into a fixed-size ring buffer and fans lines out to any
+ * number of subscribers. Each subscriber has its own bounded queue; when it falls behind,
+ * lines are dropped for that subscriber only and the Docker stream is never blocked.
+ */
+@Service
+public class JobLogService {
+
+    private static final Logger log = LogManager.getLogger(JobLogService.class);
+
+    private final JobsRepository jobsRepository;
+    private final DockerClientService dockerClientService;
+    private final int bufferLines;
+    private final int maxLineLength;
+    private final int subscriberQueueSize;
+    private final Map<Integer, LogStream> streams = new ConcurrentHashMap<>();
+
+    public JobLogService(JobsRepository jobsRepository,
+                         DockerClientService dockerClientService,
+                         @Value("${runnable.logs.buffer-lines:1000}") int bufferLines,
+                         @Value("${runnable.logs.max-line-length:2048}") int maxLineLength,
+                         @Value("${runnable.logs.subscriber-queue:256}") int subscriberQueueSize) {
+        this.jobsRepository = jobsRepository;
+        this.dockerClientService = dockerClientService;
+        this.bufferLines = bufferLines;
+        this.maxLineLength = maxLineLength;
+        this.subscriberQueueSize = subscriberQueueSize;
+    }
+
+    /**
+     * Replays the buffered tail to the sink and then follows new lines until the container
+     * stops or the subscription is closed. A stopped container's log is replayed and the
+     * subscription ends. Empty when the job has no container.
+     */
+    public Optional<LogSubscription> subscribe(int jobId, Consumer<String> sink, Runnable onEnd) {
+        Optional<Jobs> job = jobsRepository.findById(jobId);
+        if (job.isEmpty() || job.get().getContainerId() == null) {
+            return Optional.empty();
+        }
+        LogSubscription subscription = new LogSubscription(sink, onEnd, subscriberQueueSize);
+        while (!attach(job.get()).register(subscription)) {
+            // its last subscriber just left and it is closing, it is already out of the map
+        }
+        return Optional.of(subscription);
+    }
+
+    // the stream goes into the map before it follows, so however fast it ends it removes itself
+    private LogStream attach(Jobs job) {
+        LogStream created = new LogStream(job.getJobId());
+        LogStream stream = streams.compute(job.getJobId(),
+                (jobId, current) -> current != null && !current.isEnded() ? current : created);
+        if (stream == created) {
+            created.follow(job.getDockerHost(), job.getContainerId());
+        }
+        return stream;
+    }
+
+    public int activeStreams() {
+        return streams.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streams.values().forEach(LogStream::close);
+        streams.clear();
+    }
+
+    private final class LogStream {
+
+        private final int jobId;
+        private final LogRingBuffer buffer = new LogRingBuffer(bufferLines);
+        private final List<LogSubscription> subscribers = new CopyOnWriteArrayList<>();
+        // bytes of the line in progress, decoded once it is complete so a character split across frames survives
+        private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+        private Closeable follow;
+        // read without the lock inside streams.compute, which must not wait for this stream
+        private volatile boolean ended;
+        // closed because nobody reads it any more, not because the container stopped
+        private boolean abandoned;
+
+        LogStream(int jobId) {
+            this.jobId = jobId;
+        }
+
+        void follow(String host, String containerId) {
+            Closeable opened;
+            try {
+                opened = dockerClientService.followLogs(host, containerId, bufferLines, this::onFrame, this::onEnd);
+            } catch (RuntimeException e) {
+                onEnd();
+                throw e;
+            }
+            synchronized (this) {
+                follow = opened;
+                if (!abandoned) {
+                    return;
+                }
+            }
+            closeQuietly(opened); // the last subscriber left while it was opening
+        }
+
+        boolean isEnded() {
+            return ended;
+        }
+
+        synchronized boolean register(LogSubscription subscription) {
+            if (abandoned) {
+                return false;
+            }
+            subscription.start(buffer.snapshot(), () -> unregister(subscription));
+            if (ended) {
+                subscription.finish(); // the container has stopped, the backlog is all there is
+            } else {
+                subscribers.add(subscription);
+            }
+            return true;
+        }
+
+        private void unregister(LogSubscription subscription) {
+            Closeable idle;
+            synchronized (this) {
+                subscribers.remove(subscription);
+                if (ended || !subscribers.isEmpty()) {
+                    return;
+                }
+                ended = true;
+                abandoned = true;
+                streams.remove(jobId, this);
+                idle = follow;
+            }
+            log.debug("Closing log stream of job {}, no subscribers left", jobId);
+            closeQuietly(idle);
+        }
+
+        // runs on the docker-java callback thread, must never block
+        private synchronized void onFrame(byte[] payload) {
+            int start = 0;
+            for (int i = 0; i < payload.length; i++) {
+                if (payload[i] == '\n') {
+                    partial.write(payload, start, i - start);
+                    emit(partial.toString(StandardCharsets.UTF_8));
+                    partial.reset();
+                    start = i + 1;
+                }
+            }
+            partial.write(payload, start, payload.length - start);
+            if (partial.size() >= maxLineLength) {
+                // an over-long line is cut, but never inside a character
+                byte[] bytes = partial.toByteArray();
+                int cut = completeLength(bytes);
+                emit(new String(bytes, 0, cut, StandardCharsets.UTF_8));
+                partial.reset();
+                partial.write(bytes, cut, bytes.length - cut);
+            }
+        }
+
+        private void emit(String line) {
+            if (line.length() > maxLineLength) {
+                line = line.substring(0, maxLineLength);
+            }
+            buffer.add(line);
+            for (LogSubscription subscriber : subscribers) {
+                subscriber.offer(line);
+            }
+        }
+
+        private synchronized void onEnd() {
+            if (ended) {
+                return;
+            }
+            if (partial.size() > 0) {
+                emit(partial.toString(StandardCharsets.UTF_8));
+                partial.reset();
+            }
+            ended = true;
+            streams.remove(jobId, this);
+            subscribers.forEach(LogSubscription::finish);
+            subscribers.clear();
+        }
+
+        void close() {
+            Closeable current;
+            synchronized (this) {
+                current = follow;
+            }
+            closeQuietly(current);
+            onEnd();
+        }
+
+        private void closeQuietly(Closeable closeable) {
+            if (closeable == null) {
+                return;
+            }
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log.debug("Failed to close log stream of job {}: {}", jobId, e.getMessage());
+            }
+        }
+    }
+
+    // bytes up to the last UTF-8 character that is complete
+    static int completeLength(byte[] bytes) {
+        int last = bytes.length - 1;
+        while (last > 0 && (bytes[last] & 0xC0) == 0x80) {
+            last--; // continuation byte
+        }
+        if (last < 0) {
+            return 0;
+        }
+        int lead = bytes[last] & 0xFF;
+        int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return last + length <= bytes.length ? bytes.length : last;
+    }
+
+    /**
+     * One consumer of a job's log. Delivery runs on its own virtual thread so a slow sink
+     * only ever fills its own queue.
+     */
+    public static final class LogSubscription implements Closeable {
+
+        private final Consumer<String> sink;
+        private final Runnable onEnd;
+        private final BlockingQueue<String> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean finishing;
+        private volatile boolean closed;
+        private Thread delivery;
+        private Runnable unregister;
+
+        LogSubscription(Consumer<String> sink, Runnable onEnd, int queueSize) {
+            this.sink = sink;
+            this.onEnd = onEnd;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        void start(List<String> backlog, Runnable unregister) {
+            this.unregister = unregister;
+            this.delivery = Thread.ofVirtual().name("job-log-subscriber").start(() -> deliver(backlog));
+        }
+
+        void offer(String line) {
+            if (!closed && !queue.offer(line)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        void finish() {
+            finishing = true;
+        }
+
+        public long droppedLines() {
+            return dropped.get();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (unregister != null) {
+                unregister.run();
+            }
+            if (delivery != null) {
+                delivery.interrupt();
+            }
+        }
+
+        private void deliver(List<String> backlog) {
+            try {
+                for (String line : backlog) {
+                    if (closed) {
+                        return;
+                    }
+                    sink.accept(line);
+                }
+                while (!closed) {
+                    String line = queue.poll(200, TimeUnit.MILLISECONDS);
+                    if (line != null) {
+                        sink.accept(line);
+                    } else if (finishing) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.debug("Log subscriber failed, closing: {}", e.getMessage());
+            } finally {
+                closed = true;
+                if (unregister != null) {
+                    unregister.run();
+                }
+                onEnd.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.repository.JobsRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Job lifecycle meters: how long a job takes from submit to STARTED and how long it runs
+ * until STOPPED, plus gauges over the jobs table and the warm pool. The job counts are
+ * refreshed every countInterval rather than queried on every scrape, they cover the jobs of
+ * every instance and FAILED only ever grows.
+ */
+@Component
+public class JobMetrics {
+
+    private static final Logger log = LogManager.getLogger(JobMetrics.class);
+    private static final List<JobStatus> COUNTED = List.of(JobStatus.STARTED, JobStatus.FAILED);
+
+    private final MeterRegistry meterRegistry;
+    private final JobsRepository jobsRepository;
+    private final Duration countInterval;
+    private final Map<JobStatus, AtomicLong> counts = new EnumMap<>(JobStatus.class);
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "job-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public JobMetrics(MeterRegistry meterRegistry, JobsRepository jobsRepository, WarmContainerPool warmContainerPool,
+                      @Value("${runnable.metrics.job-count-interval:30s}") Duration countInterval) {
+        this.meterRegistry = meterRegistry;
+        this.jobsRepository = jobsRepository;
+        this.countInterval = countInterval;
+
+        for (JobStatus status : COUNTED) {
+            AtomicLong count = new AtomicLong();
+            counts.put(status, count);
+            Gauge.builder("runnable.jobs", count, AtomicLong::get)
+                    .description("Jobs by status")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+
+        Gauge.builder("runnable.pool.idle", warmContainerPool, pool -> pool.stats().idle())
+                .description("Idle containers in the warm pool")
+                .register(meterRegistry);
+        FunctionCounter.builder("runnable.pool.claims", warmContainerPool, pool -> pool.stats().hits())
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("runnable.pool.claims", warmContainerPool, pool -> pool.stats().misses())
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        long intervalMillis = countInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshCounts, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    private void refreshCounts() {
+        try {
+            for (JobStatus status : COUNTED) {
+                counts.get(status).set(jobsRepository.countByJobStatus(status));
+            }
+        } catch (Exception e) {
+            log.debug("Failed to refresh job counts: {}", e.getMessage());
+        }
+    }
+
+    // submit -> STARTED or FAILED
+    public void recordStart(Duration duration, boolean success) {
+        Timer.builder("runnable.job.start")
+                .description("Time from job submission until its container is started")
+                .tag("outcome", success ? "started" : "failed")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(duration);
+    }
+
+    // STARTED -> STOPPED
+    public void recordRun(Duration duration) {
+        Timer.builder("runnable.job.run")
+                .description("Time a job spent running before it was stopped")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(duration);
+    }
+
+    // mean submit -> STARTED of jobs that got a container, zero before the first one
+    public Duration meanStart() {
+        Timer timer = meterRegistry.find("runnable.job.start").tag("outcome", "started").timer();
+        return timer == null ? Duration.ZERO : Duration.ofNanos((long) timer.mean(TimeUnit.NANOSECONDS));
+    }
+}
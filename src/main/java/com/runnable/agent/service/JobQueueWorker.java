@@ -0,0 +1,196 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobTask;
+import com.runnable.agent.repository.JobTaskRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the shared job_tasks queue. Every agent instance runs one worker; workers claim
+ * tasks with FOR UPDATE SKIP LOCKED, keep their leases alive with heartbeats and put tasks of
+ * workers that stopped heartbeating back in the queue, so the control plane can run as
+ * several instances behind a load balancer.
+ */
+@Service
+public class JobQueueWorker {
+
+    private static final Logger log = LogManager.getLogger(JobQueueWorker.class);
+
+    private final JobTaskRepository jobTaskRepository;
+    private final JobService jobService;
+    private final String workerId;
+    private final Duration lease;
+    private final long pollIntervalMillis;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final Duration maxWait;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ExecutorService taskExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "job-queue-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public JobQueueWorker(JobTaskRepository jobTaskRepository,
+                          JobService jobService,
+                          @Value("${runnable.queue.worker-id:}") String workerId,
+                          @Value("${runnable.queue.lease:30s}") Duration lease,
+                          @Value("${runnable.queue.poll-interval-millis:500}") long pollIntervalMillis,
+                          @Value("${runnable.queue.max-in-flight:32}") int maxInFlight,
+                          @Value("${runnable.queue.max-attempts:3}") int maxAttempts,
+                          @Value("${runnable.quotas.max-wait:5m}") Duration maxWait) {
+        this.jobTaskRepository = jobTaskRepository;
+        this.jobService = jobService;
+        this.workerId = workerId.isBlank() ? defaultWorkerId() : workerId;
+        this.lease = lease;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.maxWait = maxWait;
+    }
+
+    @PostConstruct
+    void start() {
+        long heartbeatMillis = Math.max(1, lease.toMillis() / 3);
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::reclaim, lease.toMillis(), lease.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Job queue worker {} started", workerId);
+    }
+
+    // tasks still running are not settled here, their leases run out and another worker retries them
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+        taskExecutor.shutdownNow();
+    }
+
+    public String workerId() {
+        return workerId;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void poll() {
+        int free = maxInFlight - inFlight.get();
+        if (free <= 0) {
+            return;
+        }
+        List<JobTask> claimed;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            claimed = jobTaskRepository.claim(workerId, now.plus(lease), now, free);
+        } catch (Exception e) {
+            log.warn("Failed to claim queued tasks: {}", e.getMessage());
+            return;
+        }
+        for (JobTask task : claimed) {
+            inFlight.incrementAndGet();
+            taskExecutor.execute(() -> {
+                try {
+                    run(task);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void run(JobTask task) {
+        String status = JobTask.DONE;
+        String error = null;
+        try {
+            if (!JobTask.CREATE.equals(task.getOperation())) {
+                throw new IllegalStateException("Unknown task operation " + task.getOperation());
+            }
+            if (!jobService.launchClaimed(task.getJobId(), task.getAttempts())) {
+                status = JobTask.FAILED;
+                error = "Job " + task.getJobId() + " did not start";
+            }
+        } catch (Exception e) {
+            log.error("Task {} of job {} failed: {}", task.getTaskId(), task.getJobId(), e.getMessage());
+            status = JobTask.FAILED;
+            error = e.getMessage();
+        }
+        int settled = jobTaskRepository.finish(task.getTaskId(), workerId, status, truncate(error), LocalDateTime.now());
+        if (settled == 0) {
+            log.warn("Lost the lease on task {} of job {} before it finished", task.getTaskId(), task.getJobId());
+        }
+    }
+
+    private void heartbeat() {
+        if (inFlight.get() == 0) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            jobTaskRepository.renewLeases(workerId, now.plus(lease), now);
+        } catch (Exception e) {
+            log.warn("Failed to renew task leases: {}", e.getMessage());
+        }
+    }
+
+    // every lease interval, so a queued task fails at most one lease after its max-wait
+    private void reclaim() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int reclaimed = jobTaskRepository.reclaimExpired(now, maxAttempts);
+            if (reclaimed > 0) {
+                log.info("Put {} tasks of unresponsive workers back in the queue", reclaimed);
+            }
+            for (JobTask task : jobTaskRepository.findAllByStatusAndLeaseUntilBeforeAndAttemptsGreaterThanEqual(
+                    JobTask.CLAIMED, now, maxAttempts)) {
+                String error = "Lease expired " + task.getAttempts() + " times";
+                // the owner check makes sure only one instance gives up on the task
+                if (jobTaskRepository.finish(task.getTaskId(), task.getOwner(), JobTask.FAILED, error, now) == 1) {
+                    jobService.abandonClaimed(task.getJobId());
+                }
+            }
+            // nobody had room for these in time, the same answer a job gets once it waits for capacity
+            List<JobTask> expired = jobTaskRepository.expireQueued(now.minus(maxWait),
+                    "Queued for longer than " + maxWait, now);
+            for (JobTask task : expired) {
+                jobService.abandonClaimed(task.getJobId());
+            }
+            if (!expired.isEmpty()) {
+                log.warn("Failed {} tasks that waited in the queue for longer than {}", expired.size(), maxWait);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to reclaim expired task leases: {}", e.getMessage());
+        }
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 512 ? error.substring(0, 512) : error;
+    }
+
+    private static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        // the random part tells a restarted instance apart from its previous life
+        return host + "-" + ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
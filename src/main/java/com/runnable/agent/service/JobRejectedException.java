@@ -0,0 +1,12 @@
+package com.runnable.agent.service;
+
+/**
+ * Thrown when a job cannot be admitted, because the admission queue is full or the job
+ * waited longer than runnable.quotas.max-wait for capacity.
+ */
+public class JobRejectedException extends RuntimeException {
+
+    public JobRejectedException(String message) {
+        super(message);
+    }
+}
@@ -1,68 +1,198 @@
 package com.runnable.agent.service;
 
 import com.github.dockerjava.api.command.CreateContainerResponse;
-import com.github.dockerjava.api.model.Container;
 import com.github.dockerjava.api.model.Image;
 import com.runnable.agent.dto.ContainerInfo;
+import com.runnable.agent.dto.ContainerState;
+import com.runnable.agent.dto.JobActionResult;
+import com.runnable.agent.dto.JobPage;
+import com.runnable.agent.dto.JobPriority;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.JobSummary;
+import com.runnable.agent.dto.JobView;
+import com.runnable.agent.dto.JobTask;
 import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.dto.PoolStats;
+import com.runnable.agent.dto.SemanticCacheStats;
+import com.runnable.agent.repository.JobTaskRepository;
 import com.runnable.agent.repository.JobsRepository;
 import jakarta.annotation.PostConstruct;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class JobService {
 
     private static final Logger log = LogManager.getLogger(JobService.class);
+    private static final int STOP_ALL_BATCH_SIZE = 500;
     private final JobsRepository jobsRepository;
     private final DockerClientService dockerClientService;
-    public JobService(JobsRepository jobsRepository,DockerClientService dockerClientService) {
+    private final WarmContainerPool warmContainerPool;
+    private final ContainerStateCache containerStateCache;
+    private final PortAllocator portAllocator;
+    private final JobStatusBroadcaster jobStatusBroadcaster;
+    private final ArtifactService artifactService;
+    private final JobMetrics jobMetrics;
+    private final AdmissionController admissionController;
+    private final JobTaskRepository jobTaskRepository;
+    private final SemanticJobCache semanticJobCache;
+    private final VncGateway vncGateway;
+    // bounds concurrent creates on the daemon, queued tasks wait for a permit on their worker thread
+    private final Semaphore submissionPermits;
+    private final int bulkParallelism;
+    private final int stopTimeoutSeconds;
+    public JobService(JobsRepository jobsRepository,DockerClientService dockerClientService,WarmContainerPool warmContainerPool,
+                      ContainerStateCache containerStateCache,
+                      PortAllocator portAllocator,
+                      JobStatusBroadcaster jobStatusBroadcaster,
+                      ArtifactService artifactService,
+                      JobMetrics jobMetrics,
+                      AdmissionController admissionController,
+                      JobTaskRepository jobTaskRepository,
+                      SemanticJobCache semanticJobCache,
+                      VncGateway vncGateway,
+                      @Value("${runnable.jobs.max-concurrent-creates:8}") int maxConcurrentCreates,
+                      @Value("${runnable.jobs.bulk-parallelism:16}") int bulkParallelism,
+                      @Value("${runnable.jobs.stop-timeout-seconds:10}") int stopTimeoutSeconds) {
         this.jobsRepository = jobsRepository;
         this.dockerClientService = dockerClientService;
+        this.warmContainerPool = warmContainerPool;
+        this.containerStateCache = containerStateCache;
+        this.portAllocator = portAllocator;
+        this.jobStatusBroadcaster = jobStatusBroadcaster;
+        this.artifactService = artifactService;
+        this.jobMetrics = jobMetrics;
+        this.admissionController = admissionController;
+        this.jobTaskRepository = jobTaskRepository;
+        this.semanticJobCache = semanticJobCache;
+        this.vncGateway = vncGateway;
+        this.submissionPermits = new Semaphore(maxConcurrentCreates, true);
+        this.bulkParallelism = bulkParallelism;
+        this.stopTimeoutSeconds = stopTimeoutSeconds;
     }
 
     public String runJob(String jobName) {
         return "Running job: " + jobName;
     }
 
-    //list all the jobs create
-    public List<String> getAllJobs() {
-        return jobsRepository.findAll().stream()
-                .map(job -> {
-                    String vncUrl = "unknown";
-                    try {
-                        int port = dockerClientService.getVncPort(job.getContainerId());
-                        vncUrl = "http://localhost:" + port + "/vnc.html";
-                    } catch (Exception e) {
-                        vncUrl = "N/A";
-                    }
-                    return job.getJobId() + " - " + job.getJobName() + " [" + job.getJobStatus() + "] VNC: " + vncUrl;
-                })
-                .toList();
+    /**
+     * One page of list-jobs, newest first, optionally only jobs of one status. Only the
+     * printed columns are selected, so no entity is loaded or kept in the persistence context.
+     */
+    public List<JobSummary> getJobSummaries(JobStatus status, Integer cursor, int size) {
+        return page(status, cursor, Limit.of(size), JobSummary.class);
     }
 
-    public List<String> getAllContainers() {
-        List<Container> containers = dockerClientService.getAllContainer();
+    public String describe(JobSummary job) {
+        Optional<ContainerState> state = containerStateCache.get(job.containerId());
+        String vncUrl = state.filter(ContainerState::isPaused).isPresent()
+                ? "paused, vnc-job " + job.jobId() + " resumes it"
+                : state.flatMap(running -> vncGateway.viewerUrl(job.jobId(), running, "vnc.html"))
+                        .orElse("N/A");
+        return job.jobId() + " - " + job.jobName() + " [" + job.jobStatus() + "] VNC: " + vncUrl;
+    }
 
-        return containers.stream().map(container -> {
-            String id = container.getId();
-            String name = container.getNames() != null && container.getNames().length > 0 ? container.getNames()[0] : "unknown";
-            String status = container.getStatus();
-            String ports = container.getPorts() != null && container.getPorts().length > 0
-                    ? container.getPorts()[0].getPublicPort() + "->" + container.getPorts()[0].getPrivatePort()
-                    : "no port";
+    public Optional<Jobs> getJob(int jobId) {
+        return jobsRepository.findById(jobId);
+    }
 
-            String vncUrl = ports.contains("6080") ? "http://localhost:6080" : "N/A";
+    /**
+     * VNC URL of a started job. Asking for it is what brings a container the idle monitor
+     * paused back to life, so the session is there by the time the browser connects. Throws
+     * JobRejectedException when its host has no CPU to give it back in time.
+     */
+    public Optional<String> openVnc(int jobId) {
+        Optional<Jobs> job = jobsRepository.findById(jobId)
+                .filter(found -> found.getJobStatus() == JobStatus.STARTED && found.getContainerId() != null);
+        if (job.isEmpty()) {
+            return Optional.empty();
+        }
+        resumeIfPaused(job.get());
+        return containerStateCache.get(job.get().getContainerId())
+                .flatMap(state -> vncGateway.viewerUrl(jobId, state, "vnc.html"));
+    }
 
-            return "ID: " + id + ", Name: " + name + ", Status: " + status + ", VNC: " + vncUrl;
-        }).toList();
+    /**
+     * Keyset page of jobs, newest first. Pass the previous page's nextCursor to continue,
+     * so no page ever needs an OFFSET scan or the whole table in memory.
+     */
+    public JobPage listJobs(JobStatus status, Integer cursor, int size) {
+        // one extra row tells us whether another page exists
+        List<JobView> rows = page(status, cursor, Limit.of(size + 1), JobView.class);
+        boolean hasMore = rows.size() > size;
+        List<JobView> items = hasMore ? rows.subList(0, size) : rows;
+        Integer nextCursor = hasMore ? items.get(items.size() - 1).jobId() : null;
+        return new JobPage(items, nextCursor);
+    }
+
+    // served by the primary key, or by idx_jobs_status when filtering
+    private <T> List<T> page(JobStatus status, Integer cursor, Limit limit, Class<T> type) {
+        if (status == null) {
+            return cursor == null
+                    ? jobsRepository.findAllByOrderByJobIdDesc(limit, type)
+                    : jobsRepository.findByJobIdLessThanOrderByJobIdDesc(cursor, limit, type);
+        }
+        return cursor == null
+                ? jobsRepository.findByJobStatusOrderByJobIdDesc(status, limit, type)
+                : jobsRepository.findByJobStatusAndJobIdLessThanOrderByJobIdDesc(status, cursor, limit, type);
+    }
+
+    public List<String> getAllContainers() {
+        return containerStateCache.getAll().stream()
+                .filter(ContainerState::isRunning)
+                .map(container -> {
+                    String vncUrl = vncGateway.viewerUrl(container, "vnc.html").orElse("N/A");
+                    return "ID: " + container.id() + ", Name: " + container.name() + ", Host: " + container.host()
+                            + ", Status: " + container.status() + ", VNC: " + vncUrl;
+                }).toList();
+    }
+
+    /**
+     * Brings job rows in line with the containers that actually exist, in one pass over the
+     * table and one bulk update per resulting status.
+     */
+    @PostConstruct
+    void reconcileJobStatuses() {
+        if (!containerStateCache.isSeeded()) {
+            log.warn("Skipping job status reconciliation, container state is unknown");
+            return;
+        }
+        List<Jobs> changed = new ArrayList<>();
+        for (Jobs job : jobsRepository.findAllByJobStatus(JobStatus.STARTED)) {
+            Optional<ContainerState> state = containerStateCache.get(job.getContainerId());
+            if (state.isEmpty()) {
+                job.setJobStatus(JobStatus.REMOVED);
+            } else if (!state.get().isAlive()) {
+                job.setJobStatus(JobStatus.STOPPED);
+            } else {
+                continue;
+            }
+            job.setUpdatedAt(LocalDateTime.now());
+            changed.add(job);
+        }
+        persistStatuses(changed);
+        if (!changed.isEmpty()) {
+            log.info("Reconciled {} stale job rows against container state", changed.size());
+        }
     }
 
     public List<String> getAllImages() {
@@ -77,106 +207,452 @@ public class JobService {
     }
 
 
-    public boolean createJob(String jobName) {
-        Jobs job = new Jobs();
-        job.setJobName(jobName);
-        job.setCreatedAt(LocalDateTime.now());
-        job.setUpdatedAt(LocalDateTime.now());
+    @Transactional
+    public int submitJob(String jobName) {
+        return submitJob(jobName, null);
+    }
+
+    /**
+     * Persists the job as PENDING together with its CREATE task and returns its id right away.
+     * Whichever instance claims the task from the queue creates the container, once the
+     * admission controller has room for the job class. Throws JobRejectedException when the
+     * admission queue is full.
+     */
+    @Transactional
+    public int submitJob(String jobName, String jobClass) {
+        return submitJob(jobName, jobClass, null, JobPriority.NORMAL);
+    }
 
+    // owner and priority decide the job's turn while it waits for capacity, see AdmissionController
+    @Transactional
+    public int submitJob(String jobName, String jobClass, String owner, JobPriority priority) {
+        String resolvedClass = admissionController.resolveClass(jobClass);
+        admissionController.checkQueue(jobTaskRepository.countByStatus(JobTask.QUEUED));
+        Jobs pending = new Jobs(jobName, JobStatus.PENDING);
+        pending.setJobClass(resolvedClass);
+        pending.setOwner(owner);
+        pending.setPriority(priority);
+        Jobs job = jobsRepository.save(pending);
+        jobTaskRepository.save(new JobTask(job.getJobId(), JobTask.CREATE));
+        jobStatusBroadcaster.publish(job.getJobId(), job.getJobStatus());
+        return job.getJobId();
+    }
+
+    /**
+     * Runs the CREATE task of a job claimed from the queue. A task can come back after its
+     * worker died half way, so a job that already has a container is left alone and a
+     * container the dead worker created is adopted instead of starting a second one.
+     */
+    public boolean launchClaimed(int jobId, int attempt) {
+        Optional<Jobs> found = jobsRepository.findById(jobId);
+        if (found.isEmpty()) {
+            return false;
+        }
+        Jobs job = found.get();
+        if (job.getJobStatus() == JobStatus.REUSED
+                || job.getContainerId() != null && job.getJobStatus() == JobStatus.STARTED) {
+            return true;
+        }
+        if (attempt > 1) {
+            Optional<ContainerInfo> existing = dockerClientService.findJobContainer(jobId);
+            if (existing.isPresent()) {
+                return adopt(job, existing.get());
+            }
+        }
+        return reuseArtifacts(job) || launch(job);
+    }
+
+    /**
+     * Takes over a container a dead worker left behind. One that is already running was
+     * accounted for from its start event; one that never got started needs room on its host
+     * like any other, and is removed and the job failed when there is none.
+     */
+    private boolean adopt(Jobs job, ContainerInfo container) {
+        boolean alive = "running".equals(container.status()) || "paused".equals(container.status());
+        if (!alive || !admissionController.isCommitted(container.id())) {
+            Optional<AdmissionController.Admission> admission = admissionController.tryAdmitOn(container.host(),
+                    job.getJobClass(), job.getOwner(), job.getPriority());
+            if (admission.isEmpty()) {
+                log.warn("No capacity left on {} to adopt container {} of job {}, removing it", container.host(),
+                        container.id(), job.getJobId());
+                try {
+                    dockerClientService.removeContainer(container.host(), container.id());
+                } catch (Exception e) {
+                    log.warn("Failed to remove container {}: {}", container.id(), e.getMessage());
+                }
+                updateStatus(job, JobStatus.FAILED);
+                return false;
+            }
+            try {
+                if (!alive) {
+                    dockerClientService.startContainer(container.host(), container.id());
+                }
+                admissionController.bind(admission.get(), container.id());
+            } catch (RuntimeException e) {
+                admissionController.release(admission.get());
+                throw e;
+            }
+        }
+        log.info("Adopting container {} of job {} left by a previous worker", container.id(), job.getJobId());
+        started(job, container);
+        return true;
+    }
+
+    /**
+     * Launches a bulk ingested job. A job that got past PENDING was being created when the
+     * previous run died, so its container may already exist and is adopted if it does.
+     */
+    public boolean resumeLaunch(int jobId) {
+        Optional<Jobs> job = jobsRepository.findById(jobId);
+        if (job.isEmpty()) {
+            return false;
+        }
+        return launchClaimed(jobId, job.get().getJobStatus() == JobStatus.PENDING ? 1 : 2);
+    }
+
+    // the task ran out of attempts, nobody is going to start this job any more
+    public void abandonClaimed(int jobId) {
+        jobsRepository.findById(jobId)
+                .filter(job -> job.getJobStatus() != JobStatus.STARTED)
+                .ifPresent(job -> updateStatus(job, JobStatus.FAILED));
+    }
+
+    // a near-identical task already produced output, so the job takes that instead of a container
+    private boolean reuseArtifacts(Jobs job) {
+        Optional<SemanticJobCache.Match> match = semanticJobCache.lookup(job.getJobName());
+        if (match.isEmpty()) {
+            return false;
+        }
+        int copied = artifactService.reuse(match.get().jobId(), job.getJobId()).size();
+        log.info("Job {} reuses {} artifacts of job {} ('{}', similarity {})", job.getJobId(), copied,
+                match.get().jobId(), match.get().jobName(), String.format("%.3f", match.get().similarity()));
+        job.setReusedFrom(match.get().jobId());
+        updateStatus(job, JobStatus.REUSED);
+        return true;
+    }
+
+    private boolean launch(Jobs job) {
+        try (JobLogContext context = JobLogContext.open(job.getJobId(), "launch")) {
+            boolean started = launch(job, context);
+            jobMetrics.recordStart(Duration.between(job.getCreatedAt(), LocalDateTime.now()), started);
+            return started;
+        }
+    }
+
+    private boolean launch(Jobs job, JobLogContext context) {
         try {
-            // Try to start the container
-            ContainerInfo info = dockerClientService.createNewJob(jobName);
+            // Prefer an idle pooled container, otherwise start a fresh one
+            Optional<ContainerInfo> pooled = admissionController.isDefaultClass(job.getJobClass())
+                    ? warmContainerPool.claim(job.getJobId(), job.getJobName())
+                    : Optional.empty();
+            ContainerInfo info = pooled.isPresent() ? pooled.get() : createContainer(job);
+            pooled.ifPresent(claimed -> admissionController.assign(claimed.id(), job.getOwner(), job.getPriority()));
 
             // If successful, set container info and mark as STARTED
-            job.setContainerId(info.id());
-            job.setVncPort(info.port());
-            job.setJobStatus("STARTED");
-
+            started(job, info);
+            context.containerId(info.id()).finish();
+            log.info("Job {} started on {}{}", job.getJobId(), info.host(), pooled.isPresent() ? " from the warm pool" : "");
+            return true;
+        } catch (JobRejectedException e) {
+            context.finish();
+            log.warn("Job {} rejected: {}", job.getJobId(), e.getMessage());
+            updateStatus(job, JobStatus.FAILED);
         } catch (Exception e) {
-            System.err.println("❌ Failed to create job container: " + e.getMessage());
-            job.setJobStatus("FAILED");
+            context.finish();
+            log.error("Failed to create container for job {}: {}", job.getJobId(), e.getMessage());
+            updateStatus(job, JobStatus.FAILED);
+        }
+        return false;
+    }
+
+    // waits for capacity first, so a queued job never holds one of the create permits
+    private ContainerInfo createContainer(Jobs job) throws InterruptedException {
+        AdmissionController.Admission admission = admissionController.admit(job.getJobClass(),
+                job.getOwner(), job.getPriority(), () -> updateStatus(job, JobStatus.QUEUED));
+        try {
+            submissionPermits.acquire();
+        } catch (InterruptedException e) {
+            admissionController.release(admission);
+            throw e;
+        }
+        try {
+            updateStatus(job, JobStatus.CREATING);
+            return dockerClientService.createNewJob(job.getJobId(), job.getJobName(), admission);
+        } finally {
+            submissionPermits.release();
         }
-        // Save job regardless of success/failure
+    }
+
+    private void started(Jobs job, ContainerInfo info) {
+        job.setContainerId(info.id());
+        job.setVncPort(info.port());
+        job.setDockerHost(info.host());
+        updateStatus(job, JobStatus.STARTED);
+    }
+
+    private void updateStatus(Jobs job, JobStatus status) {
+        job.setJobStatus(status);
+        job.setUpdatedAt(LocalDateTime.now());
         jobsRepository.save(job);
-        return !"FAILED".equals(job.getJobStatus());
+        jobStatusBroadcaster.publish(job.getJobId(), status);
+    }
+
+    public PoolStats getPoolStats() {
+        return warmContainerPool.stats();
+    }
+
+    public SemanticCacheStats getSemanticCacheStats() {
+        return semanticJobCache.stats();
     }
 
     public boolean stopJobById(int jobId) {
         Optional<Jobs> jobOpt = jobsRepository.findById(jobId);
         if (jobOpt.isEmpty()) {
-            System.out.println("⚠️ Job ID not found: " + jobId);
+            log.warn("Job {} not found", jobId);
             return false;
         }
 
         Jobs job = jobOpt.get();
-        String containerId = job.getContainerId();
-
-        if (containerId == null || containerId.isEmpty()) {
-            System.out.println("⚠️ No container associated with job: " + jobId);
-            return false;
-        }
-        try {
-            dockerClientService.stopContainerByJobId(containerId);
-            job.setJobStatus("STOPPED");
-            job.setUpdatedAt(LocalDateTime.now());
+        JobActionResult result = stopContainerOf(job);
+        if (result.success()) {
             jobsRepository.save(job);
-            return true;
-        } catch (Exception e) {
-            System.out.println("❌ Failed to stop container: " + e.getMessage());
-            return false;
+            jobStatusBroadcaster.publish(jobId, job.getJobStatus());
         }
+        return result.success();
     }
 
-    public void stopAllJobs() {
-        List<Jobs> runningJobs = jobsRepository.findAllByJobStatus("STARTED");
-        for (Jobs job : runningJobs) {
-            try {
-                dockerClientService.stopContainerByJobId(job.getContainerId());
-                job.setJobStatus("STOPPED");
-                job.setUpdatedAt(LocalDateTime.now());
-                jobsRepository.save(job);
-                System.out.println("✅ Stopped job " + job.getJobId() + ": " + job.getJobName());
-            } catch (Exception e) {
-                System.out.println("❌ Failed to stop job " + job.getJobId() + ": " + e.getMessage());
+    // in batches, so the started jobs of a large table are never all in memory at once
+    public List<JobActionResult> stopAllJobs() {
+        List<JobActionResult> results = new ArrayList<>();
+        List<Jobs> batch;
+        int after = 0;
+        do {
+            batch = jobsRepository.findByJobStatusAndJobIdGreaterThanOrderByJobId(
+                    JobStatus.STARTED, after, Limit.of(STOP_ALL_BATCH_SIZE));
+            if (!batch.isEmpty()) {
+                results.addAll(stopJobs(batch));
+                after = batch.getLast().getJobId();
             }
-        }
-        if (runningJobs.isEmpty()) {
-            System.out.println("⚠️ No running jobs found.");
-        }
+        } while (batch.size() == STOP_ALL_BATCH_SIZE);
+        return results;
+    }
+
+    public List<JobActionResult> stopJobsByIds(List<Integer> jobIds) {
+        return stopJobs(jobsRepository.findAllById(jobIds));
     }
 
     public boolean startJobById(int jobId) {
         Optional<Jobs> optionalJob = jobsRepository.findById(jobId);
         if (optionalJob.isEmpty()) {
-            System.out.println("❌ Job ID " + jobId + " not found.");
+            log.warn("Job {} not found", jobId);
             return false;
         }
 
         Jobs job = optionalJob.get();
-        String containerId = job.getContainerId();
+        JobActionResult result = startContainerOf(job);
+        if (job.getContainerId() != null && !job.getContainerId().isEmpty()) {
+            jobsRepository.save(job);
+            jobStatusBroadcaster.publish(jobId, job.getJobStatus());
+        }
+        return result.success();
+    }
+
+    public List<JobActionResult> startJobsByIds(List<Integer> jobIds) {
+        List<Jobs> jobs = jobsRepository.findAllById(jobIds);
+        List<JobActionResult> results = new ArrayList<>(fanOut(jobs, this::startContainerOf));
+        persistStatuses(jobs.stream().filter(job -> job.getContainerId() != null).toList());
+        results.addAll(missing(jobIds, jobs));
+        return results;
+    }
 
+    // stops in parallel, then writes every status change in one bulk update
+    private List<JobActionResult> stopJobs(List<Jobs> jobs) {
+        List<JobActionResult> results = fanOut(jobs, this::stopContainerOf);
+        Set<Integer> stopped = results.stream()
+                .filter(JobActionResult::success)
+                .map(JobActionResult::jobId)
+                .collect(Collectors.toSet());
+        persistStatuses(jobs.stream().filter(job -> stopped.contains(job.getJobId())).toList());
+        return results;
+    }
+
+    // one UPDATE per distinct status rather than one save per job
+    private void persistStatuses(List<Jobs> jobs) {
+        LocalDateTime now = LocalDateTime.now();
+        jobs.stream()
+                .collect(Collectors.groupingBy(Jobs::getJobStatus,
+                        Collectors.mapping(Jobs::getJobId, Collectors.toList())))
+                .forEach((status, jobIds) -> {
+                    jobsRepository.updateStatus(jobIds, status, now);
+                    jobIds.forEach(jobId -> jobStatusBroadcaster.publish(jobId, status));
+                });
+    }
+
+    private List<JobActionResult> missing(List<Integer> requested, List<Jobs> found) {
+        Set<Integer> foundIds = found.stream().map(Jobs::getJobId).collect(Collectors.toSet());
+        return requested.stream()
+                .filter(id -> !foundIds.contains(id))
+                .distinct()
+                .map(id -> JobActionResult.failed(id, "Job ID " + id + " not found."))
+                .toList();
+    }
+
+    /**
+     * Runs the action for every job on virtual threads, at most bulkParallelism at a time,
+     * and returns the results in input order.
+     */
+    private List<JobActionResult> fanOut(List<Jobs> jobs, Function<Jobs, JobActionResult> action) {
+        Semaphore permits = new Semaphore(bulkParallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<JobActionResult>> futures = jobs.stream()
+                    .map(job -> executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            return action.apply(job);
+                        } finally {
+                            permits.release();
+                        }
+                    }))
+                    .toList();
+            List<JobActionResult> results = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(JobActionResult.failed(jobs.get(i).getJobId(), e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    results.add(JobActionResult.failed(jobs.get(i).getJobId(), "Interrupted"));
+                }
+            }
+            return results;
+        }
+    }
+
+    // updates the entity in memory only, callers decide how to persist
+    private JobActionResult stopContainerOf(Jobs job) {
+        String containerId = job.getContainerId();
         if (containerId == null || containerId.isEmpty()) {
-            System.out.println("❌ No container ID found for job " + jobId);
-            return false;
+            return JobActionResult.failed(job.getJobId(), "No container associated with job: " + job.getJobId());
+        }
+        try (JobLogContext context = JobLogContext.open(job.getJobId(), containerId, "stop")) {
+            return stopContainerOf(job, containerId, context);
         }
+    }
 
+    private JobActionResult stopContainerOf(Jobs job, String containerId, JobLogContext context) {
         try {
-            dockerClientService.startContainer(containerId);
-            job.setJobStatus("STARTED");
+            if (!isKnownNotRunning(job)) {
+                unpause(job); // a frozen container cannot handle the SIGTERM
+                dockerClientService.stopContainerByJobId(job.getDockerHost(), containerId, stopTimeoutSeconds);
+                containerStateCache.markState(containerId, "exited");
+                admissionController.release(containerId); // the die event would do the same, a bit later
+            }
+            if (job.getJobStatus() == JobStatus.STARTED && job.getUpdatedAt() != null) {
+                // updatedAt was last touched by the transition to STARTED
+                jobMetrics.recordRun(Duration.between(job.getUpdatedAt(), LocalDateTime.now()));
+            }
+            job.setJobStatus(JobStatus.STOPPED);
             job.setUpdatedAt(LocalDateTime.now());
-            jobsRepository.save(job);
+            artifactService.collectAsync(job.getJobId());
+            context.finish();
+            log.info("Job {} stopped", job.getJobId());
+            return JobActionResult.ok(job.getJobId(), "Stopped job " + job.getJobId() + ": " + job.getJobName());
+        } catch (Exception e) {
+            context.finish();
+            log.warn("Failed to stop job {}: {}", job.getJobId(), e.getMessage());
+            return JobActionResult.failed(job.getJobId(), "Failed to stop job " + job.getJobId() + ": " + e.getMessage());
+        }
+    }
 
-            System.out.println("✅ Job " + jobId + " container restarted successfully.");
-            return true;
+    // updates the entity in memory only, callers decide how to persist
+    private JobActionResult startContainerOf(Jobs job) {
+        int jobId = job.getJobId();
+        String containerId = job.getContainerId();
+        if (containerId == null || containerId.isEmpty()) {
+            return JobActionResult.failed(jobId, "No container ID found for job " + jobId);
+        }
+        try (JobLogContext context = JobLogContext.open(jobId, containerId, "start")) {
+            JobActionResult result = startContainerOf(job, containerId);
+            context.finish();
+            if (result.success()) {
+                log.info(result.message());
+            } else {
+                log.warn(result.message());
+            }
+            return result;
+        }
+    }
+
+    private JobActionResult startContainerOf(Jobs job, String containerId) {
+        int jobId = job.getJobId();
+        try {
+            boolean running = resumeIfPaused(job)
+                    || containerStateCache.get(containerId).map(ContainerState::isRunning).orElse(false);
+            if (!running) {
+                // a stopped container can only come back on its own host, and only if that host has room
+                Optional<AdmissionController.Admission> admission =
+                        admissionController.tryAdmitOn(job.getDockerHost(), job.getJobClass(),
+                                job.getOwner(), job.getPriority());
+                if (admission.isEmpty()) {
+                    return JobActionResult.failed(jobId, "No capacity left on the host of job " + jobId + ".");
+                }
+                // the container keeps its original host binding, so that exact port has to be ours again
+                if (job.getVncPort() != null && !portAllocator.reacquire(job.getVncPort())) {
+                    admissionController.release(admission.get());
+                    return JobActionResult.failed(jobId, "Port " + job.getVncPort() + " of job " + jobId + " is held by another container.");
+                }
+                try {
+                    dockerClientService.startContainer(job.getDockerHost(), containerId);
+                    admissionController.bind(admission.get(), containerId);
+                } catch (RuntimeException e) {
+                    admissionController.release(admission.get());
+                    if (job.getVncPort() != null) {
+                        portAllocator.release(job.getVncPort());
+                    }
+                    throw e;
+                }
+            }
+            job.setJobStatus(JobStatus.STARTED);
+            job.setUpdatedAt(LocalDateTime.now());
+            return JobActionResult.ok(jobId, "Job " + jobId + " container restarted successfully.");
+        } catch (JobRejectedException e) {
+            // still paused and still the job's, it just has to wait for CPU
+            return JobActionResult.failed(jobId, "Job " + jobId + " is still paused: " + e.getMessage());
         } catch (Exception e) {
-            System.out.println("❌ Failed to restart container for job " + jobId + ": " + e.getMessage());
-            job.setJobStatus("FAILED");
+            job.setJobStatus(JobStatus.FAILED);
             job.setUpdatedAt(LocalDateTime.now());
-            jobsRepository.save(job);
-            return false;
+            return JobActionResult.failed(jobId, "Failed to restart container for job " + jobId + ": " + e.getMessage());
         }
     }
 
+    // only trust a "not running" answer once the cache has seen the daemon's full state
+    private boolean isKnownNotRunning(Jobs job) {
+        return containerStateCache.isSeeded(job.getDockerHost())
+                && containerStateCache.get(job.getContainerId())
+                        .map(state -> !state.isAlive())
+                        .orElse(false);
+    }
+
+    // true when the container was paused and is running again now, on CPU taken back from the admission controller
+    private boolean resumeIfPaused(Jobs job) {
+        boolean paused = containerStateCache.get(job.getContainerId()).map(ContainerState::isPaused).orElse(false);
+        if (!paused) {
+            return false;
+        }
+        admissionController.resume(job.getContainerId());
+        dockerClientService.unpauseContainer(job.getDockerHost(), job.getContainerId());
+        containerStateCache.markState(job.getContainerId(), "running");
+        log.info("Resumed paused container of job {}", job.getJobId());
+        return true;
+    }
 
+    // only long enough to stop it, so the CPU it gave up is not taken back
+    private void unpause(Jobs job) {
+        if (containerStateCache.get(job.getContainerId()).map(ContainerState::isPaused).orElse(false)) {
+            dockerClientService.unpauseContainer(job.getDockerHost(), job.getContainerId());
+            containerStateCache.markState(job.getContainerId(), "running");
+        }
+    }
 
 }
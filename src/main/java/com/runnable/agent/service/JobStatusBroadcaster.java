@@ -0,0 +1,207 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.JobStatusEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes job status transitions to SSE subscribers. Every subscriber has its own bounded
+ * queue and delivery thread, so a slow client never holds up the job that changed state or
+ * the other subscribers. A client that lets its queue fill up is disconnected rather than
+ * silently missing transitions; it reconnects and reads the current state from the list.
+ * <p>
+ * Transitions are fanned out through Postgres NOTIFY on the job_status channel and every
+ * instance LISTENs on it, so a subscriber sees the changes made by whichever instance ran
+ * the job. Sent from inside a transaction, the notification only goes out once it commits.
+ */
+@Service
+public class JobStatusBroadcaster {
+
+    private static final Logger log = LogManager.getLogger(JobStatusBroadcaster.class);
+    private static final String CHANNEL = "job_status";
+    private static final int POLL_MILLIS = 1000;
+    private static final long RELISTEN_DELAY_SECONDS = 5;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int subscriberQueueSize;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile boolean listening;
+    private volatile boolean closed;
+    private Thread listener;
+
+    // this instance's transitions only, for running without a shared database
+    public JobStatusBroadcaster(int subscriberQueueSize) {
+        this(null, subscriberQueueSize);
+    }
+
+    @Autowired
+    public JobStatusBroadcaster(JdbcTemplate jdbcTemplate,
+                                @Value("${runnable.jobs.status-subscriber-queue:256}") int subscriberQueueSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.subscriberQueueSize = subscriberQueueSize;
+    }
+
+    @PostConstruct
+    void start() {
+        if (jdbcTemplate != null) {
+            listener = Thread.ofPlatform().daemon().name("job-status-listener").start(this::listen);
+        }
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L); // no timeout, the client decides when to leave
+        Subscriber subscriber = new Subscriber(emitter, new ArrayBlockingQueue<>(subscriberQueueSize));
+        subscribers.add(subscriber);
+        emitter.onCompletion(subscriber::stop);
+        emitter.onTimeout(subscriber::stop);
+        emitter.onError(e -> subscriber.stop());
+        subscriber.delivery = Thread.ofVirtual().name("job-status-sse").start(subscriber::deliver);
+        return emitter;
+    }
+
+    public void publish(int jobId, JobStatus jobStatus) {
+        JobStatusEvent event = new JobStatusEvent(jobId, jobStatus, LocalDateTime.now());
+        // while the listener is down, this instance's subscribers still get their own transitions
+        boolean delivered = false;
+        if (!listening) {
+            deliver(event);
+            delivered = true;
+        }
+        if (jdbcTemplate == null) {
+            return;
+        }
+        try {
+            jdbcTemplate.query("select pg_notify(?, ?)", rs -> null, CHANNEL, payload(event));
+        } catch (DataAccessException e) {
+            log.debug("Failed to notify job status of job {}: {}", jobId, e.getMessage());
+            if (!delivered) {
+                deliver(event);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        closed = true;
+        if (listener != null) {
+            listener.interrupt();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.stop();
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void deliver(JobStatusEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.queue.offer(event)) {
+                log.debug("Dropping SSE subscriber, {} events behind", subscriberQueueSize);
+                subscriber.stop();
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    // one connection held for the lifetime of the instance, opened again after it breaks
+    private void listen() {
+        while (!closed) {
+            try (Connection connection = jdbcTemplate.getDataSource().getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                listening = true;
+                log.info("Listening for job status changes on {}", CHANNEL);
+                while (!closed) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null && !subscribers.isEmpty()) {
+                        for (PGNotification notification : notifications) {
+                            parse(notification.getParameter()).ifPresent(this::deliver);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                log.warn("Job status listener failed, retrying: {}", e.getMessage());
+            } finally {
+                listening = false;
+            }
+            try {
+                TimeUnit.SECONDS.sleep(RELISTEN_DELAY_SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static String payload(JobStatusEvent event) {
+        return event.jobId() + " " + event.jobStatus().name() + " " + event.at();
+    }
+
+    private static Optional<JobStatusEvent> parse(String payload) {
+        try {
+            String[] parts = payload.split(" ");
+            return Optional.of(new JobStatusEvent(Integer.parseInt(parts[0]), JobStatus.valueOf(parts[1]),
+                    LocalDateTime.parse(parts[2])));
+        } catch (RuntimeException e) {
+            log.debug("Ignoring job status notification '{}': {}", payload, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<JobStatusEvent> queue;
+        private volatile Thread delivery;
+
+        Subscriber(SseEmitter emitter, BlockingQueue<JobStatusEvent> queue) {
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        void deliver() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    JobStatusEvent event = queue.take();
+                    emitter.send(SseEmitter.event().name("job-status").data(event));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping SSE subscriber: {}", e.getMessage());
+            } finally {
+                subscribers.remove(this);
+            }
+        }
+
+        void stop() {
+            subscribers.remove(this);
+            Thread thread = delivery;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+}
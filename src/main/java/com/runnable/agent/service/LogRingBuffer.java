@@ -0,0 +1,44 @@
+package com.runnable.agent.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity line buffer that overwrites the oldest line once full, so the memory held
+ * per job never grows with how much the agent prints.
+ */
+public class LogRingBuffer {
+
+    private final String[] lines;
+    private int next;
+    private int size;
+
+    public LogRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.lines = new String[capacity];
+    }
+
+    public synchronized void add(String line) {
+        lines[next] = line;
+        next = (next + 1) % lines.length;
+        if (size < lines.length) {
+            size++;
+        }
+    }
+
+    // oldest first
+    public synchronized List<String> snapshot() {
+        List<String> copy = new ArrayList<>(size);
+        int start = (next - size + lines.length) % lines.length;
+        for (int i = 0; i < size; i++) {
+            copy.add(lines[(start + i) % lines.length]);
+        }
+        return copy;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,171 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.model.Info;
+import com.github.dockerjava.api.model.Statistics;
+import com.github.dockerjava.core.InvocationBuilder;
+import com.runnable.agent.dto.ContainerState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the Docker host a new container goes to. Every host is sampled in the background
+ * (statsCmd of its running containers against the daemon's CPU and memory totals), and a
+ * placement goes to the host with the lowest score of sampled load plus running and
+ * in-flight containers. Hosts with an open circuit are skipped. Whether a host has room
+ * for a job at all is up to {@link AdmissionController}.
+ */
+@Service
+public class PlacementScheduler {
+
+    private static final Logger log = LogManager.getLogger(PlacementScheduler.class);
+
+    private final DockerHostRegistry dockerHostRegistry;
+    private final ContainerStateCache containerStateCache;
+    private final long sampleIntervalSeconds;
+    private final double containerWeight;
+    private final Map<String, HostLoad> loads = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "placement-sampler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PlacementScheduler(DockerHostRegistry dockerHostRegistry,
+                              ContainerStateCache containerStateCache,
+                              @Value("${runnable.placement.sample-interval-seconds:15}") long sampleIntervalSeconds,
+                              @Value("${runnable.placement.container-weight:0.05}") double containerWeight) {
+        this.dockerHostRegistry = dockerHostRegistry;
+        this.containerStateCache = containerStateCache;
+        this.sampleIntervalSeconds = sampleIntervalSeconds;
+        this.containerWeight = containerWeight;
+    }
+
+    @PostConstruct
+    void start() {
+        // a single host needs no placement decision, so no point in sampling it
+        if (dockerHostRegistry.all().size() > 1) {
+            sampler.scheduleWithFixedDelay(this::sampleAll, 0, sampleIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sampler.shutdownNow();
+    }
+
+    /**
+     * Hosts ordered from least to most loaded, hosts with an open circuit left out. Falls
+     * back to the default host when every circuit is open, so the call fails fast.
+     */
+    public List<DockerHost> ranked() {
+        List<DockerHost> hosts = dockerHostRegistry.all().stream()
+                .filter(host -> !host.guard().isCircuitOpen())
+                .sorted(Comparator.comparingDouble(this::score))
+                .toList();
+        return hosts.isEmpty() ? List.of(dockerHostRegistry.defaultHost()) : hosts;
+    }
+
+    /**
+     * Counts a create on the host as in flight until {@link #complete} is called, so a burst
+     * of creates spreads out before the new containers show up in the cache.
+     */
+    public void begin(DockerHost host) {
+        inFlight.computeIfAbsent(host.name(), name -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void complete(DockerHost host) {
+        AtomicInteger count = inFlight.get(host.name());
+        if (count != null) {
+            count.decrementAndGet();
+        }
+    }
+
+    public Optional<HostLoad> load(String host) {
+        return Optional.ofNullable(loads.get(host));
+    }
+
+    private double score(DockerHost host) {
+        long running = containerStateCache.getAll().stream()
+                .filter(state -> host.name().equals(state.host()))
+                .filter(ContainerState::isRunning)
+                .count();
+        int pending = inFlight.getOrDefault(host.name(), new AtomicInteger()).get();
+        return score(loads.get(host.name()), running + pending, containerWeight);
+    }
+
+    // unsampled hosts count as idle so a freshly added host gets work straight away
+    static double score(HostLoad load, long containers, double containerWeight) {
+        double sampled = load == null ? 0 : Math.max(load.cpu(), load.memory());
+        return sampled + containers * containerWeight;
+    }
+
+    private void sampleAll() {
+        for (DockerHost host : dockerHostRegistry.all()) {
+            try {
+                loads.put(host.name(), sample(host));
+            } catch (Exception e) {
+                // keep the last sample, the open circuit already keeps a dead host out of placement
+                log.warn("Failed to sample load of Docker host {}: {}", host.name(), e.getMessage());
+            }
+        }
+    }
+
+    private HostLoad sample(DockerHost host) {
+        Info info = host.call("info", client -> client.infoCmd().exec());
+        List<String> running = containerStateCache.getAll().stream()
+                .filter(state -> host.name().equals(state.host()))
+                .filter(ContainerState::isRunning)
+                .map(ContainerState::id)
+                .toList();
+
+        double cpu = 0;
+        long memory = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Statistics>> futures = new ArrayList<>(running.size());
+            for (String containerId : running) {
+                futures.add(executor.submit(() -> host.call("stats", client -> client.statsCmd(containerId)
+                        .withNoStream(true)
+                        .exec(new InvocationBuilder.AsyncResultCallback<Statistics>())
+                        .awaitResult())));
+            }
+            for (Future<Statistics> future : futures) {
+                Statistics stats = future.get();
+                if (stats != null) {
+                    cpu += ContainerStats.hostCpuShare(stats);
+                    memory += ContainerStats.memoryBytes(stats);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted sampling " + host.name(), e);
+        }
+        long memTotal = info.getMemTotal() != null && info.getMemTotal() > 0 ? info.getMemTotal() : Long.MAX_VALUE;
+        return new HostLoad(Math.min(cpu, 1.0), (double) memory / memTotal, running.size(), System.currentTimeMillis());
+    }
+
+    /**
+     * Last sampled load of a host, cpu and memory as fractions of the daemon's totals.
+     */
+    public record HostLoad(double cpu, double memory, int runningContainers, long sampledAtMillis) {}
+}
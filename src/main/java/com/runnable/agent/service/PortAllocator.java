@@ -0,0 +1,125 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.ContainerState;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.BitSet;
+
+/**
+ * Owns the host port range handed out to job containers. One bit per port, a set bit is a
+ * lease. Leases live as long as the container runs and are persisted through Jobs.vncPort.
+ */
+@Service
+public class PortAllocator {
+
+    private static final Logger log = LogManager.getLogger(PortAllocator.class);
+
+    private final JobsRepository jobsRepository;
+    private final ContainerStateCache containerStateCache;
+    private final int minPort;
+    private final int maxPort;
+    private final BitSet leased;
+    // rotates through the range so a just released port is not handed out again right away
+    private int cursor;
+
+    public PortAllocator(JobsRepository jobsRepository,
+                         ContainerStateCache containerStateCache,
+                         @Value("${runnable.ports.min:20000}") int minPort,
+                         @Value("${runnable.ports.max:29999}") int maxPort) {
+        if (minPort < 1 || maxPort > 65535 || minPort > maxPort) {
+            throw new IllegalArgumentException("Invalid port range " + minPort + "-" + maxPort);
+        }
+        this.jobsRepository = jobsRepository;
+        this.containerStateCache = containerStateCache;
+        this.minPort = minPort;
+        this.maxPort = maxPort;
+        this.leased = new BitSet(maxPort - minPort + 1);
+    }
+
+    @PostConstruct
+    void restoreLeases() {
+        for (ContainerState state : containerStateCache.getAll()) {
+            if (state.isAlive() && state.vncPort() != null) {
+                markLeased(state.vncPort());
+            }
+        }
+        for (Jobs job : jobsRepository.findAllByJobStatus(JobStatus.STARTED)) {
+            if (job.getVncPort() != null) {
+                markLeased(job.getVncPort());
+            }
+        }
+        // another agent instance may have leased the port from its own allocator
+        containerStateCache.onStart(state -> {
+            if (state.vncPort() != null) {
+                markLeased(state.vncPort());
+            }
+        });
+        containerStateCache.onExit(state -> {
+            if (state.vncPort() != null) {
+                release(state.vncPort());
+            }
+        });
+        log.info("Port allocator restored {} leases in {}-{}", leasedCount(), minPort, maxPort);
+    }
+
+    public synchronized int lease() {
+        int size = maxPort - minPort + 1;
+        int index = leased.nextClearBit(cursor);
+        if (index >= size) {
+            index = leased.nextClearBit(0);
+            if (index >= size) {
+                throw new IllegalStateException("No free host ports left in " + minPort + "-" + maxPort);
+            }
+        }
+        leased.set(index);
+        cursor = index + 1;
+        return minPort + index;
+    }
+
+    /**
+     * Leases a specific port again, used when an existing container restarts with its original
+     * binding. A lease still held with no running or paused container behind it is stale and is taken over.
+     */
+    public synchronized boolean reacquire(int port) {
+        if (!inRange(port)) {
+            return true; // not ours to manage, e.g. created before the range was configured
+        }
+        int index = port - minPort;
+        if (leased.get(index)) {
+            boolean inUse = containerStateCache.getAll().stream()
+                    .anyMatch(state -> state.isAlive() && Integer.valueOf(port).equals(state.vncPort()));
+            if (inUse) {
+                return false;
+            }
+        }
+        leased.set(index);
+        return true;
+    }
+
+    public synchronized void release(int port) {
+        if (inRange(port)) {
+            leased.clear(port - minPort);
+        }
+    }
+
+    public synchronized int leasedCount() {
+        return leased.cardinality();
+    }
+
+    private synchronized void markLeased(int port) {
+        if (inRange(port)) {
+            leased.set(port - minPort);
+        }
+    }
+
+    private boolean inRange(int port) {
+        return port >= minPort && port <= maxPort;
+    }
+}
@@ -0,0 +1,152 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.dto.SemanticCacheStats;
+import com.runnable.agent.repository.JobArtifactRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which tasks already produced artifacts. The name of every job whose /output was
+ * collected is embedded into the pgvector store, and a new job whose name comes within the
+ * similarity threshold of one of them reuses that job's artifacts instead of running an LLM
+ * generation in a container of its own.
+ */
+@Service
+public class SemanticJobCache {
+
+    private static final Logger log = LogManager.getLogger(SemanticJobCache.class);
+    private static final String JOB_ID = "jobId";
+
+    private final VectorStore vectorStore;
+    private final JobArtifactRepository jobArtifactRepository;
+    private final JobMetrics jobMetrics;
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong savedMillis = new AtomicLong();
+    private final Timer lookups;
+
+    public SemanticJobCache(VectorStore vectorStore,
+                            JobArtifactRepository jobArtifactRepository,
+                            JobMetrics jobMetrics,
+                            MeterRegistry meterRegistry,
+                            @Value("${runnable.semantic-cache.enabled:true}") boolean enabled,
+                            @Value("${runnable.semantic-cache.similarity-threshold:0.92}") double similarityThreshold) {
+        this.vectorStore = vectorStore;
+        this.jobArtifactRepository = jobArtifactRepository;
+        this.jobMetrics = jobMetrics;
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+
+        lookups = Timer.builder("runnable.semantic.cache.lookup")
+                .description("Time spent embedding a job name and searching for a similar job")
+                .register(meterRegistry);
+        FunctionCounter.builder("runnable.semantic.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("runnable.semantic.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("runnable.semantic.cache.saved", savedMillis, saved -> saved.get() / 1000.0)
+                .description("Estimated job start time saved by reusing artifacts")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Makes a job's collected artifacts available for reuse. Collecting the same job again
+     * overwrites its entry, since the document id is derived from the job id.
+     */
+    public void index(Jobs job) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            vectorStore.add(List.of(new Document(documentId(job.getJobId()), job.getJobName(),
+                    Map.of(JOB_ID, job.getJobId()))));
+        } catch (Exception e) {
+            log.warn("Failed to index job {} for reuse: {}", job.getJobId(), e.getMessage());
+        }
+    }
+
+    /**
+     * The most similar earlier job that still has artifacts, if it is within the threshold.
+     * Any failure of the embedding model or the store counts as a miss, the job then just
+     * runs as usual.
+     */
+    public Optional<Match> lookup(String jobName) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long started = System.nanoTime();
+        Optional<Match> match = Optional.empty();
+        try {
+            List<Document> similar = vectorStore.similaritySearch(SearchRequest.builder()
+                    .query(jobName)
+                    .topK(1)
+                    .similarityThreshold(similarityThreshold)
+                    .build());
+            if (similar != null && !similar.isEmpty()) {
+                match = toMatch(similar.get(0));
+            }
+        } catch (Exception e) {
+            log.warn("Semantic cache lookup failed: {}", e.getMessage());
+        }
+        Duration lookup = Duration.ofNanos(System.nanoTime() - started);
+        lookups.record(lookup);
+        if (match.isEmpty()) {
+            misses.incrementAndGet();
+            return match;
+        }
+        hits.incrementAndGet();
+        // a lower bound, the generation inside the container comes on top of the start time
+        Duration saved = jobMetrics.meanStart().minus(lookup);
+        if (!saved.isNegative()) {
+            savedMillis.addAndGet(saved.toMillis());
+        }
+        return match;
+    }
+
+    public SemanticCacheStats stats() {
+        return new SemanticCacheStats(hits.get(), misses.get(), Duration.ofMillis(savedMillis.get()));
+    }
+
+    // artifacts of the matched job may have been deleted since, the entry is useless then
+    private Optional<Match> toMatch(Document document) {
+        Object jobId = document.getMetadata().get(JOB_ID);
+        if (!(jobId instanceof Number number)) {
+            return Optional.empty();
+        }
+        int sourceJobId = number.intValue();
+        if (jobArtifactRepository.findAllByJobIdOrderByPath(sourceJobId).isEmpty()) {
+            vectorStore.delete(List.of(document.getId()));
+            return Optional.empty();
+        }
+        double score = document.getScore() != null ? document.getScore() : similarityThreshold;
+        return Optional.of(new Match(sourceJobId, document.getText(), score));
+    }
+
+    private static String documentId(int jobId) {
+        return UUID.nameUUIDFromBytes(("job-" + jobId).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    public record Match(int jobId, String jobName, double similarity) {}
+}
@@ -1,108 +1,376 @@
 package com.runnable.agent.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.runnable.agent.commandhandler.CommandHandler;
+import com.runnable.agent.commandhandler.CommandOutput;
+import com.runnable.agent.dto.CommandResult;
+import com.runnable.agent.dto.IngestSummary;
+import com.runnable.agent.dto.JobActionResult;
+import com.runnable.agent.dto.JobPriority;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.JobSummary;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.dto.PoolStats;
+import com.runnable.agent.dto.SemanticCacheStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Component
 public class TerminalRunner implements CommandLineRunner {
 
+    private static final Logger log = LogManager.getLogger(TerminalRunner.class);
+    private static final int LIST_PAGE_SIZE = 50;
+    private static final long SETTLE_POLL_MILLIS = 500;
+    // still on their way to a container, batch mode waits for these before it exits
+    private static final Set<JobStatus> UNSETTLED = EnumSet.of(JobStatus.PENDING, JobStatus.QUEUED, JobStatus.CREATING);
+
     private final JobService jobService;
+    private final JobLogService jobLogService;
+    private final ArtifactService artifactService;
+    private final BulkIngestService bulkIngestService;
     private final Map<String, CommandHandler> commands = new HashMap<>();
+    private final Map<Integer, Tail> tails = new ConcurrentHashMap<>();
+    private final ApplicationContext applicationContext;
+    private final ObjectMapper objectMapper;
+    private final String batchSource;
+    private final String batchReport;
+    private final int batchParallelism;
+    private final Duration batchSettleTimeout;
+    // jobs submitted by the batch script
+    private final Set<Integer> submitted = ConcurrentHashMap.newKeySet();
 
-    public TerminalRunner(JobService jobService) {
+    public TerminalRunner(JobService jobService, JobLogService jobLogService, ArtifactService artifactService,
+                          BulkIngestService bulkIngestService, ApplicationContext applicationContext, ObjectMapper objectMapper,
+                          @Value("${runnable.terminal.batch:}") String batchSource,
+                          @Value("${runnable.terminal.batch-report:-}") String batchReport,
+                          @Value("${runnable.terminal.batch-parallelism:16}") int batchParallelism,
+                          @Value("${runnable.terminal.batch-settle-timeout:10m}") Duration batchSettleTimeout) {
         this.jobService = jobService;
+        this.jobLogService = jobLogService;
+        this.artifactService = artifactService;
+        this.bulkIngestService = bulkIngestService;
+        this.applicationContext = applicationContext;
+        this.objectMapper = objectMapper;
+        this.batchSource = batchSource;
+        this.batchReport = batchReport;
+        this.batchParallelism = batchParallelism;
+        this.batchSettleTimeout = batchSettleTimeout;
         registerCommands();
     }
 
     private void registerCommands() {
-        commands.put("run-job", args -> {
+        commands.put("run-job", (args, out) -> {
             if (args.length < 2) {
-                System.out.println("Usage: run-job <job-name>");
+                out.fail("Usage: run-job <job-name>");
                 return;
             }
             String jobName = args[1];
             String result = jobService.runJob(jobName);
-            System.out.println("Result: " + result);
+            out.println("Result: " + result);
         });
 
-        commands.put("create-job", args -> {
-            if (args.length < 2) {
-                System.out.println("Usage: create-job <job-name>");
+        commands.put("create-job", (args, out) -> {
+            // options first, e.g. create-job --class=large --priority=interactive Build a todo app
+            String jobClass = null;
+            JobPriority priority = JobPriority.NORMAL;
+            int nameStart = 1;
+            try {
+                for (; nameStart < args.length && args[nameStart].startsWith("--"); nameStart++) {
+                    if (args[nameStart].startsWith("--class=")) {
+                        jobClass = args[nameStart].substring("--class=".length());
+                    } else if (args[nameStart].startsWith("--priority=")) {
+                        priority = JobPriority.valueOf(args[nameStart].substring("--priority=".length()).toUpperCase());
+                    } else {
+                        break;
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                out.fail("⚠️ Unknown priority, use one of " + Arrays.toString(JobPriority.values()));
                 return;
             }
-            String jobName = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
-            Thread loading = showLoading("⏳ Creating job and starting container");
+            if (args.length <= nameStart) {
+                out.fail("Usage: create-job [--class=<job-class>] [--priority=<priority>] <job-name>");
+                return;
+            }
+            String jobName = String.join(" ", Arrays.copyOfRange(args, nameStart, args.length));
             try {
-                boolean success = jobService.createJob(jobName);
-                loading.interrupt();
-                System.out.print("\r✅ Job created and container started successfully!         \n");
-                System.out.println("Result: " + success);
-            } catch (Exception e) {
-                loading.interrupt();
-                System.out.print("\r❌ Failed to create job or run container: " + e.getMessage() + "\n");
+                // jobs from the terminal are shared out under the OS user running it
+                int jobId = jobService.submitJob(jobName, jobClass, System.getProperty("user.name"), priority);
+                if (!batchSource.isBlank()) {
+                    submitted.add(jobId);
+                }
+                out.println("🕓 Job " + jobId + " submitted [PENDING], see list-jobs for progress");
+            } catch (IllegalArgumentException | JobRejectedException e) {
+                out.fail("❌ " + e.getMessage());
             }
         });
 
-        commands.put("stop-job", args -> {
+        commands.put("stop-job", (args, out) -> {
             if (args.length < 2) {
-                System.out.println("Usage: stop-job <jobId>");
+                out.fail("Usage: stop-job <jobId>");
                 return;
             }
 
             try {
                 int jobId = Integer.parseInt(args[1]);
-                boolean result = jobService.stopJobById(jobId);
-                System.out.println(result ? "✅ Job stopped successfully" : "❌ Failed to stop job.");
+                if (jobService.stopJobById(jobId)) {
+                    out.println("✅ Job stopped successfully");
+                } else {
+                    out.fail("❌ Failed to stop job.");
+                }
+            } catch (NumberFormatException e) {
+                out.fail("⚠️ Invalid job ID format");
+            }
+        });
+
+        commands.put("stop-all", (args, out) -> {
+            List<JobActionResult> results = jobService.stopAllJobs();
+            if (results.isEmpty()) {
+                out.println("⚠️ No running jobs found.");
+            }
+            printResults(out, results);
+        });
+
+        commands.put("stop-jobs", (args, out) -> {
+            if (args.length < 2) {
+                out.fail("Usage: stop-jobs <jobId> [<jobId>...]");
+                return;
+            }
+            try {
+                printResults(out, jobService.stopJobsByIds(parseJobIds(args)));
+            } catch (NumberFormatException e) {
+                out.fail("⚠️ Invalid job ID format");
+            }
+        });
+
+        commands.put("start-jobs", (args, out) -> {
+            if (args.length < 2) {
+                out.fail("Usage: start-jobs <jobId> [<jobId>...]");
+                return;
+            }
+            try {
+                printResults(out, jobService.startJobsByIds(parseJobIds(args)));
             } catch (NumberFormatException e) {
-                System.out.println("⚠️ Invalid job ID format");
+                out.fail("⚠️ Invalid job ID format");
             }
         });
 
-        commands.put("stop-all", args -> {
-            jobService.stopAllJobs();
+        commands.put("list-jobs", (args, out) -> {
+            // list-jobs [status] [before-id], a page at a time
+            JobStatus status = null;
+            Integer cursor = null;
+            try {
+                for (int i = 1; i < args.length; i++) {
+                    if (Character.isDigit(args[i].charAt(0))) {
+                        cursor = Integer.parseInt(args[i]);
+                    } else {
+                        status = JobStatus.valueOf(args[i].toUpperCase());
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                out.fail("Usage: list-jobs [" + Arrays.stream(JobStatus.values()).map(Enum::name)
+                        .collect(Collectors.joining("|")) + "] [before-id]");
+                return;
+            }
+            List<JobSummary> jobs = jobService.getJobSummaries(status, cursor, LIST_PAGE_SIZE);
+            jobs.forEach(job -> out.println("- " + jobService.describe(job)));
+            if (jobs.size() == LIST_PAGE_SIZE) {
+                out.println("... more: list-jobs " + (status != null ? status + " " : "") + jobs.getLast().jobId());
+            }
         });
 
-        commands.put("list-jobs", args -> {
-            jobService.getAllJobs().forEach(job -> System.out.println("- " + job));
+        commands.put("list-containers", (args, out) -> {
+            jobService.getAllContainers().forEach(out::println);
         });
 
-        commands.put("list-containers", args -> {
-            jobService.getAllContainers().forEach(System.out::println);
+        commands.put("list-images", (args, out) -> {
+            jobService.getAllImages().forEach(out::println);
         });
 
-        commands.put("list-images", args -> {
-            jobService.getAllImages().forEach(System.out::println);
+        commands.put("start-job", (args, out) -> {
+            if (args.length < 2) {
+                out.fail("Usage: start-job <job-id>");
+                return;
+            }
+            try {
+                int jobId = Integer.parseInt(args[1]);
+                if (jobService.startJobById(jobId)) {
+                    out.println("✅ Job " + jobId + " started");
+                } else {
+                    out.fail("❌ Failed to start job " + jobId);
+                }
+            } catch (NumberFormatException e) {
+                out.fail("Invalid job ID format.");
+            }
         });
 
-        commands.put("start-job", args -> {
+        commands.put("vnc-job", (args, out) -> {
             if (args.length < 2) {
-                System.out.println("Usage: start-job <job-id>");
+                out.fail("Usage: vnc-job <job-id>");
                 return;
             }
             try {
                 int jobId = Integer.parseInt(args[1]);
-                jobService.startJobById(jobId);
+                jobService.openVnc(jobId).ifPresentOrElse(
+                        url -> out.println("🖥️ " + url),
+                        () -> out.fail("❌ Job " + jobId + " has no running VNC session"));
             } catch (NumberFormatException e) {
-                System.out.println("Invalid job ID format.");
+                out.fail("Invalid job ID format.");
+            } catch (JobRejectedException e) {
+                out.fail("❌ " + e.getMessage());
+            }
+        });
+
+        commands.put("tail-job", (args, out) -> {
+            if (args.length < 2) {
+                out.fail("Usage: tail-job <jobId> [stop]");
+                return;
+            }
+            int jobId;
+            try {
+                jobId = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                out.fail("⚠️ Invalid job ID format");
+                return;
             }
+            if (args.length > 2 && "stop".equals(args[2])) {
+                Tail tail = tails.remove(jobId);
+                if (tail != null) {
+                    tail.close();
+                }
+                return;
+            }
+            // the lines outlive the command, there is nothing to put in a batch report
+            if (out.isCapturing()) {
+                out.fail("tail-job is not available in batch mode");
+                return;
+            }
+            // registered first, the log may end before subscribe returns
+            Tail tail = new Tail();
+            if (tails.putIfAbsent(jobId, tail) != null) {
+                out.println("Already tailing job " + jobId);
+                return;
+            }
+            jobLogService.subscribe(jobId,
+                            line -> out.println("[job " + jobId + "] " + line),
+                            () -> tails.remove(jobId, tail))
+                    .ifPresentOrElse(tail::attach, () -> {
+                        tails.remove(jobId, tail);
+                        out.fail("❌ No container found for job " + jobId);
+                    });
         });
 
-        commands.put("help", args -> printHelp());
+        commands.put("collect-artifacts", (args, out) -> {
+            if (args.length < 2) {
+                out.fail("Usage: collect-artifacts <jobId>");
+                return;
+            }
+            try {
+                int jobId = Integer.parseInt(args[1]);
+                artifactService.collect(jobId).ifPresentOrElse(
+                        artifacts -> out.println("✅ Collected " + artifacts.size() + " artifacts for job " + jobId),
+                        () -> out.fail("❌ No container found for job " + jobId));
+            } catch (NumberFormatException e) {
+                out.fail("⚠️ Invalid job ID format");
+            }
+        });
 
-        commands.put("exit", args -> {
-            System.out.println("Bye!");
+        commands.put("list-artifacts", (args, out) -> {
+            if (args.length < 2) {
+                out.fail("Usage: list-artifacts <jobId>");
+                return;
+            }
+            try {
+                int jobId = Integer.parseInt(args[1]);
+                artifactService.getArtifacts(jobId).forEach(artifact -> out.println(
+                        "- " + artifact.getPath() + " (" + artifact.getSizeBytes() + " bytes) sha256:" + artifact.getSha256().substring(0, 12)
+                                + " -> " + artifactService.blobPath(artifact.getSha256())));
+            } catch (NumberFormatException e) {
+                out.fail("⚠️ Invalid job ID format");
+            }
+        });
+
+        commands.put("pool-stats", (args, out) -> {
+            PoolStats stats = jobService.getPoolStats();
+            out.printf("Warm pool: %d/%d idle, hits: %d, misses: %d, hit rate: %.1f%%%n",
+                    stats.idle(), stats.targetSize(), stats.hits(), stats.misses(), stats.hitRate() * 100);
+        });
+
+        commands.put("cache-stats", (args, out) -> {
+            SemanticCacheStats stats = jobService.getSemanticCacheStats();
+            out.printf("Semantic cache: hits: %d, misses: %d, hit rate: %.1f%%, saved: ~%ds%n",
+                    stats.hits(), stats.misses(), stats.hitRate() * 100, stats.saved().toSeconds());
+        });
+
+        commands.put("ingest", (args, out) -> {
+            if (args.length < 2) {
+                out.fail("Usage: ingest <file> [campaign]");
+                return;
+            }
+            String campaign = args.length > 2 ? args[2] : Path.of(args[1]).getFileName().toString();
+            try {
+                IngestSummary summary = bulkIngestService.ingest(args[1], campaign);
+                String line = String.format("%s campaign %s [%s]: %d ingested, %d skipped, %d launched, %d failed to launch",
+                        "COMPLETED".equals(summary.status()) ? "✅" : "❌", campaign, summary.status(),
+                        summary.ingested(), summary.skipped(), summary.launched(), summary.failed());
+                if ("COMPLETED".equals(summary.status())) {
+                    out.println(line);
+                } else {
+                    out.fail(line + ", run it again to resume");
+                }
+            } catch (IllegalArgumentException e) {
+                out.fail("⚠️ " + e.getMessage());
+            }
+        });
+
+        commands.put("help", (args, out) -> printHelp(out));
+
+        commands.put("exit", (args, out) -> {
+            out.println("Bye!");
             System.exit(0);
         });
     }
 
     @Override
     public void run(String... args) {
+        if (!batchSource.isBlank()) {
+            int exitCode = runBatch();
+            System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+        }
         System.out.println("Runnable Terminal started. Type 'help' for a list of commands.");
         try (Scanner scanner = new Scanner(System.in)) {
             while (true) {
@@ -116,48 +384,227 @@ public class TerminalRunner implements CommandLineRunner {
                 CommandHandler handler = commands.get(command);
                 if (handler != null) {
                     try {
-                        handler.handle(tokens);
+                        handler.handle(tokens, CommandOutput.console());
                     } catch (Exception e) {
                         System.out.println("⚠️  Error executing command '" + command + "': " + e.getMessage());
+                        log.debug("Command '{}' failed", command, e);
                     }
                 } else {
                     System.out.println("Unknown command: " + command + ". Type 'help' for commands.");
                 }
             }
         } catch (Exception e) {
-            System.out.println("Fatal error in terminal: " + e.getMessage());
+            log.error("Fatal error in terminal", e);
+        }
+    }
+
+    /**
+     * Runs a script of commands, one per line, from a file or from stdin when the source is
+     * "-". Commands run concurrently up to batchParallelism, a line reading "wait" lets every
+     * earlier command finish first. Each command is reported as one JSON line. Before exiting
+     * it waits for the submitted jobs to start; the exit code is 0 when all commands succeeded
+     * and all jobs started, 1 when any did not and 2 when the script could not be read.
+     */
+    private int runBatch() {
+        long started = System.nanoTime();
+        AtomicInteger total = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore permits = new Semaphore(batchParallelism);
+        PrintStream report;
+        try {
+            report = "-".equals(batchReport)
+                    ? System.out
+                    : new PrintStream(Files.newOutputStream(Path.of(batchReport)), true, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Cannot write batch report " + batchReport + ": " + e.getMessage());
+            return 2;
+        }
+        try (BufferedReader reader = "-".equals(batchSource)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(batchSource));
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            String input;
+            int lineNumber = 0;
+            while ((input = reader.readLine()) != null) {
+                lineNumber++;
+                String command = input.trim();
+                if (command.isEmpty() || command.startsWith("#")) {
+                    continue;
+                }
+                if ("exit".equals(command)) {
+                    break;
+                }
+                if ("wait".equals(command)) {
+                    awaitAll(running);
+                    continue;
+                }
+                permits.acquireUninterruptibly();
+                int line = lineNumber;
+                total.incrementAndGet();
+                running.add(executor.submit(() -> {
+                    try {
+                        CommandResult result = runCommand(line, command);
+                        if (!result.ok()) {
+                            failed.incrementAndGet();
+                        }
+                        String json = objectMapper.writeValueAsString(result);
+                        synchronized (report) {
+                            report.println(json);
+                        }
+                    } catch (JsonProcessingException e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            awaitAll(running);
+            failed.addAndGet(awaitSubmitted());
+        } catch (IOException e) {
+            System.err.println("Cannot run batch " + batchSource + ": " + e.getMessage());
+            return 2;
+        } finally {
+            if (report != System.out) {
+                report.close();
+            }
         }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        System.err.println("Batch finished: " + total.get() + " commands, " + failed.get() + " failed, " + millis + "ms");
+        return failed.get() == 0 ? 0 : 1;
     }
 
-    private void printHelp() {
-        System.out.println("""
-                 create-job <name>   - Create a new Job
+    /**
+     * Waits until the jobs the script submitted have a container or have failed, so exiting
+     * does not cut off the queue worker of this instance half way. Returns how many did not
+     * start: failed ones and those still waiting when batchSettleTimeout ran out.
+     */
+    private int awaitSubmitted() {
+        if (submitted.isEmpty() || batchSettleTimeout.isZero()) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + batchSettleTimeout.toNanos();
+        Set<Integer> waiting = new HashSet<>(submitted);
+        int failed = 0;
+        while (true) {
+            for (Iterator<Integer> it = waiting.iterator(); it.hasNext(); ) {
+                int jobId = it.next();
+                JobStatus status = jobService.getJob(jobId).map(Jobs::getJobStatus).orElse(JobStatus.REMOVED);
+                if (!UNSETTLED.contains(status)) {
+                    it.remove();
+                    if (status != JobStatus.STARTED && status != JobStatus.REUSED) {
+                        System.err.println("Job " + jobId + " did not start: " + status);
+                        failed++;
+                    }
+                }
+            }
+            if (waiting.isEmpty()) {
+                return failed;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                System.err.println(waiting.size() + " jobs still waiting for a container after " + batchSettleTimeout
+                        + ": " + waiting);
+                return failed + waiting.size();
+            }
+            try {
+                Thread.sleep(SETTLE_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return failed + waiting.size();
+            }
+        }
+    }
+
+    private CommandResult runCommand(int line, String input) {
+        String[] tokens = input.split("\\s+");
+        CommandOutput out = CommandOutput.capturing();
+        long started = System.nanoTime();
+        CommandHandler handler = commands.get(tokens[0]);
+        if (handler == null) {
+            out.fail("Unknown command: " + tokens[0]);
+        } else {
+            try {
+                handler.handle(tokens, out);
+            } catch (Exception e) {
+                out.fail("Error executing command '" + tokens[0] + "': " + e.getMessage());
+            }
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        return new CommandResult(line, input, !out.failed(), millis, out.text());
+    }
+
+    private static void awaitAll(List<Future<?>> running) {
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // every command reports its own failure
+            }
+        }
+        running.clear();
+    }
+
+    private List<Integer> parseJobIds(String[] args) {
+        return Arrays.stream(args, 1, args.length).map(Integer::parseInt).toList();
+    }
+
+    private void printResults(CommandOutput out, List<JobActionResult> results) {
+        long succeeded = results.stream().filter(JobActionResult::success).count();
+        results.forEach(result -> out.println((result.success() ? "✅ " : "❌ ") + result.message()));
+        if (!results.isEmpty()) {
+            String summary = succeeded + "/" + results.size() + " succeeded";
+            if (succeeded < results.size()) {
+                out.fail(summary);
+            } else {
+                out.println(summary);
+            }
+        }
+    }
+
+    private void printHelp(CommandOutput out) {
+        out.println("""
+                 create-job [--class=<c>] [--priority=<p>] <name> - Create a new Job
                  run-job <name>     - Run a job by name
                  stop-job <id>      - Stop a job by ID
-                 stop-all           - Stop all running jobs [pending]...
-                 list-jobs          - List available jobs
+                 stop-all           - Stop all running jobs
+                 stop-jobs <id...>  - Stop several jobs in parallel
+                 start-jobs <id...> - Start several jobs in parallel
+                 list-jobs [status] [before-id] - List jobs, newest first, 50 at a time
                  list-containers    - List running containers
                  list-images        - List available images
+                 vnc-job <id>       - Show a job's VNC URL, resuming it if paused
+                 tail-job <id> [stop] - Follow a job's container log
+                 collect-artifacts <id> - Export /output of a job's container
+                 list-artifacts <id> - List collected artifacts of a job
+                 pool-stats         - Show warm container pool hit/miss rate
+                 cache-stats        - Show reused-artifact hit rate and time saved
+                 ingest <file> [campaign] - Bulk-create and launch jobs from a CSV or JSON lines file
                  help               - Show this help message
+                 (batch: --runnable.terminal.batch=<file|->, one command per line, "wait" as a barrier)
                  exit               - Exit the terminal
             """);
     }
 
-    private Thread showLoading(String message) {
-        Thread loadingThread = new Thread(() -> {
-            String[] dots = {".  ", ".. ", "..."};
-            int i = 0;
-            while (!Thread.currentThread().isInterrupted()) {
-                System.out.print("\r" + message + dots[i++ % dots.length]);
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    break;
-                }
+    // a tail-job follow, stopped before its subscription exists it closes it on arrival
+    private static final class Tail {
+        private JobLogService.LogSubscription subscription;
+        private boolean closed;
+
+        synchronized void attach(JobLogService.LogSubscription subscription) {
+            this.subscription = subscription;
+            if (closed) {
+                subscription.close();
             }
-        });
-        loadingThread.start();
-        return loadingThread;
-    }
+        }
 
+        synchronized void close() {
+            closed = true;
+            if (subscription != null) {
+                subscription.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,148 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.model.ContainerNetwork;
+import com.runnable.agent.dto.ContainerState;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Where viewers find a job's desktop. With published ports that is the host port bound to
+ * the container's noVNC; otherwise every job is served through this app under /vnc/{jobId},
+ * and this class resolves the container's address on the Docker network for the relay.
+ * That address has to be routable from here: the same host, or an attachable overlay
+ * network named in runnable.vnc.network.
+ */
+@Service
+public class VncGateway {
+
+    public static final int RFB_PORT = 5900; // x11vnc inside the agent container
+    public static final int NOVNC_PORT = 6080; // noVNC's own web server, for the static pages
+    private static final String JOB_CONTAINER_PREFIX = "agent-job-";
+
+    private final JobsRepository jobsRepository;
+    private final DockerHostRegistry dockerHostRegistry;
+    private final ContainerStateCache containerStateCache;
+    private final boolean publishPorts;
+    private final String gatewayUrl;
+    private final String network;
+    private final Duration connectTimeout;
+    private final HttpClient httpClient;
+    private final Map<String, String> addresses = new ConcurrentHashMap<>();
+
+    public VncGateway(JobsRepository jobsRepository,
+                      DockerHostRegistry dockerHostRegistry,
+                      ContainerStateCache containerStateCache,
+                      @Value("${runnable.vnc.publish-ports:false}") boolean publishPorts,
+                      @Value("${runnable.vnc.gateway-url:http://localhost:8080}") String gatewayUrl,
+                      @Value("${runnable.vnc.network:bridge}") String network,
+                      @Value("${runnable.vnc.connect-timeout:5s}") Duration connectTimeout) {
+        this.jobsRepository = jobsRepository;
+        this.dockerHostRegistry = dockerHostRegistry;
+        this.containerStateCache = containerStateCache;
+        this.publishPorts = publishPorts;
+        this.gatewayUrl = gatewayUrl.endsWith("/") ? gatewayUrl.substring(0, gatewayUrl.length() - 1) : gatewayUrl;
+        this.network = network;
+        this.connectTimeout = connectTimeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(connectTimeout).build();
+    }
+
+    // an exited container gets a new address when it is started again
+    @PostConstruct
+    void start() {
+        containerStateCache.onExit(state -> addresses.remove(state.id()));
+    }
+
+    /**
+     * URL of the given noVNC page for a running container, e.g. vnc.html or vnc_lite.html.
+     * Through the gateway the page is told where its WebSocket lives with the path parameter.
+     */
+    public Optional<String> viewerUrl(int jobId, ContainerState state, String page) {
+        if (!state.isRunning()) {
+            return Optional.empty();
+        }
+        if (publishPorts) {
+            return Optional.ofNullable(state.vncPort())
+                    .map(port -> dockerHostRegistry.get(state.host()).vncUrl(port, page));
+        }
+        return Optional.of(gatewayUrl + "/vnc/" + jobId + "/" + page + "?path=vnc/" + jobId);
+    }
+
+    // for listings that only have the container, job containers are named after their job
+    public Optional<String> viewerUrl(ContainerState state, String page) {
+        if (publishPorts) {
+            return viewerUrl(0, state, page);
+        }
+        if (state.name() == null || !state.name().startsWith(JOB_CONTAINER_PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return viewerUrl(Integer.parseInt(state.name().substring(JOB_CONTAINER_PREFIX.length())), state, page);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Address of a port inside the running container of the job, on the gateway network.
+     * The container is inspected once, later lookups come from memory.
+     */
+    public Optional<InetSocketAddress> upstream(int jobId, int port) {
+        Optional<Jobs> job = jobsRepository.findById(jobId).filter(found -> found.getContainerId() != null);
+        if (job.isEmpty()) {
+            return Optional.empty();
+        }
+        String containerId = job.get().getContainerId();
+        if (containerStateCache.get(containerId).filter(ContainerState::isRunning).isEmpty()) {
+            return Optional.empty();
+        }
+        String address = addresses.computeIfAbsent(containerId, id -> inspectAddress(job.get().getDockerHost(), id));
+        return Optional.ofNullable(address).map(ip -> new InetSocketAddress(ip, port));
+    }
+
+    /**
+     * One of the noVNC static files, streamed from the container's own web server. Empty when
+     * the job has no running container; the caller closes the body.
+     */
+    public Optional<HttpResponse<InputStream>> fetchAsset(int jobId, String path) throws IOException {
+        Optional<InetSocketAddress> upstream = upstream(jobId, NOVNC_PORT);
+        if (upstream.isEmpty()) {
+            return Optional.empty();
+        }
+        URI uri = URI.create("http://" + upstream.get().getHostString() + ":" + NOVNC_PORT
+                + (path.startsWith("/") ? path : "/" + path));
+        try {
+            return Optional.of(httpClient.send(HttpRequest.newBuilder(uri).timeout(connectTimeout).GET().build(),
+                    HttpResponse.BodyHandlers.ofInputStream()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted fetching " + uri, e);
+        }
+    }
+
+    private String inspectAddress(String host, String containerId) {
+        InspectContainerResponse inspect = dockerHostRegistry.get(host).call("inspect",
+                client -> client.inspectContainerCmd(containerId).exec());
+        if (inspect.getNetworkSettings() == null || inspect.getNetworkSettings().getNetworks() == null) {
+            return null;
+        }
+        ContainerNetwork attached = inspect.getNetworkSettings().getNetworks().get(network);
+        String ip = attached != null ? attached.getIpAddress() : null;
+        return ip == null || ip.isEmpty() ? null : ip;
+    }
+}
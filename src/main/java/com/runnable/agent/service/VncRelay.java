@@ -0,0 +1,363 @@
+package com.runnable.agent.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Moves bytes between viewer WebSockets and the VNC servers inside job containers. A single
+ * selector thread serves every connection. Container output is read into a pooled direct
+ * buffer and handed to the WebSocket as it is with an asynchronous send, and the socket is
+ * not read again until that send completes, so a slow viewer only slows down its own stream
+ * and never holds a thread. Viewer input is written straight to the socket from the calling
+ * thread; only what the socket cannot take right away is copied and queued.
+ */
+@Service
+public class VncRelay {
+
+    private static final Logger log = LogManager.getLogger(VncRelay.class);
+    private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+    private final int bufferSize;
+    private final int maxPendingBytes;
+    private final Duration connectTimeout;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    // connects still in flight, oldest first; they share one timeout so only the head can be due
+    private final ArrayDeque<Connection> connecting = new ArrayDeque<>();
+    private Thread loop;
+    private volatile boolean closed;
+
+    public VncRelay(MeterRegistry meterRegistry,
+                    @Value("${runnable.vnc.buffer-size:65536}") int bufferSize,
+                    @Value("${runnable.vnc.max-pending-bytes:1048576}") int maxPendingBytes,
+                    @Value("${runnable.vnc.connect-timeout:5s}") Duration connectTimeout) throws IOException {
+        this.bufferSize = bufferSize;
+        this.maxPendingBytes = maxPendingBytes;
+        this.connectTimeout = connectTimeout;
+        this.selector = Selector.open();
+
+        Gauge.builder("runnable.vnc.connections", connections, Set::size)
+                .description("Viewer connections open through the VNC gateway")
+                .register(meterRegistry);
+        Gauge.builder("runnable.vnc.buffers", buffers, Queue::size)
+                .description("Idle direct buffers kept for new VNC connections")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        loop = Thread.ofPlatform().name("vnc-relay").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        closed = true;
+        selector.wakeup();
+        loop.join(SELECT_TIMEOUT_MILLIS);
+        connections.forEach(connection -> connection.close(CloseStatus.GOING_AWAY));
+        selector.close();
+    }
+
+    /**
+     * Connects to the VNC server and relays between it and the viewer until either side
+     * closes. Returns right away, the connect finishes on the relay thread.
+     */
+    public Connection open(InetSocketAddress upstream, WebSocketSession viewer) throws IOException {
+        Session session = ((NativeWebSocketSession) viewer).getNativeSession(Session.class);
+        if (session == null) {
+            throw new IllegalStateException("Not a standard WebSocket session: " + viewer.getClass().getName());
+        }
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // pointer events are tiny and latency bound
+            channel.connect(upstream);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        Connection connection = new Connection(channel, viewer, session.getAsyncRemote());
+        connections.add(connection);
+        onLoop(() -> {
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                if (channel.isConnected()) {
+                    connection.finishConnect(); // a local connect can finish right away, OP_CONNECT never fires then
+                } else {
+                    connecting.add(connection);
+                }
+            } catch (IOException e) {
+                connection.close(CloseStatus.SERVER_ERROR);
+            }
+        });
+        return connection;
+    }
+
+    public int openConnections() {
+        return connections.size();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) {
+                            connection.finishConnect();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        log.debug("VNC relay connection failed: {}", e.getMessage());
+                        connection.close(CloseStatus.SERVER_ERROR);
+                    }
+                }
+                expireConnects();
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    log.warn("VNC relay loop error: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // relay thread only; connected and closed ones leave the queue once they reach its head
+    private void expireConnects() {
+        long now = System.nanoTime();
+        Connection head;
+        while ((head = connecting.peek()) != null) {
+            if (head.channel.isOpen() && !head.channel.isConnected()) {
+                if (now - head.openedAt <= connectTimeout.toNanos()) {
+                    return;
+                }
+                head.close(CloseStatus.SERVER_ERROR.withReason("VNC server did not answer"));
+            }
+            connecting.poll();
+        }
+    }
+
+    private void onLoop(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private ByteBuffer borrow() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void giveBack(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.add(buffer);
+    }
+
+    /**
+     * One viewer's relay. The selection key and the read buffer belong to the relay thread;
+     * the pending queue is shared with viewer threads and guarded by the connection itself.
+     */
+    public final class Connection {
+
+        private final SocketChannel channel;
+        private final WebSocketSession viewer;
+        private final RemoteEndpoint.Async remote;
+        private final long openedAt = System.nanoTime();
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        private int pendingBytes;
+        private SelectionKey key;
+        private ByteBuffer buffer;
+        private boolean sending;
+        private boolean closed;
+
+        private Connection(SocketChannel channel, WebSocketSession viewer, RemoteEndpoint.Async remote) {
+            this.channel = channel;
+            this.viewer = viewer;
+            this.remote = remote;
+        }
+
+        /**
+         * Viewer input: key and pointer events, clipboard. The payload is only read during
+         * the call, whatever the socket does not take now is copied.
+         */
+        public void send(ByteBuffer data) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (pending.isEmpty() && channel.isConnected()) {
+                    try {
+                        channel.write(data);
+                    } catch (IOException e) {
+                        closeLater(CloseStatus.SERVER_ERROR);
+                        return;
+                    }
+                    if (!data.hasRemaining()) {
+                        return;
+                    }
+                }
+                if (pendingBytes + data.remaining() > maxPendingBytes) {
+                    closeLater(CloseStatus.POLICY_VIOLATION.withReason("VNC server is not reading"));
+                    return;
+                }
+                ByteBuffer copy = ByteBuffer.allocate(data.remaining()).put(data).flip();
+                pending.add(copy);
+                pendingBytes += copy.remaining();
+            }
+            onLoop(() -> interest(SelectionKey.OP_WRITE, true));
+        }
+
+        // called from the viewer side, the relay thread does the actual close
+        public void close() {
+            closeLater(CloseStatus.NORMAL);
+        }
+
+        private void finishConnect() throws IOException {
+            if (!channel.finishConnect()) {
+                return;
+            }
+            boolean queued;
+            synchronized (this) {
+                queued = !pending.isEmpty();
+            }
+            key.interestOps(SelectionKey.OP_READ | (queued ? SelectionKey.OP_WRITE : 0));
+        }
+
+        private void flush() throws IOException {
+            synchronized (this) {
+                while (!pending.isEmpty()) {
+                    ByteBuffer head = pending.peek();
+                    int before = head.remaining();
+                    channel.write(head);
+                    pendingBytes -= before - head.remaining();
+                    if (head.hasRemaining()) {
+                        return; // the socket is full, OP_WRITE stays on
+                    }
+                    pending.poll();
+                }
+            }
+            interest(SelectionKey.OP_WRITE, false);
+        }
+
+        private void read() throws IOException {
+            synchronized (this) {
+                if (buffer == null) {
+                    buffer = borrow();
+                }
+            }
+            int read = channel.read(buffer);
+            if (read < 0) {
+                close(CloseStatus.NORMAL);
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+            buffer.flip();
+            // nothing more is read until the viewer has taken these bytes
+            interest(SelectionKey.OP_READ, false);
+            ByteBuffer out = buffer;
+            synchronized (this) {
+                sending = true;
+            }
+            remote.sendBinary(out, result -> {
+                boolean release;
+                synchronized (this) {
+                    sending = false;
+                    release = closed;
+                }
+                if (release) {
+                    giveBack(out);
+                    return;
+                }
+                if (!result.isOK()) {
+                    closeLater(CloseStatus.SERVER_ERROR);
+                    return;
+                }
+                out.clear();
+                onLoop(() -> interest(SelectionKey.OP_READ, true));
+            });
+        }
+
+        private void interest(int op, boolean on) {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            key.interestOps(on ? key.interestOps() | op : key.interestOps() & ~op);
+        }
+
+        // viewer threads and send callbacks must not close the session while holding the lock
+        private void closeLater(CloseStatus status) {
+            onLoop(() -> close(status));
+        }
+
+        private void close(CloseStatus status) {
+            ByteBuffer release = null;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending.clear();
+                pendingBytes = 0;
+                if (!sending) {
+                    release = buffer;
+                }
+                buffer = null;
+            }
+            if (release != null) {
+                giveBack(release);
+            }
+            connections.remove(this);
+            try {
+                channel.close(); // also cancels the key
+            } catch (IOException ignored) {
+            }
+            if (viewer.isOpen()) {
+                try {
+                    viewer.close(status);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.ContainerInfo;
+import com.runnable.agent.dto.PoolStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a number of started agent containers idle so a new job only pays for one exec
+ * instead of create, start and the VNC stack boot.
+ */
+@Service
+public class WarmContainerPool {
+
+    private static final Logger log = LogManager.getLogger(WarmContainerPool.class);
+
+    private final DockerClientService dockerClientService;
+    private final AdmissionController admissionController;
+    private final int targetSize;
+    private final long refillIntervalSeconds;
+
+    private final ConcurrentLinkedQueue<ContainerInfo> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final ScheduledExecutorService refiller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "warm-pool-refill");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public WarmContainerPool(DockerClientService dockerClientService,
+                             AdmissionController admissionController,
+                             @Value("${runnable.pool.size:2}") int targetSize,
+                             @Value("${runnable.pool.refill-interval-seconds:30}") long refillIntervalSeconds) {
+        this.dockerClientService = dockerClientService;
+        this.admissionController = admissionController;
+        this.targetSize = targetSize;
+        this.refillIntervalSeconds = refillIntervalSeconds;
+    }
+
+    @PostConstruct
+    void start() {
+        if (targetSize > 0) {
+            refiller.scheduleWithFixedDelay(this::refill, 0, refillIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refiller.shutdownNow();
+        ContainerInfo info;
+        while ((info = idle.poll()) != null) {
+            try {
+                dockerClientService.removeContainer(info.host(), info.id());
+            } catch (Exception e) {
+                log.warn("Failed to remove pooled container {}: {}", info.id(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hands the task to an idle container. Empty when the pool is dry, the caller then
+     * falls back to a cold create. Pooled containers carry the default job class limits,
+     * so only jobs of that class should claim one.
+     */
+    public Optional<ContainerInfo> claim(int jobId, String jobName) {
+        ContainerInfo info;
+        while ((info = idle.poll()) != null) {
+            try {
+                // renamed first, so a worker retrying this job finds the container by its name
+                String name = DockerClientService.jobContainerName(jobId);
+                dockerClientService.renameContainer(info.host(), info.id(), name);
+                dockerClientService.execTask(info.host(), info.id(), jobName);
+                hits.incrementAndGet();
+                refiller.execute(this::refill);
+                return Optional.of(new ContainerInfo(info.host(), info.id(), name, info.status(), info.port(), info.vncUrl()));
+            } catch (Exception e) {
+                // container died while idle, drop it and try the next one
+                log.warn("Discarding pooled container {}: {}", info.id(), e.getMessage());
+                removeQuietly(info);
+            }
+        }
+        misses.incrementAndGet();
+        if (targetSize > 0) {
+            refiller.execute(this::refill);
+        }
+        return Optional.empty();
+    }
+
+    public PoolStats stats() {
+        return new PoolStats(idle.size(), targetSize, hits.get(), misses.get());
+    }
+
+    // only ever runs on the refiller thread, so there is no double fill
+    private void refill() {
+        while (idle.size() < targetSize && !Thread.currentThread().isInterrupted()) {
+            // idle containers hold capacity too, so they never take it from queued jobs
+            Optional<AdmissionController.Admission> admission = admissionController.tryAdmit(null);
+            if (admission.isEmpty()) {
+                return;
+            }
+            try {
+                idle.add(dockerClientService.createIdleContainer(admission.get()));
+            } catch (Exception e) {
+                log.warn("Failed to refill warm pool: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void removeQuietly(ContainerInfo info) {
+        try {
+            dockerClientService.removeContainer(info.host(), info.id());
+        } catch (Exception ignored) {
+        }
+    }
+}
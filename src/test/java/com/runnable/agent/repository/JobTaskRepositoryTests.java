@@ -0,0 +1,174 @@
+package com.runnable.agent.repository;
+
+import com.runnable.agent.dto.JobTask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// every claim commits on its own, like it does in the worker, so concurrent claimers see each other's locks
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class JobTaskRepositoryTests {
+
+	@Container
+	@ServiceConnection
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16-alpine"));
+
+	@Autowired
+	private JobTaskRepository jobTaskRepository;
+
+	@BeforeEach
+	void setUp() {
+		jobTaskRepository.deleteAll();
+	}
+
+	@Test
+	void claimHandsOutTheOldestQueuedTasksAndLeasesThem() {
+		queue(3);
+		LocalDateTime now = LocalDateTime.now();
+
+		List<JobTask> claimed = jobTaskRepository.claim("a", now.plusSeconds(30), now, 2);
+
+		assertThat(claimed).extracting(JobTask::getJobId).containsExactlyInAnyOrder(1, 2);
+		assertThat(claimed).allSatisfy(task -> {
+			assertThat(task.getStatus()).isEqualTo(JobTask.CLAIMED);
+			assertThat(task.getOwner()).isEqualTo("a");
+			assertThat(task.getAttempts()).isEqualTo(1);
+		});
+		assertThat(jobTaskRepository.countByStatus(JobTask.QUEUED)).isEqualTo(1);
+	}
+
+	@Test
+	void concurrentClaimersNeverShareATask() throws Exception {
+		queue(40);
+		int claimers = 4;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(claimers);
+		try {
+			List<Future<List<Long>>> futures = new ArrayList<>();
+			for (int i = 0; i < claimers; i++) {
+				String owner = "worker-" + i;
+				Callable<List<Long>> claimAll = () -> {
+					start.await();
+					List<Long> taskIds = new ArrayList<>();
+					List<JobTask> batch;
+					do {
+						LocalDateTime now = LocalDateTime.now();
+						batch = jobTaskRepository.claim(owner, now.plusSeconds(30), now, 3);
+						batch.forEach(task -> taskIds.add(task.getTaskId()));
+					} while (!batch.isEmpty());
+					return taskIds;
+				};
+				futures.add(executor.submit(claimAll));
+			}
+			start.countDown();
+
+			List<Long> claimed = new ArrayList<>();
+			for (Future<List<Long>> future : futures) {
+				claimed.addAll(future.get());
+			}
+			assertThat(claimed).hasSize(40).doesNotHaveDuplicates();
+			assertThat(jobTaskRepository.findAll()).allSatisfy(task -> assertThat(task.getAttempts()).isEqualTo(1));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void expiredLeaseGoesBackToTheQueueUntilItRunsOutOfAttempts() {
+		queue(1);
+		LocalDateTime now = LocalDateTime.now();
+		JobTask task = jobTaskRepository.claim("a", now.minusSeconds(1), now.minusSeconds(31), 1).getFirst();
+
+		assertThat(jobTaskRepository.reclaimExpired(now, 2)).isEqualTo(1);
+		JobTask requeued = jobTaskRepository.findById(task.getTaskId()).orElseThrow();
+		assertThat(requeued.getStatus()).isEqualTo(JobTask.QUEUED);
+		assertThat(requeued.getOwner()).isNull();
+
+		jobTaskRepository.claim("b", now.minusSeconds(1), now.minusSeconds(31), 1);
+		assertThat(jobTaskRepository.reclaimExpired(now, 2)).isZero();
+		assertThat(jobTaskRepository.findAllByStatusAndLeaseUntilBeforeAndAttemptsGreaterThanEqual(
+				JobTask.CLAIMED, now, 2)).extracting(JobTask::getTaskId).containsExactly(task.getTaskId());
+	}
+
+	@Test
+	void liveLeaseIsNotReclaimed() {
+		queue(1);
+		LocalDateTime now = LocalDateTime.now();
+		jobTaskRepository.claim("a", now.plusSeconds(30), now, 1);
+
+		assertThat(jobTaskRepository.reclaimExpired(now, 3)).isZero();
+		assertThat(jobTaskRepository.countByStatus(JobTask.CLAIMED)).isEqualTo(1);
+	}
+
+	@Test
+	void onlyTheOwnerOfAClaimedTaskCanFinishIt() {
+		queue(1);
+		LocalDateTime now = LocalDateTime.now();
+		long taskId = jobTaskRepository.claim("a", now.plusSeconds(30), now, 1).getFirst().getTaskId();
+
+		assertThat(jobTaskRepository.finish(taskId, "b", JobTask.DONE, null, now)).isZero();
+		assertThat(jobTaskRepository.finish(taskId, "a", JobTask.FAILED, "boom", now)).isEqualTo(1);
+		assertThat(jobTaskRepository.finish(taskId, "a", JobTask.DONE, null, now)).isZero();
+
+		JobTask finished = jobTaskRepository.findById(taskId).orElseThrow();
+		assertThat(finished.getStatus()).isEqualTo(JobTask.FAILED);
+		assertThat(finished.getLastError()).isEqualTo("boom");
+		assertThat(finished.getLeaseUntil()).isNull();
+	}
+
+	@Test
+	void ownerThatLostItsLeaseCannotFinishTheTask() {
+		queue(1);
+		LocalDateTime now = LocalDateTime.now();
+		long taskId = jobTaskRepository.claim("a", now.minusSeconds(1), now.minusSeconds(31), 1).getFirst().getTaskId();
+		jobTaskRepository.reclaimExpired(now, 3);
+		jobTaskRepository.claim("b", now.plusSeconds(30), now, 1);
+
+		assertThat(jobTaskRepository.finish(taskId, "a", JobTask.DONE, null, now)).isZero();
+		assertThat(jobTaskRepository.finish(taskId, "b", JobTask.DONE, null, now)).isEqualTo(1);
+	}
+
+	@Test
+	void onlyTasksStillQueuedPastTheirMaxWaitExpire() {
+		queue(2);
+		LocalDateTime now = LocalDateTime.now();
+		jobTaskRepository.claim("a", now.plusSeconds(30), now, 1);
+
+		assertThat(jobTaskRepository.expireQueued(now.minusMinutes(5), "too old", now)).isEmpty();
+		List<JobTask> expired = jobTaskRepository.expireQueued(now.plusSeconds(1), "too old", now);
+
+		assertThat(expired).extracting(JobTask::getJobId).containsExactly(2);
+		assertThat(expired.getFirst().getStatus()).isEqualTo(JobTask.FAILED);
+		assertThat(expired.getFirst().getLastError()).isEqualTo("too old");
+		assertThat(jobTaskRepository.countByStatus(JobTask.CLAIMED)).isEqualTo(1);
+	}
+
+	// CREATE tasks for jobs 1..count, inserted in job order
+	private void queue(int count) {
+		IntStream.rangeClosed(1, count).forEach(jobId -> jobTaskRepository.save(new JobTask(jobId, JobTask.CREATE)));
+	}
+}
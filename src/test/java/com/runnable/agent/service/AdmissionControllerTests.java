@@ -0,0 +1,326 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Info;
+import com.runnable.agent.configuration.JobQuotaProperties;
+import com.runnable.agent.configuration.JobQuotaProperties.JobClass;
+import com.runnable.agent.dto.ContainerState;
+import com.runnable.agent.dto.JobPriority;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdmissionControllerTests {
+
+	// one host of 4 CPUs and 8 GB, jobs of 1 CPU and 1 GB: four fit
+	private static final JobClass ONE_CPU = new JobClass(1.0, null, DataSize.ofGigabytes(1), null);
+
+	private final DockerCallGuard guard = mock(DockerCallGuard.class);
+	private final ContainerStateCache containerStateCache = mock(ContainerStateCache.class);
+	private final DockerHostRegistry dockerHostRegistry = mock(DockerHostRegistry.class);
+	private final PlacementScheduler placementScheduler = mock(PlacementScheduler.class);
+	private final JobsRepository jobsRepository = mock(JobsRepository.class);
+	private final JobQuotaProperties properties = new JobQuotaProperties("standard", Map.of("standard", ONE_CPU),
+			1.0, 1.0, 10, Duration.ofMillis(300), Map.of(), true, Duration.ZERO);
+	private AdmissionController controller;
+
+	@BeforeEach
+	void setUp() {
+		DockerHost host = new DockerHost("local", mock(DockerClient.class), guard, "localhost");
+		when(dockerHostRegistry.all()).thenReturn(List.of(host));
+		when(dockerHostRegistry.get(anyString())).thenReturn(host);
+		when(placementScheduler.ranked()).thenReturn(List.of(host));
+		when(jobsRepository.findAllByJobStatus(JobStatus.STARTED)).thenReturn(List.of());
+		when(containerStateCache.get(anyString())).thenAnswer(invocation -> Optional.of(
+				new ContainerState("local", invocation.getArgument(0), "agent", "running", "Up", null)));
+
+		Info info = mock(Info.class);
+		when(info.getNCPU()).thenReturn(4);
+		when(info.getMemTotal()).thenReturn(DataSize.ofGigabytes(8).toBytes());
+		doReturn(info).when(guard).call(eq("info"), any(Supplier.class));
+
+		controller = start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		controller.stop();
+	}
+
+	@Test
+	void admitsUntilTheHostIsFullAndAgainAfterARelease() {
+		fill(JobPriority.NORMAL);
+
+		assertThat(controller.tryAdmit(null)).isEmpty();
+		controller.release("c1");
+		assertThat(controller.tryAdmit(null)).isPresent();
+	}
+
+	@Test
+	void rejectsOnceMaxWaitRunsOutWithoutPreemptingItsOwnPriority() {
+		fill(JobPriority.NORMAL);
+
+		assertThatThrownBy(() -> controller.admit(null, "web", JobPriority.NORMAL, () -> {}))
+				.isInstanceOf(JobRejectedException.class);
+		verify(guard, never()).call(eq("pause"), any(Supplier.class));
+		assertThat(controller.queued()).isZero();
+	}
+
+	@Test
+	void higherPriorityPausesOneLowerPriorityContainer() {
+		fill(JobPriority.BATCH);
+
+		AdmissionController.Admission admission = controller.admit(null, "web", JobPriority.INTERACTIVE, () -> {});
+
+		assertThat(admission.host().name()).isEqualTo("local");
+		verify(guard, times(1)).call(eq("pause"), any(Supplier.class));
+		assertThat(controller.suspendedCount()).isEqualTo(1);
+		assertThat(containers().filter(controller::isPreempted)).hasSize(1);
+	}
+
+	@Test
+	void preemptedContainerIsResumedOnceItsCpuIsFree() {
+		fill(JobPriority.BATCH);
+		AdmissionController.Admission admission = controller.admit(null, "web", JobPriority.INTERACTIVE, () -> {});
+
+		controller.resumePreempted();
+		verify(guard, never()).call(eq("unpause"), any(Supplier.class));
+
+		controller.release(admission);
+		controller.resumePreempted();
+		verify(guard, times(1)).call(eq("unpause"), any(Supplier.class));
+		assertThat(controller.suspendedCount()).isZero();
+		assertThat(controller.tryAdmit(null)).isEmpty();
+	}
+
+	@Test
+	void releasingAPreemptedContainerGivesBackItsCpuOnlyOnce() {
+		fill(JobPriority.BATCH);
+		controller.admit(null, "web", JobPriority.INTERACTIVE, () -> {});
+		String victim = containers().filter(controller::isPreempted).findFirst().orElseThrow();
+
+		controller.release(victim);
+
+		assertThat(controller.suspendedCount()).isZero();
+		// three batch jobs and the interactive one still hold all four CPUs
+		assertThat(controller.tryAdmit(null)).isEmpty();
+	}
+
+	@Test
+	void containerUnpausedElsewhereTakesItsCpuBack() {
+		ArgumentCaptor<Consumer<ContainerState>> onStart = listenerCaptor();
+		verify(containerStateCache).onStart(onStart.capture());
+		fill(JobPriority.BATCH);
+		controller.admit(null, "web", JobPriority.INTERACTIVE, () -> {});
+		String victim = containers().filter(controller::isPreempted).findFirst().orElseThrow();
+
+		onStart.getValue().accept(new ContainerState("local", victim, "agent", "running", "Up", null));
+
+		assertThat(controller.isPreempted(victim)).isFalse();
+		controller.resumePreempted();
+		verify(guard, never()).call(eq("unpause"), any(Supplier.class));
+	}
+
+	@Test
+	void assignedPoolContainersTakeTheJobsPriority() {
+		for (int i = 1; i <= 4; i++) {
+			controller.bind(controller.tryAdmit(null).orElseThrow(), "p" + i);
+			controller.assign("p" + i, "web", JobPriority.INTERACTIVE);
+		}
+
+		assertThatThrownBy(() -> controller.admit(null, "web", JobPriority.INTERACTIVE, () -> {}))
+				.isInstanceOf(JobRejectedException.class);
+		verify(guard, never()).call(eq("pause"), any(Supplier.class));
+	}
+
+	@Test
+	void idlePausedContainerGivesUpItsCpuButNotItsMemory() {
+		fill(JobPriority.NORMAL);
+		controller.idlePaused("c1");
+
+		assertThat(controller.isPreempted("c1")).isFalse();
+		assertThat(controller.suspendedCount()).isZero();
+		AdmissionController.Admission admission = controller.tryAdmit(null).orElseThrow();
+		controller.resumePreempted(); // idle containers only come back when asked for
+		verify(guard, never()).call(eq("unpause"), any(Supplier.class));
+
+		assertThatThrownBy(() -> controller.resume("c1")).isInstanceOf(JobRejectedException.class);
+		controller.release(admission);
+		controller.resume("c1");
+		assertThat(controller.tryAdmit(null)).isEmpty();
+	}
+
+	@Test
+	void releasingAnIdlePausedContainerGivesBackOnlyItsMemory() {
+		fill(JobPriority.NORMAL);
+		controller.idlePaused("c1");
+		controller.bind(controller.tryAdmit(null).orElseThrow(), "c5");
+
+		controller.release("c1");
+
+		// c2..c5 still hold all four CPUs
+		assertThat(controller.tryAdmit(null)).isEmpty();
+	}
+
+	@Test
+	void failedPauseGivesTheVictimItsCpuBack() {
+		doThrow(new DockerUnavailableException("daemon is gone")).when(guard).call(eq("pause"), any(Supplier.class));
+		fill(JobPriority.BATCH);
+
+		controller.admit(null, "web", JobPriority.INTERACTIVE, () -> {});
+
+		assertThat(controller.suspendedCount()).isZero();
+	}
+
+	@Test
+	void containersStartedByAnotherInstanceAreAccountedFromTheirLabels() {
+		ArgumentCaptor<Consumer<ContainerState>> onStart = listenerCaptor();
+		verify(containerStateCache).onStart(onStart.capture());
+
+		for (int i = 1; i <= 4; i++) {
+			onStart.getValue().accept(agent("other-" + i, "running", JobPriority.NORMAL));
+		}
+		assertThat(controller.tryAdmit(null)).isEmpty();
+
+		controller.release("other-1");
+		assertThat(controller.tryAdmit(null)).isPresent();
+	}
+
+	@Test
+	void startEventAheadOfBindCountsTheContainerOnce() {
+		ArgumentCaptor<Consumer<ContainerState>> onStart = listenerCaptor();
+		verify(containerStateCache).onStart(onStart.capture());
+		AdmissionController.Admission admission = controller.tryAdmit(null).orElseThrow();
+
+		onStart.getValue().accept(new ContainerState("local", "c1", "agent", "running", "Up", null, admission.labels()));
+		controller.bind(admission, "c1");
+
+		for (int i = 2; i <= 4; i++) {
+			controller.bind(controller.tryAdmit(null).orElseThrow(), "c" + i);
+		}
+		assertThat(controller.tryAdmit(null)).isEmpty();
+	}
+
+	@Test
+	void containerPausedByAnotherInstanceGivesUpItsCpu() {
+		ArgumentCaptor<Consumer<ContainerState>> onPause = listenerCaptor();
+		verify(containerStateCache).onPause(onPause.capture());
+		fill(JobPriority.NORMAL);
+
+		onPause.getValue().accept(new ContainerState("local", "c1", "agent", "paused", "Paused", null));
+
+		assertThat(controller.tryAdmit(null)).isPresent();
+	}
+
+	@Test
+	void restartRebuildsTheLedgerFromExistingContainers() {
+		when(containerStateCache.getAll()).thenReturn(List.of(
+				agent("a", "running", JobPriority.NORMAL),
+				agent("b", "running", JobPriority.BATCH),
+				agent("c", "paused", JobPriority.NORMAL),
+				new ContainerState("local", "d", "postgres", "running", "Up", null)));
+		AdmissionController restarted = start();
+		try {
+			// a and b hold two CPUs, c only its memory, d is none of ours
+			assertThat(restarted.tryAdmit(null)).isPresent();
+			assertThat(restarted.tryAdmit(null)).isPresent();
+			assertThat(restarted.tryAdmit(null)).isEmpty();
+			assertThat(restarted.isCommitted("c")).isTrue();
+			assertThat(restarted.isCommitted("d")).isFalse();
+		} finally {
+			restarted.stop();
+		}
+	}
+
+	@Test
+	void containerPreemptedBeforeARestartIsStillResumed() {
+		Jobs job = new Jobs("preempted", JobStatus.STARTED);
+		job.setContainerId("c");
+		job.setJobClass("standard");
+		job.setPriority(JobPriority.BATCH);
+		job.setPreempted(true);
+		when(jobsRepository.findAllByJobStatus(JobStatus.STARTED)).thenReturn(List.of(job));
+		when(containerStateCache.getAll()).thenReturn(List.of(agent("c", "paused", JobPriority.BATCH)));
+		AdmissionController restarted = start();
+		try {
+			assertThat(restarted.isPreempted("c")).isTrue();
+
+			restarted.resumePreempted();
+
+			verify(guard, times(1)).call(eq("unpause"), any(Supplier.class));
+			assertThat(restarted.isPreempted("c")).isFalse();
+			verify(jobsRepository, timeout(1000)).markPreempted("c", false);
+		} finally {
+			restarted.stop();
+		}
+	}
+
+	@Test
+	void preemptionIsRecordedOnTheJobRow() {
+		fill(JobPriority.BATCH);
+
+		controller.admit(null, "web", JobPriority.INTERACTIVE, () -> {});
+
+		String victim = containers().filter(controller::isPreempted).findFirst().orElseThrow();
+		verify(jobsRepository, timeout(1000)).markPreempted(victim, true);
+	}
+
+	private AdmissionController start() {
+		AdmissionController started = new AdmissionController(dockerHostRegistry, placementScheduler,
+				containerStateCache, jobsRepository, properties, new SimpleMeterRegistry());
+		started.restoreCommitments();
+		return started;
+	}
+
+	private static ContainerState agent(String id, String state, JobPriority priority) {
+		return new ContainerState("local", id, "agent-" + id, state, state, null, Map.of(
+				AdmissionController.CLASS_LABEL, "standard",
+				AdmissionController.OWNER_LABEL, "ci",
+				AdmissionController.PRIORITY_LABEL, priority.name()));
+	}
+
+	// c1..c4 of the given priority, filling the host
+	private void fill(JobPriority priority) {
+		for (int i = 1; i <= 4; i++) {
+			AdmissionController.Admission admission = controller.admit(null, "ci", priority, () -> {});
+			controller.bind(admission, "c" + i);
+		}
+	}
+
+	private static Stream<String> containers() {
+		return Stream.of("c1", "c2", "c3", "c4");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ArgumentCaptor<Consumer<ContainerState>> listenerCaptor() {
+		return ArgumentCaptor.forClass(Consumer.class);
+	}
+}
@@ -0,0 +1,162 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.EventsCmd;
+import com.github.dockerjava.api.command.InspectContainerCmd;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.command.ListContainersCmd;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Event;
+import com.runnable.agent.configuration.DockerTransportProperties;
+import com.runnable.agent.dto.ContainerState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContainerStateCacheTests {
+
+	private final DockerClient client = mock(DockerClient.class);
+	private final ListContainersCmd listCmd = mock(ListContainersCmd.class, RETURNS_SELF);
+	private final DockerCallGuard guard = guard();
+	private final DockerHostRegistry dockerHostRegistry = mock(DockerHostRegistry.class);
+	private final ContainerStateCache cache = new ContainerStateCache(dockerHostRegistry);
+	private volatile ResultCallback<Event> events;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		DockerHost host = new DockerHost("local", client, guard, "localhost");
+		when(dockerHostRegistry.all()).thenReturn(List.of(host));
+		when(dockerHostRegistry.get(anyString())).thenReturn(host);
+
+		EventsCmd eventsCmd = mock(EventsCmd.class, RETURNS_SELF);
+		when(client.eventsCmd()).thenReturn(eventsCmd);
+		when(eventsCmd.exec(any())).thenAnswer(invocation -> {
+			events = invocation.getArgument(0);
+			return events;
+		});
+		when(client.listContainersCmd()).thenReturn(listCmd);
+	}
+
+	@AfterEach
+	void tearDown() {
+		cache.stop();
+		guard.shutdown();
+	}
+
+	@Test
+	void eventsDuringTheSeedListAreAppliedAfterIt() throws Exception {
+		inspects("c2", () -> inspect("c2", "running"));
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch exited = new CountDownLatch(1);
+		cache.onStart(state -> started.countDown());
+		cache.onExit(state -> exited.countDown());
+		// c1 dies and c2 starts while the list is on its way, so the list reports both as they were before
+		when(listCmd.exec()).thenAnswer(invocation -> {
+			events.onNext(event("die", "c1"));
+			events.onNext(event("start", "c2"));
+			return List.of(container("c1", "running"), container("c2", "created"));
+		});
+
+		cache.start();
+
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(exited.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(cache.isSeeded()).isTrue();
+		assertThat(cache.get("c1")).map(ContainerState::state).contains("exited");
+		assertThat(cache.get("c2")).map(ContainerState::state).contains("running");
+	}
+
+	@Test
+	void slowInspectDoesNotHoldUpTheEventStream() throws Exception {
+		when(listCmd.exec()).thenReturn(List.of(container("c1", "running")));
+		CountDownLatch inspecting = new CountDownLatch(1);
+		CountDownLatch answer = new CountDownLatch(1);
+		inspects("c2", () -> {
+			inspecting.countDown();
+			awaitQuietly(answer);
+			return inspect("c2", "running");
+		});
+		CountDownLatch exited = new CountDownLatch(1);
+		cache.onExit(state -> exited.countDown());
+		cache.start();
+
+		CompletableFuture<Void> stream = CompletableFuture.runAsync(() -> {
+			events.onNext(event("start", "c2"));
+			events.onNext(event("die", "c1"));
+		});
+		assertThat(inspecting.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// the stream thread is back while the inspect still hangs, and later events wait their turn
+		stream.get(5, TimeUnit.SECONDS);
+		assertThat(cache.get("c1")).map(ContainerState::state).contains("running");
+		answer.countDown();
+		assertThat(exited.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(cache.get("c2")).map(ContainerState::state).contains("running");
+	}
+
+	private void inspects(String containerId, Supplier<InspectContainerResponse> response) {
+		InspectContainerCmd inspectCmd = mock(InspectContainerCmd.class);
+		when(client.inspectContainerCmd(containerId)).thenReturn(inspectCmd);
+		when(inspectCmd.exec()).thenAnswer(invocation -> response.get());
+	}
+
+	private static InspectContainerResponse inspect(String id, String state) {
+		InspectContainerResponse inspect = mock(InspectContainerResponse.class, RETURNS_DEEP_STUBS);
+		when(inspect.getId()).thenReturn(id);
+		when(inspect.getName()).thenReturn("/agent-" + id);
+		when(inspect.getState().getStatus()).thenReturn(state);
+		when(inspect.getConfig()).thenReturn(null);
+		when(inspect.getNetworkSettings()).thenReturn(null);
+		return inspect;
+	}
+
+	private static Container container(String id, String state) {
+		Container container = mock(Container.class);
+		when(container.getId()).thenReturn(id);
+		when(container.getNames()).thenReturn(new String[] {"/agent-" + id});
+		when(container.getState()).thenReturn(state);
+		when(container.getStatus()).thenReturn(state);
+		when(container.getLabels()).thenReturn(Map.of());
+		return container;
+	}
+
+	private static Event event(String action, String id) {
+		Event event = mock(Event.class);
+		when(event.getAction()).thenReturn(action);
+		when(event.getId()).thenReturn(id);
+		return event;
+	}
+
+	private static DockerCallGuard guard() {
+		DockerTransportProperties properties = new DockerTransportProperties(null, null, null, null, null, null, null,
+				null, null, null, null);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		return new DockerCallGuard("local", new DockerMetrics(meterRegistry), properties, meterRegistry);
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
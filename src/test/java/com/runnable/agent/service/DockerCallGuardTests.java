@@ -0,0 +1,177 @@
+package com.runnable.agent.service;
+
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.runnable.agent.configuration.DockerTransportProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DockerCallGuardTests {
+
+	private final List<DockerCallGuard> guards = new ArrayList<>();
+
+	@AfterEach
+	void shutdown() {
+		guards.forEach(DockerCallGuard::shutdown);
+	}
+
+	@Test
+	void opensAfterTheFailureThresholdAndRefusesWithoutCalling() {
+		DockerCallGuard guard = guard(Duration.ofMinutes(1));
+		AtomicInteger calls = new AtomicInteger();
+
+		fail(guard);
+		assertThat(guard.isCircuitOpen()).isFalse();
+		fail(guard);
+		assertThat(guard.isCircuitOpen()).isTrue();
+
+		assertThatThrownBy(() -> guard.call("list", calls::incrementAndGet))
+				.isInstanceOf(DockerUnavailableException.class)
+				.hasMessageContaining("circuit");
+		assertThat(calls).hasValue(0);
+	}
+
+	@Test
+	void clientErrorsDoNotCountAsDaemonFailures() {
+		DockerCallGuard guard = guard(Duration.ofMinutes(1));
+
+		for (int i = 0; i < 3; i++) {
+			assertThatThrownBy(() -> guard.call("inspect", () -> {
+				throw new NotFoundException("no such container");
+			})).isInstanceOf(NotFoundException.class);
+		}
+
+		assertThat(guard.isCircuitOpen()).isFalse();
+	}
+
+	@Test
+	void halfOpenCircuitLetsOneTrialThroughAtATime() throws Exception {
+		DockerCallGuard guard = guard(Duration.ZERO);
+		fail(guard);
+		fail(guard);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch finish = new CountDownLatch(1);
+
+		CompletableFuture<Void> trial = CompletableFuture.runAsync(() -> guard.call("list", () -> {
+			started.countDown();
+			await(finish);
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThatThrownBy(() -> guard.call("list", () -> "second"))
+				.isInstanceOf(DockerUnavailableException.class)
+				.hasMessageContaining("circuit");
+		finish.countDown();
+		trial.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void failedTrialOpensTheCircuitAgain() {
+		DockerCallGuard guard = guard(Duration.ZERO);
+		fail(guard);
+		fail(guard);
+
+		fail(guard);
+
+		assertThat(guard.isCircuitOpen()).isTrue();
+	}
+
+	@Test
+	void successfulTrialClosesTheCircuit() {
+		DockerCallGuard guard = guard(Duration.ZERO);
+		fail(guard);
+		fail(guard);
+
+		assertThat(guard.call("list", () -> "ok")).isEqualTo("ok");
+
+		assertThat(guard.isCircuitOpen()).isFalse();
+		// the failure count started over as well
+		fail(guard);
+		assertThat(guard.isCircuitOpen()).isFalse();
+	}
+
+	@Test
+	void fullBulkheadRejectsOnceTheWaitRunsOut() throws Exception {
+		DockerCallGuard guard = guard(Duration.ofMinutes(1));
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch finish = new CountDownLatch(1);
+		CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> guard.call("logs", () -> {
+			started.countDown();
+			await(finish);
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		long waitStarted = System.nanoTime();
+		assertThatThrownBy(() -> guard.call("list", () -> "second"))
+				.isInstanceOf(DockerUnavailableException.class)
+				.hasMessageContaining("Too many");
+		assertThat(System.nanoTime() - waitStarted).isGreaterThanOrEqualTo(Duration.ofMillis(200).toNanos());
+
+		finish.countDown();
+		holder.get(5, TimeUnit.SECONDS);
+		assertThat(guard.call("list", () -> "ok")).isEqualTo("ok");
+	}
+
+	@Test
+	void timedOutCallHoldsItsSlotUntilItActuallyReturns() {
+		DockerCallGuard guard = guard(Duration.ofMinutes(1));
+		CountDownLatch finish = new CountDownLatch(1);
+
+		assertThatThrownBy(() -> guard.call("stop", () -> await(finish)))
+				.isInstanceOf(DockerUnavailableException.class)
+				.hasMessageContaining("deadline");
+		// the hung call still has the daemon connection, so nobody else gets its slot
+		assertThatThrownBy(() -> guard.call("list", () -> "second"))
+				.isInstanceOf(DockerUnavailableException.class)
+				.hasMessageContaining("Too many");
+
+		finish.countDown();
+		// waits up to bulkhead-wait for the slot the returning call gives back
+		assertThat(guard.call("list", () -> "ok")).isEqualTo("ok");
+	}
+
+	// one call at a time, two failures open the circuit, stop runs past its deadline
+	private DockerCallGuard guard(Duration openDuration) {
+		DockerTransportProperties properties = new DockerTransportProperties(null, null, null,
+				Map.of("stop", Duration.ofMillis(100)), Duration.ofSeconds(5), 1, Duration.ofMillis(200), 2,
+				openDuration, null, null);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		DockerCallGuard guard = new DockerCallGuard("local", new DockerMetrics(meterRegistry), properties, meterRegistry);
+		guards.add(guard);
+		return guard;
+	}
+
+	private static void fail(DockerCallGuard guard) {
+		assertThatThrownBy(() -> guard.call("list", () -> {
+			throw new IllegalStateException("daemon is gone");
+		})).isInstanceOf(RuntimeException.class);
+	}
+
+	// ignores the interrupt of a deadline, like blocking IO does
+	private static void await(CountDownLatch latch) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				latch.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
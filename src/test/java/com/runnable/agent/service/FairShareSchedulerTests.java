@@ -0,0 +1,95 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairShareSchedulerTests {
+
+	@Test
+	void higherPriorityGoesFirst() {
+		FairShareScheduler scheduler = new FairShareScheduler(owner -> 1);
+		scheduler.enqueue(new FairShareScheduler.Waiter(1, "ci", JobPriority.BATCH));
+		scheduler.enqueue(new FairShareScheduler.Waiter(2, "ci", JobPriority.INTERACTIVE));
+
+		assertThat(scheduler.next().ticket()).isEqualTo(2);
+		assertThat(scheduler.waitingAbove(JobPriority.NORMAL)).isTrue();
+	}
+
+	@Test
+	void ownerUsingLessOfItsShareGoesFirst() {
+		FairShareScheduler scheduler = new FairShareScheduler(owner -> 1);
+		scheduler.charge("ci", 4.0);
+		scheduler.charge("web", 1.0);
+		scheduler.enqueue(new FairShareScheduler.Waiter(1, "ci", JobPriority.NORMAL));
+		scheduler.enqueue(new FairShareScheduler.Waiter(2, "web", JobPriority.NORMAL));
+
+		assertThat(scheduler.next().ticket()).isEqualTo(2);
+	}
+
+	@Test
+	void weightScalesTheShare() {
+		FairShareScheduler scheduler = new FairShareScheduler(owner -> Map.of("ci", 4).getOrDefault(owner, 1));
+		scheduler.charge("ci", 4.0);
+		scheduler.charge("web", 2.0);
+		scheduler.enqueue(new FairShareScheduler.Waiter(1, "web", JobPriority.NORMAL));
+		scheduler.enqueue(new FairShareScheduler.Waiter(2, "ci", JobPriority.NORMAL));
+
+		assertThat(scheduler.share("ci")).isEqualTo(1.0);
+		assertThat(scheduler.next().ticket()).isEqualTo(2);
+	}
+
+	@Test
+	void sameOwnerInArrivalOrder() {
+		FairShareScheduler scheduler = new FairShareScheduler(owner -> 1);
+		scheduler.enqueue(new FairShareScheduler.Waiter(7, "ci", JobPriority.NORMAL));
+		scheduler.enqueue(new FairShareScheduler.Waiter(3, "ci", JobPriority.NORMAL));
+		scheduler.enqueue(new FairShareScheduler.Waiter(5, "ci", JobPriority.NORMAL));
+
+		assertThat(scheduler.next().ticket()).isEqualTo(3);
+		scheduler.remove(3);
+		assertThat(scheduler.next().ticket()).isEqualTo(5);
+	}
+
+	@Test
+	void refundForgetsAnOwnerWithNothingLeft() {
+		FairShareScheduler scheduler = new FairShareScheduler(owner -> 1);
+		scheduler.charge("ci", 1.5);
+		scheduler.refund("ci", 1.5);
+
+		assertThat(scheduler.share("ci")).isZero();
+	}
+
+	@Test
+	void victimsComeFromTheLowestPriorityAndTheOwnerFurthestOverItsShare() {
+		FairShareScheduler scheduler = new FairShareScheduler(owner -> 1);
+		scheduler.charge("ci", 3.0);
+		scheduler.charge("web", 1.0);
+		List<FairShareScheduler.Running> running = List.of(
+				new FairShareScheduler.Running("a", "web", JobPriority.BATCH, 1.0),
+				new FairShareScheduler.Running("b", "ci", JobPriority.BATCH, 1.0),
+				new FairShareScheduler.Running("c", "ci", JobPriority.NORMAL, 2.0),
+				new FairShareScheduler.Running("d", "ci", JobPriority.INTERACTIVE, 1.0));
+
+		assertThat(scheduler.victims(running, JobPriority.INTERACTIVE, 1.0))
+				.extracting(FairShareScheduler.Running::key)
+				.containsExactly("b");
+		assertThat(scheduler.victims(running, JobPriority.INTERACTIVE, 3.5))
+				.extracting(FairShareScheduler.Running::key)
+				.containsExactly("b", "a", "c");
+	}
+
+	@Test
+	void noVictimsWhenLowerPrioritiesCannotFreeEnough() {
+		FairShareScheduler scheduler = new FairShareScheduler(owner -> 1);
+		List<FairShareScheduler.Running> running = List.of(
+				new FairShareScheduler.Running("a", "ci", JobPriority.BATCH, 1.0),
+				new FairShareScheduler.Running("b", "ci", JobPriority.NORMAL, 2.0));
+
+		assertThat(scheduler.victims(running, JobPriority.NORMAL, 2.0)).isEmpty();
+	}
+}
@@ -0,0 +1,126 @@
+package com.runnable.agent.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InferenceGatewayTests {
+
+	private final ChatModel chatModel = mock(ChatModel.class);
+	private final InferenceGateway gateway = new InferenceGateway(chatModel, new SimpleMeterRegistry(), "qwen3:0.6b",
+			1, 1, Duration.ofSeconds(5), Duration.ofSeconds(5), 4, 16, Duration.ofMinutes(1));
+
+	@AfterEach
+	void shutdown() {
+		gateway.shutdown();
+	}
+
+	@Test
+	void finishedResponseIsServedFromTheCache() throws Exception {
+		when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(chunk("Hello "), chunk("world")));
+
+		assertThat(generate("say hello").get(5, TimeUnit.SECONDS)).isEqualTo("Hello world");
+		assertThat(generate("say hello").get(5, TimeUnit.SECONDS)).isEqualTo("Hello world");
+		verify(chatModel, times(1)).stream(any(Prompt.class));
+	}
+
+	@Test
+	void duplicatePromptJoinsTheRunningGeneration() throws Exception {
+		Sinks.Many<ChatResponse> tokens = Sinks.many().replay().all();
+		when(chatModel.stream(any(Prompt.class))).thenReturn(tokens.asFlux());
+
+		CompletableFuture<String> first = generate("write fizzbuzz");
+		tokens.tryEmitNext(chunk("for i "));
+		CompletableFuture<String> second = generate("write fizzbuzz");
+		tokens.tryEmitNext(chunk("in range(100)"));
+		tokens.tryEmitComplete();
+
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("for i in range(100)");
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("for i in range(100)");
+		verify(chatModel, times(1)).stream(any(Prompt.class));
+	}
+
+	@Test
+	void fullQueueRejectsNewPrompts() throws Exception {
+		CountDownLatch streaming = new CountDownLatch(1);
+		when(chatModel.stream(any(Prompt.class))).thenAnswer(invocation -> {
+			streaming.countDown();
+			return Sinks.many().replay().<ChatResponse>all().asFlux();
+		});
+
+		generate("one");
+		assertThat(streaming.await(5, TimeUnit.SECONDS)).isTrue(); // it holds the only slot
+		generate("two"); // waits for it
+
+		assertThatThrownBy(() -> generate("three")).isInstanceOf(InferenceRejectedException.class);
+	}
+
+	@Test
+	void slowSubscriberIsDroppedWithoutHoldingUpTheOthers() throws Exception {
+		Sinks.Many<ChatResponse> tokens = Sinks.many().replay().all();
+		when(chatModel.stream(any(Prompt.class))).thenReturn(tokens.asFlux());
+		CountDownLatch unblock = new CountDownLatch(1);
+		CompletableFuture<Throwable> dropped = new CompletableFuture<>();
+		gateway.generate(null, "count to ten", token -> awaitQuietly(unblock), () -> {}, dropped::complete);
+		BlockingQueue<String> fast = new LinkedBlockingQueue<>();
+		CompletableFuture<Void> fastDone = new CompletableFuture<>();
+		gateway.generate(null, "count to ten", fast::add, () -> fastDone.complete(null), fastDone::completeExceptionally);
+
+		try {
+			// the slow one holds the first token and queues four more, the sixth is one too many
+			for (int i = 1; i <= 10; i++) {
+				tokens.tryEmitNext(chunk(String.valueOf(i)));
+				assertThat(fast.poll(5, TimeUnit.SECONDS)).isEqualTo(String.valueOf(i));
+			}
+			tokens.tryEmitComplete();
+
+			fastDone.get(5, TimeUnit.SECONDS);
+			assertThat(dropped.get(5, TimeUnit.SECONDS)).isInstanceOf(InferenceRejectedException.class);
+		} finally {
+			unblock.countDown();
+		}
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private CompletableFuture<String> generate(String prompt) {
+		CompletableFuture<String> result = new CompletableFuture<>();
+		StringBuilder text = new StringBuilder();
+		gateway.generate(null, prompt, text::append, () -> result.complete(text.toString()),
+				result::completeExceptionally);
+		return result;
+	}
+
+	private static ChatResponse chunk(String text) {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+	}
+}
@@ -0,0 +1,166 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.dto.Jobs;
+import com.runnable.agent.repository.JobsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JobLogServiceTests {
+
+	private final JobsRepository jobsRepository = mock(JobsRepository.class);
+	private final DockerClientService dockerClientService = mock(DockerClientService.class);
+	// three buffered lines, lines of at most 8 characters, four queued lines per subscriber
+	private final JobLogService service = new JobLogService(jobsRepository, dockerClientService, 3, 8, 4);
+
+	@BeforeEach
+	void setUp() {
+		Jobs job = new Jobs("logs", JobStatus.STARTED);
+		job.setJobId(1);
+		job.setContainerId("c1");
+		when(jobsRepository.findById(1)).thenReturn(Optional.of(job));
+		when(dockerClientService.followLogs(isNull(), eq("c1"), anyInt(), any(), any())).thenReturn(mock(Closeable.class));
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+	}
+
+	@Test
+	void characterSplitAcrossFramesIsDecodedWhole() throws Exception {
+		List<String> lines = new CopyOnWriteArrayList<>();
+		CountDownLatch ended = new CountDownLatch(1);
+		service.subscribe(1, lines::add, ended::countDown);
+		Docker docker = docker();
+		byte[] line = "né ✓\n".getBytes(StandardCharsets.UTF_8);
+
+		docker.frame(Arrays.copyOfRange(line, 0, 2)); // "n" and the first byte of é
+		docker.frame(Arrays.copyOfRange(line, 2, 6)); // the rest of é, a space and the first two bytes of ✓
+		docker.frame(Arrays.copyOfRange(line, 6, line.length));
+		docker.end();
+
+		assertThat(ended.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(lines).containsExactly("né ✓");
+	}
+
+	@Test
+	void longLinesAreCutAtMaxLineLengthButNeverInsideACharacter() throws Exception {
+		List<String> lines = new CopyOnWriteArrayList<>();
+		CountDownLatch ended = new CountDownLatch(1);
+		service.subscribe(1, lines::add, ended::countDown);
+		Docker docker = docker();
+		byte[] accent = "é".getBytes(StandardCharsets.UTF_8);
+
+		docker.frame("0123456789\n".getBytes(StandardCharsets.UTF_8));
+		docker.frame(concat("abcdefg".getBytes(StandardCharsets.UTF_8), new byte[] {accent[0]}));
+		docker.frame(concat(new byte[] {accent[1]}, "\n".getBytes(StandardCharsets.UTF_8)));
+		docker.end();
+
+		assertThat(ended.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(lines).containsExactly("01234567", "abcdefg", "é");
+	}
+
+	@Test
+	void lateSubscriberGetsOnlyTheLinesStillInTheRing() throws Exception {
+		service.subscribe(1, line -> {}, () -> {});
+		Docker docker = docker();
+		for (String line : List.of("a", "b", "c", "d", "e")) {
+			docker.frame((line + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		BlockingQueue<String> late = new LinkedBlockingQueue<>();
+		service.subscribe(1, late::add, () -> {});
+
+		assertThat(List.of(take(late), take(late), take(late))).containsExactly("c", "d", "e");
+	}
+
+	@Test
+	void slowSubscriberLosesLinesWithoutHoldingUpTheOthers() throws Exception {
+		CountDownLatch unblock = new CountDownLatch(1);
+		List<String> slowLines = new CopyOnWriteArrayList<>();
+		CountDownLatch slowEnded = new CountDownLatch(1);
+		JobLogService.LogSubscription slow = service.subscribe(1, line -> {
+			awaitQuietly(unblock);
+			slowLines.add(line);
+		}, slowEnded::countDown).orElseThrow();
+		BlockingQueue<String> fast = new LinkedBlockingQueue<>();
+		JobLogService.LogSubscription fastSubscription = service.subscribe(1, fast::add, () -> {}).orElseThrow();
+		Docker docker = docker();
+
+		for (int i = 0; i < 20; i++) {
+			docker.frame((i + "\n").getBytes(StandardCharsets.UTF_8));
+			assertThat(take(fast)).isEqualTo(String.valueOf(i));
+		}
+
+		assertThat(fastSubscription.droppedLines()).isZero();
+		assertThat(slow.droppedLines()).isPositive();
+		unblock.countDown();
+		docker.end();
+		assertThat(slowEnded.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(slowLines).hasSize(20 - (int) slow.droppedLines());
+	}
+
+	// the callbacks the service handed to the log stream of c1
+	@SuppressWarnings("unchecked")
+	private Docker docker() {
+		ArgumentCaptor<Consumer<byte[]>> onFrame = ArgumentCaptor.forClass(Consumer.class);
+		ArgumentCaptor<Runnable> onEnd = ArgumentCaptor.forClass(Runnable.class);
+		verify(dockerClientService).followLogs(isNull(), eq("c1"), anyInt(), onFrame.capture(), onEnd.capture());
+		return new Docker(onFrame.getValue(), onEnd.getValue());
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, bytes, first.length, second.length);
+		return bytes;
+	}
+
+	private static String take(BlockingQueue<String> lines) throws InterruptedException {
+		String line = lines.poll(5, TimeUnit.SECONDS);
+		assertThat(line).isNotNull();
+		return line;
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private record Docker(Consumer<byte[]> onFrame, Runnable onEnd) {
+
+		void frame(byte[] payload) {
+			onFrame.accept(payload);
+		}
+
+		void end() {
+			onEnd.run();
+		}
+	}
+}
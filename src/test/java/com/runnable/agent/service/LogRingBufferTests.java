@@ -0,0 +1,49 @@
+package com.runnable.agent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LogRingBufferTests {
+
+	@Test
+	void keepsLinesInOrderUntilFull() {
+		LogRingBuffer buffer = new LogRingBuffer(3);
+		buffer.add("a");
+		buffer.add("b");
+
+		assertThat(buffer.snapshot()).containsExactly("a", "b");
+		assertThat(buffer.size()).isEqualTo(2);
+	}
+
+	@Test
+	void fullBufferEvictsTheOldestLines() {
+		LogRingBuffer buffer = new LogRingBuffer(3);
+		for (String line : new String[] {"a", "b", "c", "d", "e"}) {
+			buffer.add(line);
+		}
+
+		assertThat(buffer.snapshot()).containsExactly("c", "d", "e");
+		assertThat(buffer.size()).isEqualTo(3);
+	}
+
+	@Test
+	void snapshotIsACopy() {
+		LogRingBuffer buffer = new LogRingBuffer(2);
+		buffer.add("a");
+
+		List<String> snapshot = buffer.snapshot();
+		buffer.add("b");
+		buffer.add("c");
+
+		assertThat(snapshot).containsExactly("a");
+	}
+
+	@Test
+	void rejectsAnEmptyCapacity() {
+		assertThatThrownBy(() -> new LogRingBuffer(0)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,34 @@
+package com.runnable.agent.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PlacementSchedulerTests {
+
+	@Test
+	void unsampledHostScoresOnContainerCountOnly() {
+		assertThat(PlacementScheduler.score(null, 4, 0.05)).isCloseTo(0.2, within(1e-9));
+	}
+
+	@Test
+	void busiestResourceDrivesTheScore() {
+		PlacementScheduler.HostLoad cpuBound = new PlacementScheduler.HostLoad(0.9, 0.1, 3, 0);
+		PlacementScheduler.HostLoad memoryBound = new PlacementScheduler.HostLoad(0.1, 0.9, 3, 0);
+		PlacementScheduler.HostLoad quiet = new PlacementScheduler.HostLoad(0.3, 0.2, 3, 0);
+
+		assertThat(PlacementScheduler.score(cpuBound, 3, 0.05))
+				.isEqualTo(PlacementScheduler.score(memoryBound, 3, 0.05));
+		assertThat(PlacementScheduler.score(quiet, 3, 0.05))
+				.isLessThan(PlacementScheduler.score(cpuBound, 3, 0.05));
+	}
+
+	@Test
+	void moreContainersOutweighSlightlyLowerLoad() {
+		PlacementScheduler.HostLoad a = new PlacementScheduler.HostLoad(0.20, 0.20, 10, 0);
+		PlacementScheduler.HostLoad b = new PlacementScheduler.HostLoad(0.25, 0.25, 2, 0);
+
+		assertThat(PlacementScheduler.score(b, 2, 0.05)).isLessThan(PlacementScheduler.score(a, 10, 0.05));
+	}
+}
@@ -0,0 +1,80 @@
+package com.runnable.agent.service;
+
+import com.runnable.agent.dto.ContainerState;
+import com.runnable.agent.dto.JobStatus;
+import com.runnable.agent.repository.JobsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PortAllocatorTests {
+
+	private ContainerStateCache containerStateCache;
+	private PortAllocator allocator;
+
+	@BeforeEach
+	void setUp() {
+		JobsRepository jobsRepository = mock(JobsRepository.class);
+		containerStateCache = mock(ContainerStateCache.class);
+		when(jobsRepository.findAllByJobStatus(JobStatus.STARTED)).thenReturn(List.of());
+		when(containerStateCache.getAll()).thenReturn(List.of());
+		allocator = new PortAllocator(jobsRepository, containerStateCache, 20000, 20003);
+		allocator.restoreLeases();
+	}
+
+	@Test
+	void leasesEveryPortInRangeOnceThenFails() {
+		Set<Integer> ports = new HashSet<>();
+		for (int i = 0; i < 4; i++) {
+			ports.add(allocator.lease());
+		}
+		assertThat(ports).containsExactlyInAnyOrder(20000, 20001, 20002, 20003);
+		assertThatThrownBy(allocator::lease).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void releasedPortCanBeLeasedAgain() {
+		for (int i = 0; i < 4; i++) {
+			allocator.lease();
+		}
+		allocator.release(20001);
+		assertThat(allocator.lease()).isEqualTo(20001);
+	}
+
+	@Test
+	void reacquireRefusesPortHeldByRunningContainer() {
+		int port = allocator.lease();
+		when(containerStateCache.getAll())
+				.thenReturn(List.of(new ContainerState("local", "c1", "agent-1", "running", "Up", port)));
+		assertThat(allocator.reacquire(port)).isFalse();
+
+		when(containerStateCache.getAll()).thenReturn(List.of());
+		assertThat(allocator.reacquire(port)).isTrue();
+	}
+
+	@Test
+	void concurrentLeasesNeverCollide() throws InterruptedException {
+		PortAllocator wide = new PortAllocator(mock(JobsRepository.class), containerStateCache, 30000, 30999);
+		Set<Integer> ports = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		for (int i = 0; i < 1000; i++) {
+			executor.execute(() -> ports.add(wide.lease()));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(ports).hasSize(1000);
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.runnable.agent.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VncRelayTests {
+
+	private static final String VERSION = "RFB 003.008\n";
+
+	private final NativeWebSocketSession viewer = mock(NativeWebSocketSession.class);
+	private final RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+	// what the relay sent to the viewer, and the sends it has not been told are done yet
+	private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+	private final BlockingQueue<SendHandler> unanswered = new LinkedBlockingQueue<>();
+	private volatile boolean slowViewer;
+	private VncRelay relay;
+	private ServerSocket vncServer;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		Session session = mock(Session.class);
+		when(viewer.getNativeSession(Session.class)).thenReturn(session);
+		when(viewer.isOpen()).thenReturn(true);
+		when(session.getAsyncRemote()).thenReturn(remote);
+		doAnswer(invocation -> {
+			ByteBuffer data = invocation.getArgument(0);
+			byte[] bytes = new byte[data.remaining()];
+			data.get(bytes);
+			received.add(bytes);
+			SendHandler handler = invocation.getArgument(1);
+			if (slowViewer) {
+				unanswered.add(handler);
+			} else {
+				handler.onResult(new SendResult());
+			}
+			return null;
+		}).when(remote).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+
+		relay = new VncRelay(new SimpleMeterRegistry(), 4096, 1024 * 1024, Duration.ofSeconds(5));
+		relay.start();
+		vncServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		relay.stop();
+		vncServer.close();
+	}
+
+	@Test
+	void relaysTheHandshakeBothWays() throws Exception {
+		VncRelay.Connection connection = relay.open(upstream(), viewer);
+		try (Socket server = accept()) {
+			server.getOutputStream().write(VERSION.getBytes(StandardCharsets.US_ASCII));
+			assertThat(viewerReads(VERSION.length())).isEqualTo(VERSION);
+
+			connection.send(ByteBuffer.wrap(VERSION.getBytes(StandardCharsets.US_ASCII)));
+			assertThat(new String(server.getInputStream().readNBytes(VERSION.length()), StandardCharsets.US_ASCII))
+					.isEqualTo(VERSION);
+		}
+	}
+
+	@Test
+	void viewerInputSentBeforeTheConnectIsDeliveredOnceConnected() throws Exception {
+		VncRelay.Connection connection = relay.open(upstream(), viewer);
+		connection.send(ByteBuffer.wrap(VERSION.getBytes(StandardCharsets.US_ASCII)));
+
+		try (Socket server = accept()) {
+			assertThat(new String(server.getInputStream().readNBytes(VERSION.length()), StandardCharsets.US_ASCII))
+					.isEqualTo(VERSION);
+		}
+	}
+
+	@Test
+	void serverOutputWaitsUntilTheViewerTookTheLastSend() throws Exception {
+		slowViewer = true;
+		relay.open(upstream(), viewer);
+		try (Socket server = accept()) {
+			OutputStream out = server.getOutputStream();
+			out.write('a');
+			assertThat(viewerReads(1)).isEqualTo("a");
+
+			out.write('b');
+			assertThat(received.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+			SendHandler handler = unanswered.poll(5, TimeUnit.SECONDS);
+			assertThat(handler).isNotNull();
+			handler.onResult(new SendResult());
+			assertThat(viewerReads(1)).isEqualTo("b");
+		}
+	}
+
+	@Test
+	void serverClosingTheSocketClosesTheViewer() throws Exception {
+		relay.open(upstream(), viewer);
+		accept().close();
+
+		verify(viewer, timeout(5000)).close(CloseStatus.NORMAL);
+		assertThat(relay.openConnections()).isZero();
+	}
+
+	@Test
+	void viewerClosingClosesTheSocket() throws Exception {
+		VncRelay.Connection connection = relay.open(upstream(), viewer);
+		try (Socket server = accept()) {
+			connection.close();
+
+			assertThat(server.getInputStream().read()).isEqualTo(-1);
+		}
+	}
+
+	private InetSocketAddress upstream() {
+		return new InetSocketAddress(vncServer.getInetAddress(), vncServer.getLocalPort());
+	}
+
+	private Socket accept() throws IOException {
+		vncServer.setSoTimeout(5000);
+		Socket socket = vncServer.accept();
+		socket.setSoTimeout(5000);
+		return socket;
+	}
+
+	// the relay may hand the bytes over in more than one send
+	private String viewerReads(int length) throws InterruptedException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		while (bytes.size() < length) {
+			byte[] chunk = received.poll(5, TimeUnit.SECONDS);
+			assertThat(chunk).isNotNull();
+			bytes.writeBytes(chunk);
+		}
+		return bytes.toString(StandardCharsets.US_ASCII);
+	}
+}